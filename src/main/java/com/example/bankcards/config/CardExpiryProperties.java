@@ -0,0 +1,45 @@
+package com.example.bankcards.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "bankcards.card-expiry")
+@Getter
+@Setter
+public class CardExpiryProperties {
+
+    /**
+     * Сколько карт помечается просроченными в одной транзакции
+     */
+    private int chunkSize = 5000;
+
+    /**
+     * Пауза между порциями, чтобы не вытеснять рабочие транзакции
+     */
+    private Duration pause = Duration.ofMillis(200);
+
+    /**
+     * Расписание сверочного прохода по всей таблице
+     */
+    private String reconcileCron = "0 0 12 * * ?";
+
+    /**
+     * Истекать карты по колесу таймеров в момент окончания срока, а не только сверкой
+     */
+    private boolean wheelEnabled = true;
+
+    /**
+     * На сколько дней вперёд карты загружаются в колесо; горизонт пополняется раз в сутки
+     */
+    private int wheelHorizonDays = 7;
+
+    /**
+     * Тик колеса: с такой точностью карта истекает после наступления срока
+     */
+    private Duration wheelTick = Duration.ofSeconds(1);
+}
@@ -0,0 +1,35 @@
+package com.example.bankcards.config;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+@Configuration
+public class ConnectionLimiterConfig {
+
+    /**
+     * Оборачивает DataSource в ConnectionLimitingDataSource, если ограничитель включён.
+     * Статический, чтобы пост-процессор создавался раньше остальных бинов конфигурации
+     */
+    @Bean
+    public static BeanPostProcessor connectionLimitingPostProcessor(
+            ObjectProvider<ConnectionLimiterProperties> propertiesProvider) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof DataSource dataSource) || bean instanceof ConnectionLimitingDataSource) {
+                    return bean;
+                }
+                ConnectionLimiterProperties properties = propertiesProvider.getObject();
+                if (!properties.isEnabled()) {
+                    return bean;
+                }
+                return new ConnectionLimitingDataSource(dataSource, properties.getMaxConnections(),
+                        properties.getAcquireTimeout());
+            }
+        };
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.bankcards.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "bankcards.connection-limiter")
+@Getter
+@Setter
+public class ConnectionLimiterProperties {
+
+    /**
+     * Ограничивать число одновременно выданных соединений; имеет смысл в
+     * первую очередь с виртуальными потоками, когда запросов намного больше, чем соединений в пуле
+     */
+    private boolean enabled = false;
+
+    /**
+     * Сколько соединений может быть выдано одновременно, обычно равно размеру пула
+     */
+    private int maxConnections = 5;
+
+    /**
+     * Сколько запрос ждёт свободное разрешение, прежде чем получить 429
+     */
+    private Duration acquireTimeout = Duration.ofMillis(200);
+}
@@ -0,0 +1,22 @@
+package com.example.bankcards.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "bankcards.idempotency")
+@Getter
+@Setter
+public class IdempotencyProperties {
+
+    /**
+     * Сколько хранится ответ на запрос с заголовком Idempotency-Key
+     */
+    private Duration ttl = Duration.ofHours(24);
+
+    private int cacheMaxSize = 100_000;
+}
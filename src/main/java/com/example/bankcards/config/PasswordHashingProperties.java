@@ -0,0 +1,35 @@
+package com.example.bankcards.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "bankcards.password-hashing")
+@Getter
+@Setter
+public class PasswordHashingProperties {
+
+    /**
+     * Cost factor BCrypt; хэши с другим cost пересчитываются при входе
+     */
+    private int strength = 10;
+
+    /**
+     * Потоков хэширования, 0 — по числу ядер
+     */
+    private int threads = 0;
+
+    /**
+     * Сколько запросов может ждать свободный поток, остальные получают 429
+     */
+    private int queueCapacity = 16;
+
+    /**
+     * Сколько запрос ждёт результат хэширования, включая время в очереди, прежде чем получить 429
+     */
+    private Duration timeout = Duration.ofSeconds(5);
+}
@@ -0,0 +1,36 @@
+package com.example.bankcards.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "bankcards.scheduler-lock")
+@Getter
+@Setter
+public class SchedulerLockProperties {
+
+    /**
+     * На сколько захватывается блокировка; если узел упал, другой сможет её взять по истечении срока
+     */
+    private Duration lease = Duration.ofMinutes(5);
+
+    /**
+     * Как часто владелец продлевает lease, пока задача выполняется
+     */
+    private Duration heartbeat = Duration.ofMinutes(1);
+
+    /**
+     * Сколько блокировка держится после захвата, даже если задача закончилась раньше;
+     * защищает от повторного запуска на узле, где cron сработал позже
+     */
+    private Duration minHold = Duration.ofMinutes(1);
+
+    /**
+     * Идентификатор узла в scheduler_locks.locked_by, по умолчанию pid@host
+     */
+    private String nodeId;
+}
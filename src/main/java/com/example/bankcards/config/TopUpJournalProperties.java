@@ -0,0 +1,64 @@
+package com.example.bankcards.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "bankcards.top-up-journal")
+@Getter
+@Setter
+public class TopUpJournalProperties {
+
+    /**
+     * Пополнения подтверждаются после fsync в локальный журнал, а в cards попадают отложенно
+     */
+    private boolean enabled = false;
+
+    /**
+     * Файл журнала; у каждой реплики должен быть свой
+     */
+    private String path = "data/top-up-journal.log";
+
+    /**
+     * Идентификатор журнала в top_up_journal_checkpoints; обязателен при enabled.
+     * Должен быть привязан к файлу журнала и не меняться при перезапуске или
+     * пересоздании контейнера, иначе записи журнала будут зачислены повторно
+     */
+    private String journalId;
+
+    /**
+     * Как часто накопленные пополнения переносятся в cards
+     */
+    private Duration flushInterval = Duration.ofMillis(5);
+
+    /**
+     * Сколько пополнений переносится в одной транзакции
+     */
+    private int maxFlushSize = 10000;
+
+    /**
+     * Сколько раз подряд повторяется неудавшаяся порция, прежде чем её записи
+     * переносятся по одной; столько же попыток у отдельной записи до top_up_dead_letters
+     */
+    private int maxApplyAttempts = 5;
+
+    /**
+     * Сколько пополнение ждёт, пока поток записи возьмёт его в журнал; дальше клиент получает 429
+     */
+    private Duration appendTimeout = Duration.ofSeconds(2);
+
+    /**
+     * Сколько записей журнала пишется одним fsync
+     */
+    private int maxCommitBatch = 1000;
+
+    /**
+     * Журнал обрезается, когда вырос больше этого размера и все записи уже перенесены в БД
+     */
+    private DataSize truncateSize = DataSize.ofMegabytes(64);
+}
@@ -0,0 +1,52 @@
+package com.example.bankcards.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "bankcards.transfer")
+@Getter
+@Setter
+public class TransferProperties {
+
+    /**
+     * ATOMIC — условный UPDATE баланса одним оператором на карту,
+     * PESSIMISTIC — блокировка строк карт в порядке возрастания id,
+     * OPTIMISTIC — проверка версии карты с ограниченным числом повторов,
+     * SEQUENCED — переводы ставятся в кольцевой буфер, один поток применяет их порциями,
+     * по одной транзакции на порцию.
+     * Переводы с Idempotency-Key в режимах OPTIMISTIC и SEQUENCED выполняются как ATOMIC
+     * в транзакции ключа
+     */
+    private LockingMode lockingMode = LockingMode.ATOMIC;
+
+    private int maxRetries = 3;
+
+    private long retryBackoffMs = 10;
+
+    /**
+     * Ёмкость кольцевого буфера режима SEQUENCED; при заполнении запросы отклоняются с 429
+     */
+    private int sequencerCapacity = 4096;
+
+    /**
+     * Максимум переводов в одной транзакции режима SEQUENCED
+     */
+    private int sequencerMaxBatch = 256;
+
+    /**
+     * Сколько перевод режима SEQUENCED ждёт, пока писатель возьмёт его в порцию; дальше клиент получает 429
+     */
+    private Duration sequencerTimeout = Duration.ofSeconds(5);
+
+    public enum LockingMode {
+        ATOMIC,
+        PESSIMISTIC,
+        OPTIMISTIC,
+        SEQUENCED
+    }
+}
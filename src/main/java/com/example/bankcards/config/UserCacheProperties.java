@@ -0,0 +1,22 @@
+package com.example.bankcards.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "bankcards.user-cache")
+@Getter
+@Setter
+public class UserCacheProperties {
+
+    /**
+     * Сколько пользователь хранится в кэше после загрузки из БД
+     */
+    private Duration ttl = Duration.ofMinutes(5);
+
+    private long maxSize = 10_000;
+}
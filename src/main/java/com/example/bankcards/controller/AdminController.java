@@ -1,22 +1,43 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.dto.BulkCardIssueRequest;
+import com.example.bankcards.dto.BulkCardIssueResultDto;
+import com.example.bankcards.dto.BulkUserStatusRequest;
+import com.example.bankcards.dto.BulkUserStatusResultDto;
+import com.example.bankcards.dto.CardBalanceShardsRequest;
 import com.example.bankcards.dto.CardDto;
 import com.example.bankcards.dto.CardRequestDto;
+import com.example.bankcards.dto.CardSliceDto;
 import com.example.bankcards.dto.UserDto;
+import com.example.bankcards.dto.UserImportRequest;
+import com.example.bankcards.dto.UserImportResultDto;
 import com.example.bankcards.service.AdminService;
+import com.example.bankcards.service.CardBalanceShardService;
+import com.example.bankcards.service.CardExportService;
+import com.example.bankcards.service.CardIssuanceService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.Duration;
 import java.util.List;
 
 @RestController
@@ -27,6 +48,13 @@ import java.util.List;
 public class AdminController {
 
     private final AdminService adminService;
+    private final CardExportService cardExportService;
+    private final CardIssuanceService cardIssuanceService;
+    private final CardBalanceShardService cardBalanceShardService;
+
+    // на большой базе выгрузка идёт долго, общий spring.mvc.async.request-timeout её бы оборвал
+    @Value("${bankcards.export.timeout:30m}")
+    private Duration exportTimeout;
 
     @Operation(summary = "Заблокировать карту", description = "Блокирует карту по ID")
     @PatchMapping("/cards/{cardId}/block")
@@ -49,6 +77,23 @@ public class AdminController {
         return ResponseEntity.ok("Card deleted");
     }
 
+    @Operation(summary = "Разложить баланс карты на части",
+            description = "Для карт с большим числом параллельных операций: баланс хранится в N строках, "
+                    + "зачисления и списания распределяются между ними. 0 возвращает обычный режим")
+    @PatchMapping("/cards/{cardId}/balance-shards")
+    public ResponseEntity<?> changeBalanceShards(@PathVariable Long cardId,
+                                                 @Valid @RequestBody CardBalanceShardsRequest request) {
+        cardBalanceShardService.changeShardCount(cardId, request.getShards());
+        return ResponseEntity.ok("Card balance shards updated");
+    }
+
+    @Operation(summary = "Массово выпустить карты",
+            description = "Выпускает по карте на каждый ID пользователя, несуществующие пользователи пропускаются")
+    @PostMapping("/cards/bulk")
+    public ResponseEntity<BulkCardIssueResultDto> issueCards(@Valid @RequestBody BulkCardIssueRequest request) {
+        return ResponseEntity.ok(cardIssuanceService.issueCards(request.getUserIds()));
+    }
+
     @Operation(summary = "Получить все карты", description = "Возвращает список всех карт")
     @GetMapping("/cards")
     public ResponseEntity<List<CardDto>> getAllCards() {
@@ -56,6 +101,32 @@ public class AdminController {
         return ResponseEntity.ok(cards);
     }
 
+    @Operation(summary = "Получить порцию всех карт по курсору",
+            description = "Возвращает до limit карт с id больше after без подсчёта общего количества")
+    @GetMapping("/cards/scroll")
+    public ResponseEntity<CardSliceDto> scrollAllCards(
+            @RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(adminService.scrollAllCards(after, limit));
+    }
+
+    @Operation(summary = "Выгрузить все карты", description = "Потоково отдаёт все карты в формате NDJSON или CSV")
+    @GetMapping("/cards/export")
+    public ResponseEntity<StreamingResponseBody> exportCards(
+            @RequestParam(defaultValue = "NDJSON") CardExportService.Format format,
+            NativeWebRequest request) {
+        WebAsyncUtils.getAsyncManager(request).getAsyncWebRequest().setTimeout(exportTimeout.toMillis());
+        MediaType mediaType = format == CardExportService.Format.CSV
+                ? MediaType.parseMediaType("text/csv")
+                : MediaType.APPLICATION_NDJSON;
+        String fileName = "cards." + format.name().toLowerCase();
+        StreamingResponseBody body = out -> cardExportService.exportCards(format, out);
+        return ResponseEntity.ok()
+                .contentType(mediaType)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                .body(body);
+    }
+
     @Operation(summary = "Обновить статус пользователя", description = "Меняет статус пользователя")
     @PatchMapping("/users/{userId}/status")
     public ResponseEntity<?> updateUserStatus(@PathVariable Long userId, @RequestParam String status) {
@@ -63,6 +134,21 @@ public class AdminController {
         return ResponseEntity.ok("User status updated");
     }
 
+    @Operation(summary = "Массово обновить статус пользователей",
+            description = "Блокирует или разблокирует пользователей в одной транзакции; "
+                    + "при блокировке блокируются и все их карты, разблокировка карты не меняет")
+    @PatchMapping("/users/status")
+    public ResponseEntity<BulkUserStatusResultDto> updateUsersStatus(@Valid @RequestBody BulkUserStatusRequest request) {
+        return ResponseEntity.ok(adminService.updateUsersStatus(request.getUserIds(), request.getStatus()));
+    }
+
+    @Operation(summary = "Импортировать пользователей",
+            description = "Массово добавляет пользователей с готовыми BCrypt-хешами паролей, дубликаты пропускаются")
+    @PostMapping("/users/import")
+    public ResponseEntity<UserImportResultDto> importUsers(@Valid @RequestBody UserImportRequest request) {
+        return ResponseEntity.ok(adminService.importUsers(request.getUsers()));
+    }
+
     @Operation(summary = "Получить всех пользователей", description = "Возвращает список всех пользователей")
     @GetMapping("/users")
     public ResponseEntity<List<UserDto>> getAllUsers() {
@@ -1,8 +1,13 @@
 package com.example.bankcards.controller;
 
 import com.example.bankcards.dto.CardDto;
+import com.example.bankcards.dto.CardSliceDto;
+import com.example.bankcards.dto.CardTransactionDto;
 import com.example.bankcards.dto.TopUpRequest;
+import com.example.bankcards.service.CardLedgerService;
 import com.example.bankcards.service.CardService;
+import com.example.bankcards.service.IdempotencyService;
+import com.example.bankcards.service.TopUpWriteBehindService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import jakarta.validation.Valid;
@@ -10,6 +15,7 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -17,10 +23,13 @@ import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.time.Instant;
+
 @RestController
 @RequestMapping("/api/cards")
 @RequiredArgsConstructor
@@ -28,6 +37,9 @@ import org.springframework.web.bind.annotation.RestController;
 public class CardController {
 
     private final CardService cardService;
+    private final IdempotencyService idempotencyService;
+    private final CardLedgerService cardLedgerService;
+    private final TopUpWriteBehindService topUpWriteBehindService;
 
     @Operation(summary = "Получить страницы карт пользователя")
     @GetMapping("all")
@@ -43,6 +55,17 @@ public class CardController {
         return ResponseEntity.ok(cards);
     }
 
+    @Operation(summary = "Получить порцию карт пользователя по курсору",
+            description = "Возвращает до limit карт с id больше after; nextCursor передаётся в after следующего запроса")
+    @GetMapping("/scroll")
+    public ResponseEntity<CardSliceDto> scrollUserCards(
+            @RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "20") int limit) {
+
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        return ResponseEntity.ok(cardService.scrollUserCards(username, after, limit));
+    }
+
     @Operation(summary = "Создать новую карту для текущего пользователя")
     @PostMapping("/create")
     public ResponseEntity<CardDto> createCard() {
@@ -60,14 +83,36 @@ public class CardController {
         return ResponseEntity.ok(card);
     }
 
-    @Operation(summary = "Пополнить карту")
+    @Operation(summary = "Получить выписку по карте",
+            description = "Возвращает страницу операций по карте за период [from, to), по умолчанию за последние 30 дней")
+    @GetMapping("/{id}/transactions")
+    public ResponseEntity<Page<CardTransactionDto>> getCardTransactions(
+            @PathVariable Long id,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        Page<CardTransactionDto> transactions = cardLedgerService.getCardTransactions(
+                id, username, from, to, PageRequest.of(page, Math.min(size, 100)));
+        return ResponseEntity.ok(transactions);
+    }
+
+    @Operation(summary = "Пополнить карту", description = "Повтор с тем же Idempotency-Key возвращает сохранённый ответ")
     @PatchMapping("/{id}/topup")
     public ResponseEntity<?> topUpCard(
             @PathVariable Long id,
-            @RequestBody @Valid TopUpRequest request) {
+            @RequestBody @Valid TopUpRequest request,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
 
         String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        cardService.topUpCardById(id, username, request.getAmount());
-        return ResponseEntity.ok("Card topped up successfully. Amount: " + request.getAmount());
+        String requestHash = IdempotencyService.fingerprint("topup", id,
+                request.getAmount().stripTrailingZeros().toPlainString());
+        String body = idempotencyService.execute(username, idempotencyKey, requestHash, () -> {
+            topUpWriteBehindService.topUp(id, username, request.getAmount());
+            return "Card topped up successfully. Amount: " + request.getAmount();
+        });
+        return ResponseEntity.ok(body);
     }
 }
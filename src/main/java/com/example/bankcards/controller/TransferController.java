@@ -1,6 +1,9 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.dto.BatchTransferRequest;
 import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.dto.TransferResultDto;
+import com.example.bankcards.service.IdempotencyService;
 import com.example.bankcards.service.TransferService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
@@ -10,9 +13,12 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/transfers")
 @RequiredArgsConstructor
@@ -20,12 +26,31 @@ import org.springframework.web.bind.annotation.RestController;
 public class TransferController {
 
     private final TransferService transferService;
+    private final IdempotencyService idempotencyService;
 
-    @Operation(summary = "Выполнить перевод", description = "Требуется JWT токен в заголовке Authorization")
+    @Operation(summary = "Выполнить перевод",
+            description = "Требуется JWT токен в заголовке Authorization. Повтор с тем же Idempotency-Key возвращает сохранённый ответ")
     @PostMapping("/transfer")
-    public ResponseEntity<?> transfer(@Valid @RequestBody TransferRequest request) {
+    public ResponseEntity<?> transfer(
+            @Valid @RequestBody TransferRequest request,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        String requestHash = IdempotencyService.fingerprint("transfer", request.getFromCardId(),
+                request.getToCardId(), request.getAmount().stripTrailingZeros().toPlainString());
+        String body = idempotencyService.execute(username, idempotencyKey, requestHash, () -> {
+            transferService.transferMoney(request, username);
+            return "Transfer successful";
+        });
+        return ResponseEntity.ok(body);
+    }
+
+    @Operation(summary = "Выполнить пакет переводов",
+            description = "Все переводы пакета выполняются в одной транзакции; для каждого возвращается результат")
+    @PostMapping("/batch")
+    public ResponseEntity<List<TransferResultDto>> transferBatch(@Valid @RequestBody BatchTransferRequest request) {
         String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        transferService.transferMoney(request, username);
-        return ResponseEntity.ok("Transfer successful");
+        List<TransferResultDto> results = transferService.transferBatch(request.getTransfers(), username);
+        return ResponseEntity.ok(results);
     }
 }
\ No newline at end of file
@@ -0,0 +1,16 @@
+package com.example.bankcards.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BatchTransferRequest {
+
+    @NotEmpty
+    @Size(max = 10000, message = "Batch must contain at most 10000 transfers")
+    private List<@Valid TransferRequest> transfers;
+}
@@ -0,0 +1,16 @@
+package com.example.bankcards.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BulkCardIssueRequest {
+
+    @NotEmpty
+    @Size(max = 100000, message = "Bulk issue must contain at most 100000 users")
+    private List<@NotNull Long> userIds;
+}
@@ -0,0 +1,11 @@
+package com.example.bankcards.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BulkCardIssueResultDto {
+    private int issued;
+    private List<Long> missingUserIds;
+}
@@ -0,0 +1,20 @@
+package com.example.bankcards.dto;
+
+import com.example.bankcards.entity.enums.UserStatus;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BulkUserStatusRequest {
+
+    @NotEmpty
+    @Size(max = 10000, message = "Request must contain at most 10000 users")
+    private List<@NotNull Long> userIds;
+
+    @NotNull
+    private UserStatus status;
+}
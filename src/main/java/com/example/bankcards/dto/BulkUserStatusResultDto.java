@@ -0,0 +1,9 @@
+package com.example.bankcards.dto;
+
+import lombok.Data;
+
+@Data
+public class BulkUserStatusResultDto {
+    private int updatedUsers;
+    private int updatedCards;
+}
@@ -0,0 +1,15 @@
+package com.example.bankcards.dto;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+@Data
+public class CardBalanceShardsRequest {
+
+    @NotNull
+    @Min(0)
+    @Max(value = 64, message = "Card balance can be split into at most 64 shards")
+    private Integer shards;
+}
@@ -0,0 +1,6 @@
+package com.example.bankcards.dto;
+
+import java.time.LocalDate;
+
+public record CardExpiryView(Long id, LocalDate expiryDate) {
+}
@@ -0,0 +1,14 @@
+package com.example.bankcards.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CardSliceDto {
+    private List<CardDto> content;
+    private boolean hasNext;
+    private Long nextCursor; // id последней карты, передаётся в after для следующей порции
+}
@@ -0,0 +1,18 @@
+package com.example.bankcards.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CardTransactionDto {
+    private Long id;
+    private Long cardId;
+    private Long counterpartyCardId;
+    private String type;
+    private BigDecimal amount;
+    private Instant createdAt;
+}
@@ -0,0 +1,26 @@
+package com.example.bankcards.dto;
+
+import com.example.bankcards.entity.enums.CardStatus;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * Проекция карты вместе с данными владельца, читается одним запросом
+ * без загрузки сущностей Card и User. legacyCardNumber — зашифрованный номер,
+ * заполнен только у карт без last4, которые ещё не прошли заполнение
+ */
+public record CardView(
+        Long id,
+        String last4,
+        LocalDate expiryDate,
+        CardStatus status,
+        BigDecimal balance,
+        Instant createdAt,
+        String ownerUsername,
+        String ownerFirstName,
+        String ownerLastName,
+        String legacyCardNumber
+) {
+}
@@ -0,0 +1,17 @@
+package com.example.bankcards.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TransferResultDto {
+    private int index;
+    private Long fromCardId;
+    private Long toCardId;
+    private BigDecimal amount;
+    private String status;
+    private String message;
+}
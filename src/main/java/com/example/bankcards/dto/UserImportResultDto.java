@@ -0,0 +1,12 @@
+package com.example.bankcards.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class UserImportResultDto {
+    private int imported;
+    private int skipped;
+    private List<String> skippedUsernames;
+}
@@ -12,6 +12,7 @@ import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import jakarta.validation.constraints.DecimalMin;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -36,9 +37,15 @@ public class Card {
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cards_seq")
     private Long id;
 
-    @Column(name = "card_number", unique = true, nullable = false, length = 16)
+    @Column(name = "card_number", unique = true, nullable = false, length = 100)
     private String cardNumber; // зашифровано в БД
 
+    @Column(name = "card_number_hash", unique = true, length = 64)
+    private String cardNumberHash; // HMAC номера для поиска и проверки уникальности
+
+    @Column(name = "last4", length = 4)
+    private String last4; // последние 4 цифры для маскированного номера без расшифровки
+
     @Column(name = "expiry_date", nullable = false)
     private LocalDate expiryDate;
 
@@ -50,6 +57,10 @@ public class Card {
     @DecimalMin(value = "0.0")
     private BigDecimal balance;
 
+    // 0 — баланс хранится в balance; иначе весь баланс разложен по card_balance_shards, а balance равен нулю
+    @Column(name = "balance_shards", nullable = false)
+    private int balanceShards;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
@@ -57,4 +68,8 @@ public class Card {
     @Column(name = "created_at", nullable = false, updatable = false)
     private Instant createdAt = java.time.Instant.now();
 
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
 }
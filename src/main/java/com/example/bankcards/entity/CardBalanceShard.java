@@ -0,0 +1,52 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * Часть баланса «горячей» карты. Зачисления и списания по разным частям
+ * блокируют разные строки и не ждут друг друга
+ */
+@Entity
+@Table(name = "card_balance_shards")
+@IdClass(CardBalanceShard.Key.class)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CardBalanceShard {
+
+    @Id
+    @Column(name = "card_id", nullable = false, updatable = false)
+    private Long cardId;
+
+    @Id
+    @Column(name = "shard_no", nullable = false, updatable = false)
+    private Integer shardNo;
+
+    @Column(nullable = false, precision = 15, scale = 2)
+    private BigDecimal balance;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+        private Long cardId;
+        private Integer shardNo;
+    }
+}
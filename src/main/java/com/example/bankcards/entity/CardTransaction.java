@@ -0,0 +1,53 @@
+package com.example.bankcards.entity;
+
+import com.example.bankcards.entity.enums.CardTransactionType;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Запись журнала движения средств по карте. Строки только добавляются:
+ * amount положителен для зачислений и отрицателен для списаний
+ */
+@Entity
+@Table(name = "card_transactions")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CardTransaction {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "card_transactions_seq")
+    private Long id;
+
+    @Column(name = "card_id", nullable = false, updatable = false)
+    private Long cardId;
+
+    @Column(name = "counterparty_card_id", updatable = false)
+    private Long counterpartyCardId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20, updatable = false)
+    private CardTransactionType type;
+
+    @Column(nullable = false, precision = 15, scale = 2, updatable = false)
+    private BigDecimal amount;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Instant createdAt;
+}
@@ -56,4 +56,10 @@ public class User {
 
     @Column(name = "created_at", nullable = false, updatable = false)
     private Instant createdAt = Instant.now();
+
+    /**
+     * Токены, выданные не позже этого момента, отозваны
+     */
+    @Column(name = "tokens_revoked_at")
+    private Instant tokensRevokedAt;
 }
\ No newline at end of file
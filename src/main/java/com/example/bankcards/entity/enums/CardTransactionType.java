@@ -0,0 +1,7 @@
+package com.example.bankcards.entity.enums;
+
+public enum CardTransactionType {
+    TOP_UP,
+    TRANSFER_IN,
+    TRANSFER_OUT
+}
@@ -0,0 +1,47 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.CardBalanceShard;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public interface CardBalanceShardRepository extends JpaRepository<CardBalanceShard, CardBalanceShard.Key> {
+
+    @Query("select coalesce(sum(s.balance), 0) from CardBalanceShard s where s.cardId = :cardId")
+    BigDecimal sumBalanceByCardId(@Param("cardId") Long cardId);
+
+    /**
+     * Блокирует все части баланса карты в порядке shard_no
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from CardBalanceShard s where s.cardId = :cardId order by s.shardNo")
+    List<CardBalanceShard> findAllByCardIdForUpdate(@Param("cardId") Long cardId);
+
+    /**
+     * Зачисляет сумму на одну часть баланса; строка самой карты не блокируется
+     */
+    @Modifying
+    @Query(value = "UPDATE card_balance_shards s SET balance = s.balance + :amount FROM cards c " +
+            "WHERE c.id = s.card_id AND s.card_id = :cardId AND s.shard_no = :shardNo AND c.status = 'ACTIVE'",
+            nativeQuery = true)
+    int creditShard(@Param("cardId") Long cardId, @Param("shardNo") int shardNo, @Param("amount") BigDecimal amount);
+
+    /**
+     * Списывает сумму со случайной свободной части, на которой хватает средств.
+     * Части, заблокированные другими операциями, пропускаются
+     */
+    @Modifying
+    @Query(value = "UPDATE card_balance_shards SET balance = balance - :amount " +
+            "WHERE (card_id, shard_no) = (" +
+            "SELECT s.card_id, s.shard_no FROM card_balance_shards s JOIN cards c ON c.id = s.card_id " +
+            "WHERE s.card_id = :cardId AND c.status = 'ACTIVE' AND s.balance >= :amount " +
+            "ORDER BY random() LIMIT 1 FOR UPDATE OF s SKIP LOCKED)",
+            nativeQuery = true)
+    int debitAnyShard(@Param("cardId") Long cardId, @Param("amount") BigDecimal amount);
+}
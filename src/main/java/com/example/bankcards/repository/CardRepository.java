@@ -1,30 +1,193 @@
 package com.example.bankcards.repository;
 
+import com.example.bankcards.dto.CardExpiryView;
+import com.example.bankcards.dto.CardView;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.User;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
 import jakarta.transaction.Transactional;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
-public interface CardRepository extends JpaRepository<Card, Long> {
+public interface CardRepository extends JpaRepository<Card, Long>, CardRepositoryCustom {
+
+    // у карты с разложенным балансом сумма частей читается по первичному ключу card_balance_shards
+    String CARD_BALANCE = "CASE WHEN c.balanceShards = 0 THEN c.balance ELSE "
+            + "(SELECT coalesce(sum(s.balance), 0) FROM CardBalanceShard s WHERE s.cardId = c.id) END";
+
+    // зашифрованный номер читается только у карт, которые ещё не прошёл CardBackfillService
+    String CARD_VIEW = "new com.example.bankcards.dto.CardView(c.id, c.last4, c.expiryDate, c.status, " + CARD_BALANCE
+            + ", c.createdAt, u.username, u.firstName, u.lastName, "
+            + "CASE WHEN c.last4 IS NULL THEN c.cardNumber ELSE NULL END)";
 
     List<Card> findByUser(User user);
 
 
-    boolean existsByCardNumber(String cardNumber);
+    /**
+     * Занят ли номер: по blind index или, у карт, которые ещё не прошли CardBackfillService,
+     * по зашифрованному номеру (CardNumberCipher.legacyEncryptedForms)
+     */
+    @Query("select count(c) > 0 from Card c where c.cardNumberHash = :cardNumberHash " +
+            "or (c.cardNumberHash is null and c.cardNumber in :encryptedNumbers)")
+    boolean isCardNumberTaken(@Param("cardNumberHash") String cardNumberHash,
+                              @Param("encryptedNumbers") Collection<String> encryptedNumbers);
+
+    boolean existsByIdAndUser(Long id, User user);
+
+    Optional<Card> findByCardNumberHash(String cardNumberHash);
+
+    @Query("select c.cardNumberHash from Card c where c.cardNumberHash in :hashes")
+    List<String> findExistingCardNumberHashes(@Param("hashes") Collection<String> hashes);
+
+    @Query("select c.cardNumber from Card c where c.cardNumberHash is null and c.cardNumber in :encryptedNumbers")
+    List<String> findUnbackfilledCardNumbers(@Param("encryptedNumbers") Collection<String> encryptedNumbers);
+
+    @Query("select c from Card c where c.id > :id and (c.cardNumberHash is null or c.last4 is null) order by c.id")
+    List<Card> findBackfillChunk(@Param("id") Long id, Limit limit);
+
+    /**
+     * Меняет только производные от номера колонки. version увеличивается, чтобы карта,
+     * прочитанная до заполнения, не затёрла их при сохранении в режиме OPTIMISTIC
+     */
+    @Modifying
+    @Query("UPDATE Card c SET c.cardNumber = :cardNumber, c.cardNumberHash = :cardNumberHash, c.last4 = :last4, " +
+            "c.version = c.version + 1 WHERE c.id = :id")
+    int fillCardNumberData(@Param("id") Long id, @Param("cardNumber") String cardNumber,
+                           @Param("cardNumberHash") String cardNumberHash, @Param("last4") String last4);
 
     Page<Card> findByUser(User user, Pageable pageable);
 
     Optional<Card> findByIdAndUser(Long id, User user);
 
+    @Query(value = "SELECT " + CARD_VIEW + " FROM Card c JOIN c.user u WHERE u = :user",
+            countQuery = "SELECT count(c) FROM Card c WHERE c.user = :user")
+    Page<CardView> findViewsByUser(@Param("user") User user, Pageable pageable);
+
+    @Query("SELECT " + CARD_VIEW + " FROM Card c JOIN c.user u WHERE c.id = :id AND u = :user")
+    Optional<CardView> findViewByIdAndUser(@Param("id") Long id, @Param("user") User user);
+
+    @Query("SELECT " + CARD_VIEW + " FROM Card c JOIN c.user u WHERE u = :user AND c.id > :id ORDER BY c.id")
+    List<CardView> findViewsByUserAfter(@Param("user") User user, @Param("id") Long id, Limit limit);
+
+    @Query("SELECT " + CARD_VIEW + " FROM Card c JOIN c.user u WHERE c.id > :id ORDER BY c.id")
+    List<CardView> findViewsAfter(@Param("id") Long id, Limit limit);
+
+    @Query("SELECT " + CARD_VIEW + " FROM Card c JOIN c.user u ORDER BY c.id")
+    List<CardView> findAllViews();
+
+    /**
+     * Курсорное чтение проекций всех карт для выгрузки: баланс с учётом шардов
+     * считается в том же запросе. Поток нужно читать внутри транзакции и закрывать после использования
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT " + CARD_VIEW + " FROM Card c JOIN c.user u ORDER BY c.id")
+    Stream<CardView> streamAllViews();
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Card c WHERE c.id = :id")
+    Optional<Card> findByIdForUpdate(@Param("id") Long id);
+
+    /**
+     * Читает карту без блокировки, только если её баланс разложен по частям
+     */
+    @Query("SELECT c FROM Card c WHERE c.id = :id AND c.user = :user AND c.balanceShards > 0")
+    Optional<Card> findShardedByIdAndUser(@Param("id") Long id, @Param("user") User user);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Card c WHERE c.id = :id AND c.user = :user")
+    Optional<Card> findByIdAndUserForUpdate(@Param("id") Long id, @Param("user") User user);
+
+    /**
+     * PostgreSQL блокирует строки в порядке выдачи, поэтому ORDER BY задаёт
+     * единый порядок захвата блокировок для пакетных переводов
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Card c WHERE c.id IN :ids ORDER BY c.id")
+    List<Card> findAllByIdInForUpdate(@Param("ids") Collection<Long> ids);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Card c WHERE c.id IN :ids AND c.user = :user ORDER BY c.id")
+    List<Card> findAllByIdInAndUserForUpdate(@Param("ids") Collection<Long> ids, @Param("user") User user);
+
+    /**
+     * Карты с разложенным балансом не затрагиваются: для них списание идёт через CardBalanceShardService
+     */
+    @Modifying
+    @Query("UPDATE Card c SET c.balance = c.balance - :amount, c.version = c.version + 1 " +
+            "WHERE c.id = :id AND c.user.id = :userId AND c.status = 'ACTIVE' AND c.balanceShards = 0 " +
+            "AND c.balance >= :amount")
+    int debitIfActive(@Param("id") Long id, @Param("userId") Long userId, @Param("amount") BigDecimal amount);
+
+    @Modifying
+    @Query("UPDATE Card c SET c.balance = c.balance + :amount, c.version = c.version + 1 " +
+            "WHERE c.id = :id AND c.user.id = :userId AND c.status = 'ACTIVE' AND c.balanceShards = 0")
+    int creditIfActive(@Param("id") Long id, @Param("userId") Long userId, @Param("amount") BigDecimal amount);
+
+    /**
+     * Блокирует строку активной карты на чтение до конца транзакции и возвращает актуальное
+     * число частей её баланса: пока блокировка держится, режим карты не меняется
+     */
+    @Query(value = "SELECT balance_shards FROM cards WHERE id = :id AND status = 'ACTIVE' FOR SHARE",
+            nativeQuery = true)
+    Optional<Integer> lockBalanceShardsIfActive(@Param("id") Long id);
+
+    /**
+     * Условное списание по id; вызывается под блокировкой из {@link #lockBalanceShardsIfActive}
+     */
+    @Modifying
+    @Query("UPDATE Card c SET c.balance = c.balance - :amount, c.version = c.version + 1 " +
+            "WHERE c.id = :id AND c.balance >= :amount")
+    int debitById(@Param("id") Long id, @Param("amount") BigDecimal amount);
+
+    @Modifying
+    @Query("UPDATE Card c SET c.balance = c.balance + :amount, c.version = c.version + 1 WHERE c.id = :id")
+    int creditById(@Param("id") Long id, @Param("amount") BigDecimal amount);
+
+    @Modifying
+    @Query("UPDATE Card c SET c.status = 'BLOCKED', c.version = c.version + 1 " +
+            "WHERE c.user.id = :userId AND c.status <> 'BLOCKED'")
+    int blockAllByUserId(@Param("userId") Long userId);
+
+    @Modifying
+    @Query("UPDATE Card c SET c.status = 'BLOCKED', c.version = c.version + 1 " +
+            "WHERE c.user.id IN :userIds AND c.status <> 'BLOCKED'")
+    int blockAllByUserIdIn(@Param("userIds") Collection<Long> userIds);
+
+    @Query("select new com.example.bankcards.dto.CardExpiryView(c.id, c.expiryDate) from Card c " +
+            "where c.expiryDate between :from and :to and c.status <> 'EXPIRED'")
+    List<CardExpiryView> findExpiringBetween(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Card c SET c.status = 'EXPIRED', c.version = c.version + 1 " +
+            "WHERE c.id IN :ids AND c.expiryDate < :today AND c.status <> 'EXPIRED'")
+    int markExpiredByIds(@Param("ids") Collection<Long> ids, @Param("today") LocalDate today);
+
+    /**
+     * Помечает просроченными не больше limit карт в отдельной транзакции.
+     * Кандидаты берутся по частичному индексу idx_cards_expiry_date_not_expired,
+     * а строки, заблокированные идущими переводами, пропускаются до следующей порции
+     */
     @Modifying
     @Transactional
-    @Query("UPDATE Card c SET c.status = 'EXPIRED' WHERE c.expiryDate < CURRENT_DATE AND c.status <> 'EXPIRED'")
-    int markExpiredCardsBlocked();
+    @Query(value = "UPDATE cards SET status = 'EXPIRED', version = version + 1 WHERE id IN (" +
+            "SELECT id FROM cards WHERE expiry_date < CURRENT_DATE AND status <> 'EXPIRED' " +
+            "LIMIT :limit FOR UPDATE SKIP LOCKED)", nativeQuery = true)
+    int markExpiredCardsChunk(@Param("limit") int limit);
 }
\ No newline at end of file
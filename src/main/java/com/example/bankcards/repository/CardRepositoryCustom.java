@@ -0,0 +1,23 @@
+package com.example.bankcards.repository;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.Set;
+
+public interface CardRepositoryCustom {
+
+    /**
+     * Прибавляет к балансу каждой карты её итоговое изменение одним JDBC batch,
+     * в порядке возрастания id карт. Вызывается только внутри транзакции,
+     * которая уже удерживает блокировки этих строк
+     */
+    void applyBalanceDeltas(Map<Long, BigDecimal> deltas);
+
+    /**
+     * Зачисляет суммы одним JDBC batch, но только на активные карты без
+     * разложенного баланса: строка проверяется в самом UPDATE
+     *
+     * @return id карт, на которые ничего не зачислено
+     */
+    Set<Long> creditActiveCards(Map<Long, BigDecimal> credits);
+}
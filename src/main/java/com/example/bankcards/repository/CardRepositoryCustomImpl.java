@@ -0,0 +1,69 @@
+package com.example.bankcards.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+@RequiredArgsConstructor
+public class CardRepositoryCustomImpl implements CardRepositoryCustom {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void applyBalanceDeltas(Map<Long, BigDecimal> deltas) {
+        List<Map.Entry<Long, BigDecimal>> rows = deltas.entrySet().stream()
+                .filter(entry -> entry.getValue().signum() != 0)
+                .sorted(Map.Entry.comparingByKey())
+                .toList();
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.batchUpdate(
+                "UPDATE cards SET balance = balance + ?, version = version + 1 WHERE id = ?",
+                rows,
+                BATCH_SIZE,
+                (ps, row) -> {
+                    ps.setBigDecimal(1, row.getValue());
+                    ps.setLong(2, row.getKey());
+                });
+    }
+
+    @Override
+    public Set<Long> creditActiveCards(Map<Long, BigDecimal> credits) {
+        List<Map.Entry<Long, BigDecimal>> rows = credits.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .toList();
+        Set<Long> skipped = new TreeSet<>();
+        if (rows.isEmpty()) {
+            return skipped;
+        }
+
+        int[][] counts = jdbcTemplate.batchUpdate(
+                "UPDATE cards SET balance = balance + ?, version = version + 1 "
+                        + "WHERE id = ? AND status = 'ACTIVE' AND balance_shards = 0",
+                rows,
+                BATCH_SIZE,
+                (ps, row) -> {
+                    ps.setBigDecimal(1, row.getValue());
+                    ps.setLong(2, row.getKey());
+                });
+        int index = 0;
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                if (count == 0) {
+                    skipped.add(rows.get(index).getKey());
+                }
+                index++;
+            }
+        }
+        return skipped;
+    }
+}
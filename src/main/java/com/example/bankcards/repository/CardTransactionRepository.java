@@ -0,0 +1,26 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.CardTransaction;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+
+public interface CardTransactionRepository extends JpaRepository<CardTransaction, Long>, CardTransactionRepositoryCustom {
+
+    /**
+     * Диапазон по created_at отсекает лишние месячные партиции,
+     * внутри партиции строки берутся по индексу (card_id, created_at)
+     */
+    @Query(value = "select t from CardTransaction t where t.cardId = :cardId " +
+            "and t.createdAt >= :from and t.createdAt < :to order by t.createdAt desc, t.id desc",
+            countQuery = "select count(t) from CardTransaction t where t.cardId = :cardId " +
+                    "and t.createdAt >= :from and t.createdAt < :to")
+    Page<CardTransaction> findByCardIdBetween(@Param("cardId") Long cardId,
+                                              @Param("from") Instant from,
+                                              @Param("to") Instant to,
+                                              Pageable pageable);
+}
@@ -0,0 +1,12 @@
+package com.example.bankcards.repository;
+
+import java.time.YearMonth;
+
+public interface CardTransactionRepositoryCustom {
+
+    /**
+     * Создаёт месячную партицию card_transactions, если её ещё нет, и переносит
+     * в неё строки этого месяца, успевшие попасть в DEFAULT
+     */
+    void createMonthlyPartition(YearMonth month);
+}
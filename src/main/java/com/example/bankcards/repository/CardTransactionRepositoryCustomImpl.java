@@ -0,0 +1,59 @@
+package com.example.bankcards.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.sql.Date;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+
+@RequiredArgsConstructor
+public class CardTransactionRepositoryCustomImpl implements CardTransactionRepositoryCustom {
+
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    private static final String DEFAULT_PARTITION = "card_transactions_default";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionOperations transactionOperations;
+
+    /**
+     * PostgreSQL не создаёт партицию, если в DEFAULT уже есть строки из её диапазона.
+     * Тогда в одной транзакции DEFAULT отсоединяется, строки месяца переносятся
+     * в новую партицию и DEFAULT присоединяется обратно. DETACH PARTITION берёт
+     * ACCESS EXCLUSIVE на card_transactions до конца транзакции, так что на время
+     * переноса таблица недоступна и для записи, и для чтения. DETACH ... CONCURRENTLY
+     * не подходит: он не выполняется внутри транзакции, а перенос должен быть атомарным.
+     * Обычно партиция создаётся заранее, DEFAULT пуст, и выполняется только CREATE TABLE
+     */
+    @Override
+    public void createMonthlyPartition(YearMonth month) {
+        String partition = "card_transactions_" + month.format(PARTITION_SUFFIX);
+        Date from = Date.valueOf(month.atDay(1));
+        Date to = Date.valueOf(month.plusMonths(1).atDay(1));
+        String create = "CREATE TABLE " + partition + " PARTITION OF card_transactions FOR VALUES FROM ('"
+                + from + "') TO ('" + to + "')";
+
+        transactionOperations.executeWithoutResult(status -> {
+            if (Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                    "SELECT to_regclass(?) IS NOT NULL", Boolean.class, partition))) {
+                return;
+            }
+            Boolean hasDefaultRows = jdbcTemplate.queryForObject(
+                    "SELECT EXISTS (SELECT 1 FROM " + DEFAULT_PARTITION + " WHERE created_at >= ? AND created_at < ?)",
+                    Boolean.class, from, to);
+            if (!Boolean.TRUE.equals(hasDefaultRows)) {
+                jdbcTemplate.execute(create);
+                return;
+            }
+            jdbcTemplate.execute("ALTER TABLE card_transactions DETACH PARTITION " + DEFAULT_PARTITION);
+            jdbcTemplate.execute(create);
+            jdbcTemplate.update("INSERT INTO " + partition + " SELECT * FROM " + DEFAULT_PARTITION
+                    + " WHERE created_at >= ? AND created_at < ?", from, to);
+            jdbcTemplate.update("DELETE FROM " + DEFAULT_PARTITION + " WHERE created_at >= ? AND created_at < ?",
+                    from, to);
+            jdbcTemplate.execute("ALTER TABLE card_transactions ATTACH PARTITION " + DEFAULT_PARTITION + " DEFAULT");
+        });
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.IdempotencyKey;
+import com.example.bankcards.entity.IdempotencyKeyId;
+import com.example.bankcards.entity.enums.IdempotencyKeyStatus;
+import jakarta.transaction.Transactional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, IdempotencyKeyId> {
+
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO idempotency_keys (username, idempotency_key, request_hash, status, created_at) " +
+            "VALUES (:username, :key, :requestHash, 'IN_PROGRESS', CURRENT_TIMESTAMP) " +
+            "ON CONFLICT DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(@Param("username") String username,
+                       @Param("key") String key,
+                       @Param("requestHash") String requestHash);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE IdempotencyKey k SET k.status = :status, k.responseBody = :responseBody WHERE k.id = :id")
+    int complete(@Param("id") IdempotencyKeyId id,
+                 @Param("responseBody") String responseBody,
+                 @Param("status") IdempotencyKeyStatus status);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM IdempotencyKey k WHERE k.createdAt < :threshold")
+    int deleteCreatedBefore(@Param("threshold") Instant threshold);
+}
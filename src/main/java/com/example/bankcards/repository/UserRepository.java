@@ -1,15 +1,41 @@
 package com.example.bankcards.repository;
 
 import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.UserStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends JpaRepository<User, Long>, UserRepositoryCustom {
 
     Optional<User> findByUsername(String username);
 
     boolean existsByUsername(String username);
 
     boolean existsByEmail(String email);
+
+    @Query("SELECT u.username FROM User u WHERE u.id IN :ids")
+    List<String> findUsernamesByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("UPDATE User u SET u.status = :status WHERE u.id IN :ids")
+    int updateStatusByIdIn(@Param("ids") Collection<Long> ids, @Param("status") UserStatus status);
+
+    @Query("SELECT u.tokensRevokedAt FROM User u WHERE u.username = :username")
+    Optional<Instant> findTokensRevokedAtByUsername(@Param("username") String username);
+
+    @Modifying
+    @Query("UPDATE User u SET u.tokensRevokedAt = :revokedAt WHERE u.username IN :usernames")
+    int updateTokensRevokedAtByUsernameIn(@Param("usernames") Collection<String> usernames,
+                                          @Param("revokedAt") Instant revokedAt);
+
+    @Modifying
+    @Query("UPDATE User u SET u.tokensRevokedAt = NULL WHERE u.tokensRevokedAt < :cutoff")
+    int clearTokensRevokedAtBefore(@Param("cutoff") Instant cutoff);
 }
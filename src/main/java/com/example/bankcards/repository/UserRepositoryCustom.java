@@ -0,0 +1,15 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.User;
+
+import java.util.List;
+
+public interface UserRepositoryCustom {
+
+    /**
+     * Вставляет пользователей многострочными INSERT ... SELECT, выделяя id через nextval('users_seq').
+     * Строки, нарушающие уникальность username или email, пропускаются.
+     * Возвращает пользователей, которые не были вставлены
+     */
+    List<User> insertAllSkippingDuplicates(List<User> users);
+}
@@ -0,0 +1,80 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.User;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RequiredArgsConstructor
+public class UserRepositoryCustomImpl implements UserRepositoryCustom {
+
+    private static final int BATCH_SIZE = 500;
+    private static final int COLUMNS = 8;
+
+    // id берётся из nextval('users_seq') на каждую строку: значение последовательности —
+    // верхняя граница диапазона, который pooled-оптимизатор Hibernate отдал бы под него,
+    // поэтому с id, выделенными Hibernate, такие id не пересекаются при любом incrementBy
+    private static final String INSERT_PREFIX =
+            "INSERT INTO users (id, username, password, email, first_name, last_name, status, role, created_at) "
+                    + "SELECT nextval('users_seq'), v.* FROM (VALUES ";
+    private static final String ROW = "(?, ?, ?, ?, ?, ?, ?, CAST(? AS TIMESTAMP WITH TIME ZONE))";
+    private static final String INSERT_SUFFIX =
+            ") AS v (username, password, email, first_name, last_name, status, role, created_at) "
+                    + "ON CONFLICT DO NOTHING RETURNING username";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<User> insertAllSkippingDuplicates(List<User> users) {
+        List<User> skipped = new ArrayList<>();
+        for (int from = 0; from < users.size(); from += BATCH_SIZE) {
+            List<User> batch = users.subList(from, Math.min(from + BATCH_SIZE, users.size()));
+            skipped.addAll(insertBatch(batch));
+        }
+        return skipped;
+    }
+
+    private List<User> insertBatch(List<User> batch) {
+        String sql = INSERT_PREFIX
+                + String.join(", ", Collections.nCopies(batch.size(), ROW))
+                + INSERT_SUFFIX;
+        Object[] args = new Object[batch.size() * COLUMNS];
+        int i = 0;
+        for (User user : batch) {
+            args[i++] = user.getUsername();
+            args[i++] = user.getPassword();
+            args[i++] = user.getEmail();
+            args[i++] = user.getFirstName();
+            args[i++] = user.getLastName();
+            args[i++] = user.getStatus().name();
+            args[i++] = user.getRole().name();
+            args[i++] = Timestamp.from(user.getCreatedAt());
+        }
+
+        // Одинаковый username может встретиться в batch'е дважды, а вставится только одна строка,
+        // поэтому каждый возвращённый username засчитывается одному пользователю
+        Map<String, Integer> inserted = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            inserted.merge(rs.getString("username"), 1, Integer::sum);
+        }, args);
+
+        List<User> skipped = new ArrayList<>();
+        for (User user : batch) {
+            Integer count = inserted.get(user.getUsername());
+            if (count == null) {
+                skipped.add(user);
+            } else if (count == 1) {
+                inserted.remove(user.getUsername());
+            } else {
+                inserted.put(user.getUsername(), count - 1);
+            }
+        }
+        return skipped;
+    }
+}
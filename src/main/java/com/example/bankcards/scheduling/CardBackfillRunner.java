@@ -0,0 +1,48 @@
+package com.example.bankcards.scheduling;
+
+import com.example.bankcards.service.CardBackfillService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Заполнение last4 и card_number_hash входит в выкладку: включено по умолчанию и
+ * запускается на каждом старте, пока есть незаполненные карты. Запуск не задерживается —
+ * заполнение идёт в отдельном потоке под SchedulerLock, так что работает один узел.
+ * Когда заполнять нечего, это один запрос по частичному индексу idx_cards_backfill_pending
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "bankcards.backfill.enabled", havingValue = "true", matchIfMissing = true)
+public class CardBackfillRunner implements ApplicationRunner {
+
+    private static final String LOCK_NAME = "card-backfill";
+
+    private final CardBackfillService cardBackfillService;
+    private final SchedulerLock schedulerLock;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        Thread thread = new Thread(this::backfill, "card-backfill");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void backfill() {
+        try {
+            boolean ran = schedulerLock.runLocked(LOCK_NAME, () -> {
+                int updated = cardBackfillService.backfillCardNumberData();
+                log.info("Card backfill finished, cards updated: {}", updated);
+            });
+            if (!ran) {
+                log.info("Card backfill is running on another node");
+            }
+        } catch (RuntimeException e) {
+            log.error("Card backfill failed, it will be retried on next start", e);
+        }
+    }
+}
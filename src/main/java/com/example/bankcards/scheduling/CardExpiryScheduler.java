@@ -9,10 +9,14 @@ import org.springframework.stereotype.Component;
 @RequiredArgsConstructor
 public class CardExpiryScheduler {
 
+    private static final String LOCK_NAME = "card-expiry";
+
     private final CardStatusSchedulerService cardStatusSchedulerService;
+    private final SchedulerLock schedulerLock;
 
-    @Scheduled(cron = "0 0 12 * * ?")  // каждый день в 12:00
+    // Сверка: подбирает карты, которые не истекли по колесу таймеров (например, узел был выключен в момент истечения)
+    @Scheduled(cron = "${bankcards.card-expiry.reconcile-cron:0 0 12 * * ?}")
     public void scheduledUpdate() {
-        cardStatusSchedulerService.updateExpiredCardsStatus();
+        schedulerLock.runLocked(LOCK_NAME, cardStatusSchedulerService::updateExpiredCardsStatus);
     }
 }
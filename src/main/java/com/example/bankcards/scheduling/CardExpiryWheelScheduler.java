@@ -0,0 +1,58 @@
+package com.example.bankcards.scheduling;
+
+import com.example.bankcards.config.CardExpiryProperties;
+import com.example.bankcards.service.CardExpiryWheelService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Колесо загружается на каждой реплике. Тик сначала забирает сработавшие карты
+ * из колеса в памяти и только если они есть, берёт SchedulerLock: пустые тики
+ * не пишут в scheduler_locks. Истекает карты один узел, у остальных те же карты
+ * возвращаются в очередь и при следующем захвате блокировки дают пустой UPDATE
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "bankcards.card-expiry.wheel-enabled", havingValue = "true", matchIfMissing = true)
+public class CardExpiryWheelScheduler {
+
+    private static final String LOCK_NAME = "card-expiry-wheel";
+
+    private final CardExpiryWheelService cardExpiryWheelService;
+    private final CardExpiryProperties properties;
+    private final SchedulerLock schedulerLock;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        cardExpiryWheelService.loadHorizon();
+    }
+
+    @Scheduled(cron = "0 30 0 * * ?")  // каждый день в 00:30 сдвигаем горизонт
+    public void extendHorizon() {
+        cardExpiryWheelService.loadHorizon();
+    }
+
+    @Scheduled(fixedDelayString = "${bankcards.card-expiry.wheel-tick:1s}")
+    public void expireDue() {
+        List<Long> due = cardExpiryWheelService.pollDue();
+        if (due.isEmpty()) {
+            return;
+        }
+        boolean expired = false;
+        try {
+            // держим блокировку половину тика, чтобы другой узел не повторил тот же тик
+            expired = schedulerLock.runLocked(LOCK_NAME, properties.getWheelTick().dividedBy(2),
+                    () -> cardExpiryWheelService.expire(due));
+        } finally {
+            if (!expired) {
+                cardExpiryWheelService.requeue(due);
+            }
+        }
+    }
+}
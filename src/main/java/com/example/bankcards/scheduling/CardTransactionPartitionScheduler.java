@@ -0,0 +1,58 @@
+package com.example.bankcards.scheduling;
+
+import com.example.bankcards.repository.CardTransactionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.YearMonth;
+
+/**
+ * Заранее создаёт месячные партиции card_transactions, чтобы новые операции
+ * не попадали в партицию DEFAULT. Если строки месяца всё же попали в DEFAULT,
+ * создание партиции переносит их туда
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CardTransactionPartitionScheduler {
+
+    private static final String LOCK_NAME = "card-transactions-partitions";
+    private static final int MONTHS_AHEAD = 3;
+
+    private final CardTransactionRepository cardTransactionRepository;
+    private final SchedulerLock schedulerLock;
+
+    /**
+     * Ошибка здесь не останавливает приложение: пока партиции нет, строки её месяца
+     * пишутся в DEFAULT, а плановый запуск создаст партицию и перенесёт их из DEFAULT
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void createOnStartup() {
+        try {
+            schedulerLock.runLocked(LOCK_NAME, this::createUpcomingPartitions);
+        } catch (RuntimeException e) {
+            log.error("Failed to create card_transactions partitions on startup", e);
+        }
+    }
+
+    @Scheduled(cron = "0 0 3 1 * ?")  // первого числа каждого месяца в 03:00
+    public void scheduledCreate() {
+        schedulerLock.runLocked(LOCK_NAME, this::createUpcomingPartitions);
+    }
+
+    void createUpcomingPartitions() {
+        YearMonth current = YearMonth.now();
+        for (int i = 0; i <= MONTHS_AHEAD; i++) {
+            YearMonth month = current.plusMonths(i);
+            try {
+                cardTransactionRepository.createMonthlyPartition(month);
+            } catch (RuntimeException e) {
+                log.error("Failed to create card_transactions partition for {}", month, e);
+            }
+        }
+    }
+}
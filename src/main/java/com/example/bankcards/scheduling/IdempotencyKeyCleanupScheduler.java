@@ -0,0 +1,18 @@
+package com.example.bankcards.scheduling;
+
+import com.example.bankcards.service.IdempotencyService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+public class IdempotencyKeyCleanupScheduler {
+
+    private final IdempotencyService idempotencyService;
+
+    @Scheduled(cron = "0 */15 * * * ?")  // каждые 15 минут
+    public void evictExpiredKeys() {
+        idempotencyService.evictExpired();
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.bankcards.scheduling;
+
+import com.example.bankcards.config.SchedulerLockProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Блокировка запланированных задач между репликами на таблице scheduler_locks.
+ * Узел, захвативший lease, выполняет задачу и продлевает lease heartbeat'ом,
+ * остальные сразу пропускают запуск. Время берётся из БД, поэтому расхождение
+ * часов между узлами не влияет на срок блокировки
+ */
+@Slf4j
+@Component
+public class SchedulerLock implements DisposableBean {
+
+    private static final String ACQUIRE_SQL =
+            "INSERT INTO scheduler_locks (name, locked_by, locked_at, lock_until) "
+                    + "VALUES (?, ?, now(), now() + make_interval(secs => ?)) "
+                    + "ON CONFLICT (name) DO UPDATE SET locked_by = EXCLUDED.locked_by, "
+                    + "locked_at = EXCLUDED.locked_at, lock_until = EXCLUDED.lock_until "
+                    + "WHERE scheduler_locks.lock_until <= now()";
+    private static final String EXTEND_SQL =
+            "UPDATE scheduler_locks SET lock_until = now() + make_interval(secs => ?) "
+                    + "WHERE name = ? AND locked_by = ?";
+    // блокировка держится не меньше minHold от захвата: узел, у которого тот же cron
+    // сработал чуть позже, не должен повторно выполнить уже завершённый короткий запуск
+    private static final String RELEASE_SQL =
+            "UPDATE scheduler_locks SET lock_until = GREATEST(now(), locked_at + make_interval(secs => ?)) "
+                    + "WHERE name = ? AND locked_by = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SchedulerLockProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final String nodeId;
+    private final ScheduledExecutorService heartbeatExecutor;
+    private final Map<String, AtomicInteger> held = new ConcurrentHashMap<>();
+
+    public SchedulerLock(JdbcTemplate jdbcTemplate, SchedulerLockProperties properties, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.nodeId = properties.getNodeId() != null
+                ? properties.getNodeId()
+                : ManagementFactory.getRuntimeMXBean().getName();
+        this.heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "scheduler-lock-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Выполняет задачу, если удалось захватить блокировку name.
+     * Возвращает false, если блокировку держит другой узел
+     */
+    public boolean runLocked(String name, Runnable task) {
+        return runLocked(name, properties.getMinHold(), task);
+    }
+
+    /**
+     * Как {@link #runLocked(String, Runnable)}, но блокировка освобождается не раньше
+     * minHold от захвата. minHold должен быть меньше интервала между запусками задачи
+     */
+    public boolean runLocked(String name, Duration minHold, Runnable task) {
+        if (!tryAcquire(name)) {
+            Counter.builder("scheduler.lock.skipped")
+                    .description("Запуски, пропущенные из-за блокировки на другом узле")
+                    .tag("name", name)
+                    .register(meterRegistry)
+                    .increment();
+            log.info("Scheduler lock {} is held by another node, skipping", name);
+            return false;
+        }
+
+        AtomicInteger holding = holdingGauge(name);
+        holding.set(1);
+        long heartbeatMillis = properties.getHeartbeat().toMillis();
+        ScheduledFuture<?> heartbeat = heartbeatExecutor.scheduleAtFixedRate(
+                () -> extend(name), heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            task.run();
+            return true;
+        } finally {
+            heartbeat.cancel(false);
+            sample.stop(Timer.builder("scheduler.lock.duration")
+                    .description("Сколько узел держал блокировку задачи")
+                    .tag("name", name)
+                    .register(meterRegistry));
+            holding.set(0);
+            release(name, minHold);
+        }
+    }
+
+    private boolean tryAcquire(String name) {
+        return jdbcTemplate.update(ACQUIRE_SQL, name, nodeId, properties.getLease().toSeconds()) == 1;
+    }
+
+    private void extend(String name) {
+        try {
+            if (jdbcTemplate.update(EXTEND_SQL, properties.getLease().toSeconds(), name, nodeId) == 0) {
+                log.warn("Scheduler lock {} was lost by node {}", name, nodeId);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to extend scheduler lock {}", name, e);
+        }
+    }
+
+    private void release(String name, Duration minHold) {
+        try {
+            jdbcTemplate.update(RELEASE_SQL, minHold.toMillis() / 1000.0, name, nodeId);
+        } catch (RuntimeException e) {
+            log.warn("Failed to release scheduler lock {}, it expires with the lease", name, e);
+        }
+    }
+
+    private AtomicInteger holdingGauge(String name) {
+        return held.computeIfAbsent(name, key -> {
+            AtomicInteger value = new AtomicInteger();
+            Gauge.builder("scheduler.lock.owner", value, AtomicInteger::get)
+                    .description("1, если этот узел сейчас держит блокировку задачи")
+                    .tag("name", key)
+                    .tag("node", nodeId)
+                    .register(meterRegistry);
+            return value;
+        });
+    }
+
+    @Override
+    public void destroy() {
+        heartbeatExecutor.shutdownNow();
+    }
+}
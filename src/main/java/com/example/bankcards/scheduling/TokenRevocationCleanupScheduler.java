@@ -0,0 +1,18 @@
+package com.example.bankcards.scheduling;
+
+import com.example.bankcards.security.TokenRevocationService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+public class TokenRevocationCleanupScheduler {
+
+    private final TokenRevocationService tokenRevocationService;
+
+    @Scheduled(cron = "0 0 * * * ?")  // каждый час
+    public void evictExpiredRevocations() {
+        tokenRevocationService.evictExpired();
+    }
+}
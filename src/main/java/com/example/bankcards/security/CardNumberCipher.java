@@ -0,0 +1,114 @@
+package com.example.bankcards.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Шифрование номеров карт. Ключ создаётся один раз, а инициализированные
+ * экземпляры Cipher хранятся в ThreadLocal: Cipher не потокобезопасен, но после
+ * doFinal возвращается в исходное состояние и может использоваться повторно.
+ * Для поиска и проверки уникальности номер хешируется HMAC-SHA256 на отдельном
+ * ключе (blind index), поэтому поиск не зависит от детерминированности шифра
+ */
+@Component
+public class CardNumberCipher {
+
+    private static final String ALGORITHM = "AES";
+    private static final String HASH_ALGORITHM = "HmacSHA256";
+    private static final Pattern CARD_NUMBER = Pattern.compile("\\d{12,19}");
+
+    private final ThreadLocal<Cipher> encryptCipher;
+    private final ThreadLocal<Cipher> decryptCipher;
+    private final ThreadLocal<Mac> hashMac;
+
+    public CardNumberCipher(@Value("${bankcards.card-number-key}") String key,
+                            @Value("${bankcards.card-number-hash-key}") String hashKey) {
+        SecretKeySpec secretKey = new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        SecretKeySpec secretHashKey = new SecretKeySpec(hashKey.getBytes(StandardCharsets.UTF_8), HASH_ALGORITHM);
+        this.encryptCipher = ThreadLocal.withInitial(() -> initCipher(Cipher.ENCRYPT_MODE, secretKey));
+        this.decryptCipher = ThreadLocal.withInitial(() -> initCipher(Cipher.DECRYPT_MODE, secretKey));
+        this.hashMac = ThreadLocal.withInitial(() -> initMac(secretHashKey));
+        initCipher(Cipher.ENCRYPT_MODE, secretKey); // ключ недопустимой длины должен ронять запуск, а не первый запрос
+    }
+
+    public String encrypt(String cardNumber) {
+        try {
+            byte[] encrypted = encryptCipher.get().doFinal(cardNumber.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(encrypted);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to encrypt card number", e);
+        }
+    }
+
+    public String decrypt(String encryptedCardNumber) {
+        try {
+            byte[] decoded = Base64.getDecoder().decode(encryptedCardNumber);
+            return new String(decryptCipher.get().doFinal(decoded), StandardCharsets.UTF_8);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to decrypt card number", e);
+        }
+    }
+
+    /**
+     * Расшифровывает номер карты из колонки card_number. Карты, выпущенные до исправления
+     * createCard, были зашифрованы дважды — такой номер расшифровывается ещё раз
+     */
+    public String decryptCardNumber(String encryptedCardNumber) {
+        String cardNumber = decrypt(encryptedCardNumber);
+        if (!CARD_NUMBER.matcher(cardNumber).matches()) {
+            cardNumber = decrypt(cardNumber);
+            if (!CARD_NUMBER.matcher(cardNumber).matches()) {
+                throw new IllegalStateException("Decrypted value is not a card number");
+            }
+        }
+        return cardNumber;
+    }
+
+    /**
+     * Значения card_number, под которыми номер может лежать у карт, ещё не получивших
+     * card_number_hash: зашифрованный один раз и, как у карт до исправления createCard, дважды.
+     * Шифр детерминированный (AES/ECB), поэтому такие карты можно искать по равенству
+     */
+    public List<String> legacyEncryptedForms(String cardNumber) {
+        String encrypted = encrypt(cardNumber);
+        return List.of(encrypted, encrypt(encrypted));
+    }
+
+    /**
+     * Blind index номера карты: HMAC-SHA256 в hex, 64 символа
+     */
+    public String hash(String cardNumber) {
+        byte[] digest = hashMac.get().doFinal(cardNumber.getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest);
+    }
+
+    private static Mac initMac(SecretKeySpec secretKey) {
+        try {
+            Mac mac = Mac.getInstance(HASH_ALGORITHM);
+            mac.init(secretKey);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to initialize " + HASH_ALGORITHM, e);
+        }
+    }
+
+    private static Cipher initCipher(int mode, SecretKeySpec secretKey) {
+        try {
+            Cipher cipher = Cipher.getInstance(ALGORITHM);
+            cipher.init(mode, secretKey);
+            return cipher;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to initialize " + ALGORITHM + " cipher", e);
+        }
+    }
+}
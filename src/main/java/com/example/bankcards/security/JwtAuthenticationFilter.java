@@ -1,48 +1,77 @@
 package com.example.bankcards.security;
 
+import com.example.bankcards.exception.TooManyRequestsException;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.List;
 
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtProvider jwtProvider;
     private final UserDetailsServiceImpl userDetailsService;
+    private final TokenRevocationService tokenRevocationService;
+    private final boolean stateless;
 
-    public JwtAuthenticationFilter(JwtProvider jwtProvider, UserDetailsServiceImpl userDetailsService) {
+    public JwtAuthenticationFilter(JwtProvider jwtProvider, UserDetailsServiceImpl userDetailsService,
+                                   TokenRevocationService tokenRevocationService, boolean stateless) {
         this.jwtProvider = jwtProvider;
         this.userDetailsService = userDetailsService;
+        this.tokenRevocationService = tokenRevocationService;
+        this.stateless = stateless;
     }
 
     @Override
     protected void doFilterInternal(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response, @NonNull FilterChain filterChain)
             throws ServletException, IOException {
         String jwt = getJwtFromRequest(request);
+        Claims claims = jwt != null ? jwtProvider.parseClaims(jwt) : null;
 
-        if (jwt != null && jwtProvider.validateToken(jwt)) {
-            String username = jwtProvider.getUsernameFromJwt(jwt);
+        try {
+            if (claims != null && !tokenRevocationService.isRevoked(claims.getSubject(), claims.getIssuedAt())) {
+                // в stateless-режиме роли берутся из токена, без обращения к БД
+                UserDetails userDetails = stateless
+                        ? userDetailsFromClaims(claims)
+                        : userDetailsService.loadUserByUsername(claims.getSubject());
+                UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                        userDetails, null, userDetails.getAuthorities()
+                );
+                authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
 
-            UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-            UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
-                    userDetails, null, userDetails.getAuthorities()
-            );
-            authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-
-            SecurityContextHolder.getContext().setAuthentication(authentication);
+                SecurityContextHolder.getContext().setAuthentication(authentication);
+            }
+        } catch (TooManyRequestsException e) {
+            // фильтр работает до DispatcherServlet, поэтому @ResponseStatus исключения здесь не срабатывает
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.getWriter().write(e.getMessage());
+            return;
         }
 
         filterChain.doFilter(request, response);
     }
 
+    private UserDetails userDetailsFromClaims(Claims claims) {
+        List<?> roles = claims.get("roles", List.class);
+        List<GrantedAuthority> authorities = roles == null
+                ? List.of()
+                : roles.stream().<GrantedAuthority>map(role -> new SimpleGrantedAuthority(String.valueOf(role))).toList();
+        return new User(claims.getSubject(), "", authorities);
+    }
+
     private String getJwtFromRequest(HttpServletRequest request) {
         String bearerToken = request.getHeader("Authorization");
         if (bearerToken != null && bearerToken.startsWith("Bearer ")) {
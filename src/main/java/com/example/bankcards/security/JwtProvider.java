@@ -1,5 +1,9 @@
 package com.example.bankcards.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.MalformedJwtException;
@@ -12,7 +16,12 @@ import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.util.Date;
+import java.util.HexFormat;
 import java.util.List;
 
 
@@ -20,12 +29,27 @@ import java.util.List;
 @Slf4j
 public class JwtProvider {
 
+    private static final int CLAIMS_CACHE_MAX_SIZE = 10_000;
+
     @Value("${jwt.secret}")
     private String jwtSecret;
 
     @Value("${jwt.expirationMs}")
     private long jwtExpirationMs;
 
+    @Value("${jwt.claims-cache-enabled:true}")
+    private boolean claimsCacheEnabled = true;
+
+    /**
+     * Разобранные claims по SHA-256 токена; запись живёт до истечения токена,
+     * поэтому повторный запрос с тем же токеном не проверяет подпись заново
+     */
+    private final Cache<String, Claims> claimsCache = Caffeine.newBuilder()
+            .maximumSize(CLAIMS_CACHE_MAX_SIZE)
+            .expireAfter(Expiry.<String, Claims>creating((digest, claims) ->
+                    Duration.ofMillis(Math.max(0, claims.getExpiration().getTime() - System.currentTimeMillis()))))
+            .build();
+
     public String generateToken(Authentication authentication) {
         UserDetails userPrincipal = (UserDetails) authentication.getPrincipal();
         List<String> roles = userPrincipal.getAuthorities().stream()
@@ -43,21 +67,33 @@ public class JwtProvider {
                 .compact();
     }
 
-    public String getUsernameFromJwt(String token) {
-        return Jwts.parser()
-                .setSigningKey(jwtSecret)
-                .parseClaimsJws(token)
-                .getBody()
-                .getSubject();
+    /**
+     * Проверяет подпись и срок действия токена за один разбор
+     * и возвращает его claims, для недействительного токена — null
+     */
+    public Claims parseClaims(String token) {
+        if (!claimsCacheEnabled || token == null || token.isEmpty()) {
+            return verifyAndParse(token);
+        }
+        String digest = digest(token);
+        Claims claims = claimsCache.getIfPresent(digest);
+        if (claims == null) {
+            claims = verifyAndParse(token);
+            if (claims != null && claims.getExpiration() != null) {
+                claimsCache.put(digest, claims);
+            }
+        }
+        return claims;
     }
 
-    public boolean validateToken(String token) {
+    private Claims verifyAndParse(String token) {
         try {
-            Jwts.parser()
+            Claims claims = Jwts.parser()
                     .setSigningKey(jwtSecret)
-                    .parseClaimsJws(token);
+                    .parseClaimsJws(token)
+                    .getBody();
             log.debug("JWT token is valid");
-            return true;
+            return claims;
         } catch (SecurityException | MalformedJwtException e) {
             log.error("Invalid JWT signature or malformed token: {}", e.getMessage());
         } catch (ExpiredJwtException e) {
@@ -69,6 +105,15 @@ public class JwtProvider {
         } catch (Exception e) {
             log.error("Unexpected error during token validation: {}", e.getMessage(), e);
         }
-        return false;
+        return null;
+    }
+
+    private String digest(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
     }
 }
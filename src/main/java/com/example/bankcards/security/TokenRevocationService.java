@@ -0,0 +1,72 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Отзыв JWT: для пользователя в users.tokens_revoked_at хранится момент, раньше
+ * которого выданные ему токены недействительны. Значение видно всем узлам и
+ * переживает перезапуск; на узле оно кэшируется на revocation-cache-ttl, поэтому
+ * другие узлы перестают принимать отозванные токены с задержкой не больше TTL
+ */
+@Component
+public class TokenRevocationService {
+
+    private final UserRepository userRepository;
+    private final long jwtExpirationMs;
+    private final Cache<String, Optional<Instant>> revokedBefore;
+
+    public TokenRevocationService(UserRepository userRepository,
+                                  @Value("${jwt.expirationMs}") long jwtExpirationMs,
+                                  @Value("${jwt.revocation-cache-ttl:10s}") Duration cacheTtl) {
+        this.userRepository = userRepository;
+        this.jwtExpirationMs = jwtExpirationMs;
+        this.revokedBefore = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(cacheTtl)
+                .build();
+    }
+
+    public void revokeAll(String username) {
+        revokeAll(List.of(username));
+    }
+
+    @Transactional
+    public void revokeAll(Collection<String> usernames) {
+        if (usernames.isEmpty()) {
+            return;
+        }
+        Instant now = Instant.now();
+        userRepository.updateTokensRevokedAtByUsernameIn(usernames, now);
+        // на этом узле отзыв действует сразу, не дожидаясь истечения TTL
+        usernames.forEach(username -> revokedBefore.put(username, Optional.of(now)));
+    }
+
+    public boolean isRevoked(String username, Date issuedAt) {
+        Optional<Instant> revokedAt = revokedBefore.get(username, userRepository::findTokensRevokedAtByUsername);
+        if (revokedAt.isEmpty()) {
+            return false;
+        }
+        // iat хранится с точностью до секунды, поэтому токен той же секунды тоже считается отозванным
+        return issuedAt == null || !issuedAt.toInstant().isAfter(revokedAt.get());
+    }
+
+    /**
+     * Стирает отметки, раньше которых уже истекли все выданные токены
+     */
+    @Transactional
+    public void evictExpired() {
+        userRepository.clearTokensRevokedAtBefore(Instant.now().minusMillis(jwtExpirationMs));
+    }
+}
@@ -3,26 +3,30 @@ package com.example.bankcards.security;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.entity.enums.UserRole;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.UserCache;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Collection;
 import java.util.List;
 
 @Service
 @RequiredArgsConstructor
-public class UserDetailsServiceImpl implements UserDetailsService {
+public class UserDetailsServiceImpl implements UserDetailsService, UserDetailsPasswordService {
 
+    private final UserCache userCache;
     private final UserRepository userRepository;
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        User user = userRepository.findByUsername(username)
+        User user = userCache.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found: " + username));
 
         return new org.springframework.security.core.userdetails.User(
@@ -32,6 +36,25 @@ public class UserDetailsServiceImpl implements UserDetailsService {
         );
     }
 
+    /**
+     * Сохраняет хэш, пересчитанный при входе с новым cost factor
+     */
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+        User user = userRepository.findByUsername(userDetails.getUsername())
+                .orElseThrow(() -> new UsernameNotFoundException("User not found: " + userDetails.getUsername()));
+        user.setPassword(newPassword);
+        userRepository.save(user);
+        userCache.evict(user.getUsername());
+
+        return new org.springframework.security.core.userdetails.User(
+                user.getUsername(),
+                newPassword,
+                userDetails.getAuthorities()
+        );
+    }
+
     private Collection<? extends GrantedAuthority> mapRoleToAuthorities(UserRole role) {
         return List.of(new SimpleGrantedAuthority("ROLE_" + role.name()));
     }
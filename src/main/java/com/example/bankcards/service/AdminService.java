@@ -1,31 +1,48 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.dto.BulkUserStatusResultDto;
 import com.example.bankcards.dto.CardDto;
 import com.example.bankcards.dto.CardRequestDto;
+import com.example.bankcards.dto.CardSliceDto;
+import com.example.bankcards.dto.CardView;
+import com.example.bankcards.dto.ImportedUserDto;
 import com.example.bankcards.dto.UserDto;
+import com.example.bankcards.dto.UserImportResultDto;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.CardRequest;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.entity.enums.CardRequestStatus;
 import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.entity.enums.UserRole;
 import com.example.bankcards.entity.enums.UserStatus;
 import com.example.bankcards.repository.CardRepository;
 import com.example.bankcards.repository.CardRequestRepository;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.TokenRevocationService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class AdminService {
 
+    private static final int MAX_SCROLL_LIMIT = 100;
+
     private final UserRepository userRepository;
     private final CardRepository cardRepository;
     private final CardRequestRepository cardRequestRepository;
+    private final UserCache userCache;
+    private final TokenRevocationService tokenRevocationService;
+    private final CardDtoMapper cardDtoMapper;
 
     @Transactional
     public void updateCardRequestStatus(Long requestId, String status) {
@@ -73,12 +90,31 @@ public class AdminService {
     }
 
     public List<CardDto> getAllCards() {
-        List<Card> cards = cardRepository.findAll();
+        List<CardView> cards = cardRepository.findAllViews();
         return cards.stream()
-                .map(this::toCardDto)
+                .map(cardDtoMapper::toAdminDto)
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Порция всех карт с id больше after, без подсчёта общего количества
+     */
+    @Transactional(readOnly = true)
+    public CardSliceDto scrollAllCards(Long after, int limit) {
+        int size = Math.min(Math.max(limit, 1), MAX_SCROLL_LIMIT);
+        List<CardView> cards = cardRepository.findViewsAfter(after == null ? 0L : after, Limit.of(size + 1));
+
+        boolean hasNext = cards.size() > size;
+        List<CardView> content = hasNext ? cards.subList(0, size) : cards;
+        CardSliceDto slice = new CardSliceDto();
+        slice.setContent(content.stream().map(cardDtoMapper::toAdminDto).collect(Collectors.toList()));
+        slice.setHasNext(hasNext);
+        if (hasNext) {
+            slice.setNextCursor(content.get(content.size() - 1).id());
+        }
+        return slice;
+    }
+
     @Transactional
     public void updateUserStatus(Long userId, String status) {
         User user = userRepository.findById(userId)
@@ -86,14 +122,68 @@ public class AdminService {
 
         user.setStatus(UserStatus.valueOf(status));
         userRepository.save(user);
+        userCache.evict(user.getUsername());
 
         if ("BLOCKED".equalsIgnoreCase(status) || "EXPIRED".equalsIgnoreCase(status)) {
-            List<Card> cards = cardRepository.findByUser(user);
-            cards.forEach(card -> card.setStatus(CardStatus.BLOCKED));
-            cardRepository.saveAll(cards);
+            tokenRevocationService.revokeAll(user.getUsername());
+            cardRepository.blockAllByUserId(user.getId());
         }
     }
 
+    /**
+     * Блокирует или разблокирует сразу много пользователей: по одному UPDATE
+     * на пользователей и на карты, без загрузки сущностей. Как и updateUserStatus,
+     * разблокировка карты не трогает: по статусу карты нельзя отличить блокировку
+     * вместе с пользователем от блокировки самой карты
+     */
+    @Transactional
+    public BulkUserStatusResultDto updateUsersStatus(Collection<Long> userIds, UserStatus status) {
+        Set<Long> ids = new HashSet<>(userIds);
+        List<String> usernames = userRepository.findUsernamesByIdIn(ids);
+
+        int updatedUsers = userRepository.updateStatusByIdIn(ids, status);
+        int updatedCards = status == UserStatus.BLOCKED ? cardRepository.blockAllByUserIdIn(ids) : 0;
+
+        usernames.forEach(userCache::evict);
+        if (status == UserStatus.BLOCKED) {
+            tokenRevocationService.revokeAll(usernames);
+        }
+
+        BulkUserStatusResultDto result = new BulkUserStatusResultDto();
+        result.setUpdatedUsers(updatedUsers);
+        result.setUpdatedCards(updatedCards);
+        return result;
+    }
+
+    /**
+     * Массовый перенос пользователей из внешней системы с уже посчитанными BCrypt-хешами.
+     * Дубликаты по username или email не прерывают импорт, а возвращаются в ответе
+     */
+    @Transactional
+    public UserImportResultDto importUsers(List<ImportedUserDto> users) {
+        Instant now = Instant.now();
+        List<User> entities = users.stream()
+                .map(user -> User.builder()
+                        .username(user.getUsername())
+                        .email(user.getEmail())
+                        .password(user.getPasswordHash())
+                        .firstName(user.getFirstName())
+                        .lastName(user.getLastName())
+                        .role(UserRole.USER)
+                        .status(UserStatus.ACTIVE)
+                        .createdAt(now)
+                        .build())
+                .collect(Collectors.toList());
+
+        List<User> skipped = userRepository.insertAllSkippingDuplicates(entities);
+
+        UserImportResultDto result = new UserImportResultDto();
+        result.setImported(entities.size() - skipped.size());
+        result.setSkipped(skipped.size());
+        result.setSkippedUsernames(skipped.stream().map(User::getUsername).collect(Collectors.toList()));
+        return result;
+    }
+
     public List<UserDto> getAllUsers() {
         List<User> users = userRepository.findAll();
         return users.stream()
@@ -101,13 +191,6 @@ public class AdminService {
                 .collect(Collectors.toList());
     }
 
-    private String maskCardNumber(String cardNumber) {
-        if (cardNumber == null || cardNumber.length() < 4) return "****";
-        int length = cardNumber.length();
-        String last4 = cardNumber.substring(length - 4);
-        return "**** **** **** " + last4;
-    }
-
     private UserDto toUserDto(User user) {
         UserDto dto = new UserDto();
         dto.setId(user.getId());
@@ -127,22 +210,4 @@ public class AdminService {
         dto.setCreatedAt(request.getCreatedAt());
         return dto;
     }
-
-    private CardDto toCardDto(Card card) {
-        CardDto dto = new CardDto();
-
-        dto.setId(card.getId());
-        dto.setMaskedCardNumber(maskCardNumber(card.getCardNumber()));
-        dto.setOwnerName(card.getUser().getUsername());
-        if (card.getExpiryDate() != null) {
-            dto.setExpiryDate(card.getExpiryDate());
-        }
-        dto.setStatus(String.valueOf(card.getStatus()));
-        dto.setBalance(card.getBalance());
-        if (card.getCreatedAt() != null) {
-            dto.setCreatedAt(card.getCreatedAt().toString());
-        }
-
-        return dto;
-    }
-}
\ No newline at end of file
+}
@@ -6,9 +6,12 @@ import com.example.bankcards.dto.RegisterRequest;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.entity.enums.UserRole;
 import com.example.bankcards.entity.enums.UserStatus;
+import com.example.bankcards.exception.UserAlreadyExistsException;
 import com.example.bankcards.repository.UserRepository;
 import com.example.bankcards.security.JwtProvider;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
@@ -22,19 +25,23 @@ import java.time.Instant;
 @RequiredArgsConstructor
 public class AuthService {
 
+    private static final String UNIQUE_VIOLATION = "23505";
+    // имена, которые PostgreSQL дал ограничениям unique колонок username и email
+    // из changeSet table_1 (creating-tables.yml)
+    private static final String USERNAME_CONSTRAINT = "users_username_key";
+    private static final String EMAIL_CONSTRAINT = "users_email_key";
+
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final JwtProvider jwtProvider;
     private final AuthenticationManager authenticationManager;
+    private final UserCache userCache;
 
+    /**
+     * Уникальность username и email проверяет сама БД: вместо двух exists-запросов
+     * перед вставкой нарушение ограничения переводится в понятную ошибку
+     */
     public void register(RegisterRequest request) {
-        if (userRepository.existsByUsername(request.getUsername())) {
-            throw new RuntimeException("Username is already taken");
-        }
-        if (userRepository.existsByEmail(request.getEmail())) {
-            throw new RuntimeException("Email is already taken");
-        }
-
         User user = User.builder()
                 .username(request.getUsername())
                 .email(request.getEmail())
@@ -46,7 +53,12 @@ public class AuthService {
                 .createdAt(Instant.now())
                 .build();
 
-        userRepository.save(user);
+        try {
+            userRepository.saveAndFlush(user);
+        } catch (DataIntegrityViolationException e) {
+            throw toUserAlreadyExists(e);
+        }
+        userCache.evict(user.getUsername());
     }
 
     public AuthResponse login(LoginRequest request) {
@@ -57,4 +69,27 @@ public class AuthService {
         String jwt = jwtProvider.generateToken(authentication);
         return new AuthResponse(jwt);
     }
+
+    private RuntimeException toUserAlreadyExists(DataIntegrityViolationException e) {
+        ConstraintViolationException violation = constraintViolation(e);
+        if (violation == null || !UNIQUE_VIOLATION.equals(violation.getSQLState())) {
+            return e;
+        }
+        if (USERNAME_CONSTRAINT.equalsIgnoreCase(violation.getConstraintName())) {
+            return new UserAlreadyExistsException("Username is already taken");
+        }
+        if (EMAIL_CONSTRAINT.equalsIgnoreCase(violation.getConstraintName())) {
+            return new UserAlreadyExistsException("Email is already taken");
+        }
+        return e;
+    }
+
+    private ConstraintViolationException constraintViolation(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation) {
+                return violation;
+            }
+        }
+        return null;
+    }
 }
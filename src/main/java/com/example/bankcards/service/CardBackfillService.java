@@ -0,0 +1,79 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.security.CardNumberCipher;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Заполняет производные от номера карты колонки у карт, созданных до их появления.
+ * Карты обрабатываются порциями по id, каждая порция — в своей транзакции.
+ * Карта, номер которой не расшифровывается, пропускается и остаётся для ручного разбора
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class CardBackfillService {
+
+    private static final Limit CHUNK = Limit.of(500);
+
+    private final CardRepository cardRepository;
+    private final CardNumberCipher cardNumberCipher;
+    private final TransactionOperations transactionOperations;
+
+    /**
+     * @return сколько карт заполнено; пропущенные не считаются
+     */
+    public int backfillCardNumberData() {
+        int total = 0;
+        int skipped = 0;
+        long cursor = 0;
+        while (true) {
+            long after = cursor;
+            AtomicInteger filled = new AtomicInteger();
+            List<Card> chunk = transactionOperations.execute(status -> {
+                List<Card> cards = cardRepository.findBackfillChunk(after, CHUNK);
+                for (Card card : cards) {
+                    if (tryFillCardNumberData(card)) {
+                        filled.incrementAndGet();
+                    }
+                }
+                return cards;
+            });
+            if (chunk == null || chunk.isEmpty()) {
+                break;
+            }
+            // курсор идёт и за пропущенные карты, иначе порция с ними выбиралась бы бесконечно
+            cursor = chunk.get(chunk.size() - 1).getId();
+            total += filled.get();
+            skipped += chunk.size() - filled.get();
+            log.info("Cards backfilled: {}, skipped: {} (up to card id {})", total, skipped, cursor);
+        }
+        if (skipped > 0) {
+            log.warn("Card backfill skipped {} cards whose number could not be decrypted", skipped);
+        }
+        return total;
+    }
+
+    private boolean tryFillCardNumberData(Card card) {
+        String cardNumber;
+        try {
+            cardNumber = cardNumberCipher.decryptCardNumber(card.getCardNumber());
+        } catch (RuntimeException e) {
+            log.warn("Card {} skipped by backfill: {}", card.getId(), e.getMessage());
+            return false;
+        }
+        // пишутся только производные колонки: баланс и статус карты могут меняться переводами
+        // прямо во время заполнения. Дважды зашифрованный номер заодно перешифровывается один раз
+        cardRepository.fillCardNumberData(card.getId(), cardNumberCipher.encrypt(cardNumber),
+                cardNumberCipher.hash(cardNumber), cardNumber.substring(cardNumber.length() - 4));
+        return true;
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardBalanceShard;
+import com.example.bankcards.exception.CardNotFoundException;
+import com.example.bankcards.exception.InvalidCardOperationException;
+import com.example.bankcards.repository.CardBalanceShardRepository;
+import com.example.bankcards.repository.CardRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Режим «полосатого» баланса для карт, на которые идёт много параллельных
+ * операций. Баланс такой карты разложен по N строкам card_balance_shards:
+ * зачисление попадает в случайную часть, списание — в часть, где хватает
+ * средств, поэтому операции с одной картой не выстраиваются в очередь
+ * за блокировкой строки cards. Строку карты эти операции блокируют (FOR SHARE)
+ * только в запасном пути, когда нужно перечитать число частей
+ */
+@Service
+@RequiredArgsConstructor
+public class CardBalanceShardService {
+
+    public static final int MAX_SHARDS = 64;
+
+    private final CardBalanceShardRepository cardBalanceShardRepository;
+    private final CardRepository cardRepository;
+
+    public boolean isSharded(Card card) {
+        return card.getBalanceShards() > 0;
+    }
+
+    /**
+     * Баланс карты для отображения; у разложенной карты это сумма частей
+     */
+    public BigDecimal totalBalance(Card card) {
+        return isSharded(card) ? cardBalanceShardRepository.sumBalanceByCardId(card.getId()) : card.getBalance();
+    }
+
+    /**
+     * Зачисляет сумму в случайную часть баланса. Если режим карты успел смениться
+     * после её чтения (например, {@link #changeShardCount} свернул части в cards.balance),
+     * зачисление повторяется под блокировкой строки карты по актуальному числу частей
+     *
+     * @return false, если карта не активна
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean credit(Card card, BigDecimal amount) {
+        if (isSharded(card)) {
+            int shardNo = ThreadLocalRandom.current().nextInt(card.getBalanceShards());
+            if (cardBalanceShardRepository.creditShard(card.getId(), shardNo, amount) == 1) {
+                return true;
+            }
+        }
+        Optional<Integer> shardCount = cardRepository.lockBalanceShardsIfActive(card.getId());
+        if (shardCount.isEmpty()) {
+            return false;
+        }
+        if (shardCount.get() == 0) {
+            return cardRepository.creditById(card.getId(), amount) == 1;
+        }
+        int shardNo = ThreadLocalRandom.current().nextInt(shardCount.get());
+        return cardBalanceShardRepository.creditShard(card.getId(), shardNo, amount) == 1;
+    }
+
+    /**
+     * Списывает сумму с одной части, а если ни в одной свободной части не хватает
+     * средств, блокирует строку карты, перечитывает число частей и списывает уже по нему:
+     * с cards.balance, если {@link #changeShardCount} успел свернуть части, или сразу
+     * с нескольких частей
+     *
+     * @return false, если баланса карты недостаточно
+     * @throws InvalidCardOperationException если карта не активна
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean debit(Card card, BigDecimal amount) {
+        if (isSharded(card) && cardBalanceShardRepository.debitAnyShard(card.getId(), amount) == 1) {
+            return true;
+        }
+        int shardCount = cardRepository.lockBalanceShardsIfActive(card.getId())
+                .orElseThrow(() -> new InvalidCardOperationException("Source card is not active"));
+        if (shardCount == 0) {
+            return cardRepository.debitById(card.getId(), amount) == 1;
+        }
+        List<CardBalanceShard> shards = cardBalanceShardRepository.findAllByCardIdForUpdate(card.getId());
+        if (sum(shards).compareTo(amount) < 0) {
+            return false;
+        }
+        drain(shards, amount);
+        return true;
+    }
+
+    /**
+     * Блокирует все части карты до конца транзакции и возвращает их сумму;
+     * используется пакетными переводами вместе с {@link #applyLockedDelta}
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public BigDecimal lockBalance(Card card) {
+        return sum(cardBalanceShardRepository.findAllByCardIdForUpdate(card.getId()));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void applyLockedDelta(Card card, BigDecimal delta) {
+        List<CardBalanceShard> shards = cardBalanceShardRepository.findAllByCardIdForUpdate(card.getId());
+        if (delta.signum() >= 0) {
+            CardBalanceShard shard = shards.get(ThreadLocalRandom.current().nextInt(shards.size()));
+            shard.setBalance(shard.getBalance().add(delta));
+        } else {
+            drain(shards, delta.negate());
+        }
+    }
+
+    /**
+     * Меняет число частей баланса карты; 0 возвращает весь баланс в cards.balance.
+     * Баланс перераспределяется поровну между частями
+     */
+    @Transactional
+    public void changeShardCount(Long cardId, int shardCount) {
+        if (shardCount < 0 || shardCount > MAX_SHARDS) {
+            throw new IllegalArgumentException("Shard count must be between 0 and " + MAX_SHARDS);
+        }
+        Card card = cardRepository.findByIdForUpdate(cardId)
+                .orElseThrow(() -> new CardNotFoundException("Card not found"));
+        List<CardBalanceShard> shards = cardBalanceShardRepository.findAllByCardIdForUpdate(cardId);
+        BigDecimal total = card.getBalance().add(sum(shards));
+
+        List<CardBalanceShard> kept = new ArrayList<>(shardCount);
+        for (CardBalanceShard shard : shards) {
+            if (shard.getShardNo() < shardCount) {
+                kept.add(shard);
+            } else {
+                cardBalanceShardRepository.delete(shard);
+            }
+        }
+        for (int shardNo = kept.size(); shardNo < shardCount; shardNo++) {
+            kept.add(CardBalanceShard.builder().cardId(cardId).shardNo(shardNo).build());
+        }
+
+        if (shardCount > 0) {
+            BigDecimal share = total.divide(BigDecimal.valueOf(shardCount), 2, RoundingMode.DOWN);
+            for (CardBalanceShard shard : kept) {
+                shard.setBalance(shard.getShardNo() == 0
+                        ? total.subtract(share.multiply(BigDecimal.valueOf(shardCount - 1)))
+                        : share);
+            }
+            cardBalanceShardRepository.saveAll(kept);
+            card.setBalance(BigDecimal.ZERO);
+        } else {
+            card.setBalance(total);
+        }
+        card.setBalanceShards(shardCount);
+        cardRepository.save(card);
+    }
+
+    // Сначала опустошаются самые крупные части, чтобы затронуть как можно меньше строк
+    private void drain(List<CardBalanceShard> shards, BigDecimal amount) {
+        BigDecimal remaining = amount;
+        List<CardBalanceShard> ordered = new ArrayList<>(shards);
+        ordered.sort(Comparator.comparing(CardBalanceShard::getBalance).reversed());
+        for (CardBalanceShard shard : ordered) {
+            if (remaining.signum() == 0) {
+                break;
+            }
+            BigDecimal taken = shard.getBalance().min(remaining);
+            shard.setBalance(shard.getBalance().subtract(taken));
+            remaining = remaining.subtract(taken);
+        }
+        if (remaining.signum() > 0) {
+            throw new IllegalStateException("Not enough funds in balance shards of card " + shards.get(0).getCardId());
+        }
+    }
+
+    private BigDecimal sum(List<CardBalanceShard> shards) {
+        return shards.stream().map(CardBalanceShard::getBalance).reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+}
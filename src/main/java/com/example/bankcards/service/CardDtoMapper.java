@@ -0,0 +1,74 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardDto;
+import com.example.bankcards.dto.CardView;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.security.CardNumberCipher;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * Единственное место, где карта превращается в CardDto и маскируется номер.
+ * Владельцу карты показывается имя и фамилия владельца, администратору и в выгрузке — username.
+ * У карт, которые ещё не прошли CardBackfillService, last4 нет, и последние цифры
+ * берутся из расшифрованного номера
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CardDtoMapper {
+
+    private final CardNumberCipher cardNumberCipher;
+
+    /**
+     * Маска по последним четырём цифрам; у карты без них — только звёздочки
+     */
+    public String maskLast4(String last4) {
+        return last4 == null ? "****" : "**** **** **** " + last4;
+    }
+
+    public CardDto toDto(Card card) {
+        User owner = card.getUser();
+        return toDto(new CardView(card.getId(), card.getLast4(), card.getExpiryDate(), card.getStatus(),
+                card.getBalance(), card.getCreatedAt(),
+                owner.getUsername(), owner.getFirstName(), owner.getLastName(),
+                card.getLast4() == null ? card.getCardNumber() : null));
+    }
+
+    public CardDto toDto(CardView card) {
+        return toDto(card, card.ownerFirstName() + " " + card.ownerLastName());
+    }
+
+    public CardDto toAdminDto(CardView card) {
+        return toDto(card, card.ownerUsername());
+    }
+
+    private CardDto toDto(CardView card, String ownerName) {
+        CardDto dto = new CardDto();
+        dto.setId(card.id());
+        dto.setMaskedCardNumber(maskLast4(last4(card)));
+        dto.setOwnerName(ownerName);
+        dto.setExpiryDate(card.expiryDate());
+        dto.setStatus(String.valueOf(card.status()));
+        dto.setBalance(card.balance());
+        if (card.createdAt() != null) {
+            dto.setCreatedAt(card.createdAt().toString());
+        }
+        return dto;
+    }
+
+    private String last4(CardView card) {
+        if (card.last4() != null || card.legacyCardNumber() == null) {
+            return card.last4();
+        }
+        try {
+            String cardNumber = cardNumberCipher.decryptCardNumber(card.legacyCardNumber());
+            return cardNumber.substring(cardNumber.length() - 4);
+        } catch (RuntimeException e) {
+            log.warn("Card {} number cannot be decrypted: {}", card.id(), e.getMessage());
+            return null;
+        }
+    }
+}
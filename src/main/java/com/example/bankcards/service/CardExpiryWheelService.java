@@ -0,0 +1,151 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.CardExpiryProperties;
+import com.example.bankcards.dto.CardExpiryView;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.util.HierarchicalTimingWheel;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Истекает карты в момент окончания срока действия: карта с expiryDate = D
+ * становится EXPIRED в начале дня D + 1. В колесе держатся только карты,
+ * истекающие в ближайшие wheelHorizonDays дней; остальные попадут туда при
+ * пополнении горизонта, а пропущенные по любой причине подберёт сверка
+ * CardStatusSchedulerService
+ */
+@Slf4j
+@Service
+public class CardExpiryWheelService {
+
+    private static final int WHEEL_SIZE = 60;
+    private static final int CHUNK_SIZE = 1000;
+
+    private final CardRepository cardRepository;
+    private final CardExpiryProperties properties;
+    private final Clock clock;
+    private final HierarchicalTimingWheel<Long> wheel;
+    private final Set<Long> scheduled = ConcurrentHashMap.newKeySet();
+    private final Queue<Long> overdue = new ConcurrentLinkedQueue<>();
+
+    @Autowired
+    public CardExpiryWheelService(CardRepository cardRepository, CardExpiryProperties properties) {
+        this(cardRepository, properties, Clock.systemDefaultZone());
+    }
+
+    CardExpiryWheelService(CardRepository cardRepository, CardExpiryProperties properties, Clock clock) {
+        this.cardRepository = cardRepository;
+        this.properties = properties;
+        this.clock = clock;
+        this.wheel = new HierarchicalTimingWheel<>(properties.getWheelTick().toMillis(), WHEEL_SIZE, clock.millis());
+    }
+
+    /**
+     * Загружает в колесо карты, истекающие от сегодняшнего дня до конца горизонта
+     */
+    public int loadHorizon() {
+        if (!properties.isWheelEnabled()) {
+            return 0;
+        }
+        LocalDate today = LocalDate.now(clock);
+        List<CardExpiryView> cards = cardRepository.findExpiringBetween(
+                today.minusDays(1), today.plusDays(properties.getWheelHorizonDays()));
+        int added = 0;
+        for (CardExpiryView card : cards) {
+            if (schedule(card.id(), card.expiryDate())) {
+                added++;
+            }
+        }
+        log.info("Card expiry wheel loaded {} cards, {} scheduled in total", added, wheel.size());
+        return added;
+    }
+
+    /**
+     * Ставит карту в колесо, если она истекает в пределах горизонта.
+     * Повторная постановка той же карты игнорируется
+     */
+    public boolean schedule(Long cardId, LocalDate expiryDate) {
+        if (!properties.isWheelEnabled() || cardId == null || expiryDate == null) {
+            return false;
+        }
+        if (expiryDate.isAfter(LocalDate.now(clock).plusDays(properties.getWheelHorizonDays()))) {
+            return false;
+        }
+        if (!scheduled.add(cardId)) {
+            return false;
+        }
+        long expiresAt = expiryDate.plusDays(1).atStartOfDay(clock.getZone()).toInstant().toEpochMilli();
+        if (!wheel.add(cardId, expiresAt)) {
+            overdue.add(cardId);
+        }
+        return true;
+    }
+
+    /**
+     * Помечает EXPIRED карты, срок которых наступил к текущему моменту
+     */
+    public int expireDue() {
+        return expire(pollDue());
+    }
+
+    /**
+     * Забирает из колеса и очереди overdue карты, срок которых наступил.
+     * Не обращается к БД, поэтому пустой тик ничего не стоит
+     */
+    public List<Long> pollDue() {
+        List<Long> due = new ArrayList<>(wheel.poll(clock.millis()));
+        Long cardId;
+        while ((cardId = overdue.poll()) != null) {
+            due.add(cardId);
+        }
+        return due;
+    }
+
+    /**
+     * Возвращает карты, которые этот узел забрал, но не истёк, в overdue до следующего тика
+     */
+    public void requeue(List<Long> cardIds) {
+        overdue.addAll(cardIds);
+    }
+
+    /**
+     * Помечает EXPIRED переданные карты.
+     * Порция, на которой запрос упал, возвращается в overdue и повторяется на следующем тике
+     */
+    public int expire(List<Long> due) {
+        if (due.isEmpty()) {
+            return 0;
+        }
+
+        LocalDate today = LocalDate.now(clock);
+        int expired = 0;
+        int failed = 0;
+        for (int from = 0; from < due.size(); from += CHUNK_SIZE) {
+            List<Long> chunk = due.subList(from, Math.min(from + CHUNK_SIZE, due.size()));
+            try {
+                expired += cardRepository.markExpiredByIds(chunk, today);
+                chunk.forEach(scheduled::remove);
+            } catch (RuntimeException e) {
+                log.warn("Failed to expire {} cards, retrying on next tick", chunk.size(), e);
+                overdue.addAll(chunk);
+                failed += chunk.size();
+            }
+        }
+        log.info("Card expiry wheel fired for {} cards, {} marked expired, {} requeued", due.size(), expired, failed);
+        return expired;
+    }
+
+    public int size() {
+        return wheel.size() + overdue.size();
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardDto;
+import com.example.bankcards.dto.CardView;
+import com.example.bankcards.repository.CardRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Потоковая выгрузка всех карт: проекции читаются курсором и сразу пишутся
+ * в ответ. Проекции не попадают в контекст персистентности, поэтому
+ * расход памяти не зависит от количества карт
+ */
+@Service
+@RequiredArgsConstructor
+public class CardExportService {
+
+    private static final String CSV_HEADER = "id,maskedCardNumber,ownerName,expiryDate,status,balance,createdAt";
+
+    private final CardRepository cardRepository;
+    private final ObjectMapper objectMapper;
+    private final CardDtoMapper cardDtoMapper;
+
+    public enum Format {
+        NDJSON, CSV
+    }
+
+    @Transactional(readOnly = true)
+    public void exportCards(Format format, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        ObjectWriter jsonWriter = objectMapper.writerFor(CardDto.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+        if (format == Format.CSV) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+        try (Stream<CardView> cards = cardRepository.streamAllViews()) {
+            Iterator<CardView> iterator = cards.iterator();
+            while (iterator.hasNext()) {
+                CardDto dto = cardDtoMapper.toAdminDto(iterator.next());
+                if (format == Format.CSV) {
+                    writeCsvRow(writer, dto);
+                } else {
+                    jsonWriter.writeValue(writer, dto);
+                }
+                writer.write('\n');
+            }
+        }
+        writer.flush();
+    }
+
+    private void writeCsvRow(Writer writer, CardDto dto) throws IOException {
+        writer.write(String.valueOf(dto.getId()));
+        writer.write(',');
+        writer.write(dto.getMaskedCardNumber());
+        writer.write(',');
+        writer.write(csvEscape(dto.getOwnerName()));
+        writer.write(',');
+        writer.write(String.valueOf(dto.getExpiryDate()));
+        writer.write(',');
+        writer.write(dto.getStatus());
+        writer.write(',');
+        writer.write(dto.getBalance().toPlainString());
+        writer.write(',');
+        writer.write(String.valueOf(dto.getCreatedAt()));
+    }
+
+    private String csvEscape(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.BulkCardIssueResultDto;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.CardNumberCipher;
+import com.example.bankcards.util.CardNumberGenerator;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Массовый выпуск карт. Карты сохраняются порциями: id берутся из cards_seq
+ * pooled-оптимизатором (один nextval на 50 карт), INSERT'ы уходят JDBC batch'ами
+ * по hibernate.jdbc.batch_size, а после каждой порции контекст персистентности очищается
+ */
+@Service
+@RequiredArgsConstructor
+public class CardIssuanceService {
+
+    private static final int CHUNK_SIZE = 1000;
+
+    private final CardRepository cardRepository;
+    private final UserRepository userRepository;
+    private final CardNumberCipher cardNumberCipher;
+    private final EntityManager entityManager;
+
+    /**
+     * Выпускает по карте на каждый id из списка (повторяющийся id получает несколько карт).
+     * Несуществующие пользователи пропускаются и возвращаются в ответе
+     */
+    @Transactional
+    public BulkCardIssueResultDto issueCards(List<Long> userIds) {
+        List<Long> missingUserIds = new ArrayList<>();
+        int issued = 0;
+
+        for (int from = 0; from < userIds.size(); from += CHUNK_SIZE) {
+            List<Long> chunk = userIds.subList(from, Math.min(from + CHUNK_SIZE, userIds.size()));
+            Map<Long, User> users = userRepository.findAllById(new LinkedHashSet<>(chunk)).stream()
+                    .collect(Collectors.toMap(User::getId, Function.identity()));
+
+            List<User> owners = new ArrayList<>(chunk.size());
+            for (Long userId : chunk) {
+                User user = users.get(userId);
+                if (user == null) {
+                    missingUserIds.add(userId);
+                } else {
+                    owners.add(user);
+                }
+            }
+
+            List<Card> cards = buildCards(owners);
+            cardRepository.saveAll(cards);
+            cardRepository.flush();
+            entityManager.clear();
+            issued += cards.size();
+        }
+
+        BulkCardIssueResultDto result = new BulkCardIssueResultDto();
+        result.setIssued(issued);
+        result.setMissingUserIds(missingUserIds);
+        return result;
+    }
+
+    private List<Card> buildCards(List<User> owners) {
+        List<String> cardNumbers = generateCardNumbers(owners.size());
+        LocalDate expiryDate = LocalDate.now().plusYears(5);
+        Instant now = Instant.now();
+
+        List<Card> cards = new ArrayList<>(owners.size());
+        for (int i = 0; i < owners.size(); i++) {
+            String cardNumber = cardNumbers.get(i);
+            cards.add(Card.builder()
+                    .cardNumber(cardNumberCipher.encrypt(cardNumber))
+                    .cardNumberHash(cardNumberCipher.hash(cardNumber))
+                    .last4(cardNumber.substring(cardNumber.length() - 4))
+                    .expiryDate(expiryDate)
+                    .user(owners.get(i))
+                    .status(CardStatus.ACTIVE)
+                    .balance(BigDecimal.ZERO)
+                    .createdAt(now)
+                    .build());
+        }
+        return cards;
+    }
+
+    /**
+     * Уникальность номеров проверяется запросами на порцию, а не exists-запросом на каждую карту:
+     * по blind index и по зашифрованному номеру у карт, ещё не прошедших CardBackfillService
+     */
+    private List<String> generateCardNumbers(int count) {
+        Map<String, String> numbersByHash = new LinkedHashMap<>();
+        while (numbersByHash.size() < count) {
+            Map<String, String> candidates = new HashMap<>();
+            while (candidates.size() < count - numbersByHash.size()) {
+                String cardNumber = CardNumberGenerator.generate();
+                String hash = cardNumberCipher.hash(cardNumber);
+                if (!numbersByHash.containsKey(hash)) {
+                    candidates.put(hash, cardNumber);
+                }
+            }
+            cardRepository.findExistingCardNumberHashes(candidates.keySet()).forEach(candidates::remove);
+            removeTakenByUnbackfilledCards(candidates);
+            numbersByHash.putAll(candidates);
+        }
+        return new ArrayList<>(numbersByHash.values());
+    }
+
+    private void removeTakenByUnbackfilledCards(Map<String, String> candidates) {
+        Map<String, String> hashesByEncrypted = new HashMap<>();
+        candidates.forEach((hash, cardNumber) -> cardNumberCipher.legacyEncryptedForms(cardNumber)
+                .forEach(encrypted -> hashesByEncrypted.put(encrypted, hash)));
+        cardRepository.findUnbackfilledCardNumbers(hashesByEncrypted.keySet())
+                .forEach(encrypted -> candidates.remove(hashesByEncrypted.get(encrypted)));
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardTransactionDto;
+import com.example.bankcards.entity.CardTransaction;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.CardTransactionType;
+import com.example.bankcards.exception.CardNotFoundException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.CardTransactionRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Журнал операций card_transactions. Методы record* вызываются только внутри транзакции,
+ * изменившей баланс, поэтому запись в журнал и изменение баланса фиксируются вместе
+ */
+@Service
+@RequiredArgsConstructor
+public class CardLedgerService {
+
+    private static final Duration DEFAULT_PERIOD = Duration.ofDays(30);
+
+    private final CardTransactionRepository cardTransactionRepository;
+    private final CardRepository cardRepository;
+    private final UserCache userCache;
+
+    /**
+     * Выписка по карте пользователя за [from, to), по умолчанию за последние 30 дней
+     */
+    @Transactional(readOnly = true)
+    public Page<CardTransactionDto> getCardTransactions(Long cardId, String username, Instant from, Instant to,
+                                                        Pageable pageable) {
+        User user = userCache.findByUsername(username)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        if (!cardRepository.existsByIdAndUser(cardId, user)) {
+            throw new CardNotFoundException("Card not found");
+        }
+
+        Instant periodEnd = to != null ? to : Instant.now();
+        Instant periodStart = from != null ? from : periodEnd.minus(DEFAULT_PERIOD);
+        return cardTransactionRepository.findByCardIdBetween(cardId, periodStart, periodEnd, pageable)
+                .map(this::toDto);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordTopUp(Long cardId, BigDecimal amount) {
+        cardTransactionRepository.save(entry(cardId, null, CardTransactionType.TOP_UP, amount, Instant.now()));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordTransfer(Long fromCardId, Long toCardId, BigDecimal amount) {
+        cardTransactionRepository.saveAll(transferLegs(fromCardId, toCardId, amount, Instant.now()));
+    }
+
+    /**
+     * Записывает проведённые переводы пакета одним JDBC batch
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordTransfers(List<Transfer> transfers) {
+        if (transfers.isEmpty()) {
+            return;
+        }
+        Instant now = Instant.now();
+        List<CardTransaction> entries = new ArrayList<>(transfers.size() * 2);
+        for (Transfer transfer : transfers) {
+            entries.addAll(transferLegs(transfer.fromCardId(), transfer.toCardId(), transfer.amount(), now));
+        }
+        cardTransactionRepository.saveAll(entries);
+    }
+
+    /**
+     * Записывает пополнения, накопленные в журнале отложенной записи, одним JDBC batch
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordTopUps(List<TopUp> topUps) {
+        if (topUps.isEmpty()) {
+            return;
+        }
+        List<CardTransaction> entries = new ArrayList<>(topUps.size());
+        for (TopUp topUp : topUps) {
+            entries.add(entry(topUp.cardId(), null, CardTransactionType.TOP_UP, topUp.amount(), topUp.createdAt()));
+        }
+        cardTransactionRepository.saveAll(entries);
+    }
+
+    private List<CardTransaction> transferLegs(Long fromCardId, Long toCardId, BigDecimal amount, Instant now) {
+        return List.of(
+                entry(fromCardId, toCardId, CardTransactionType.TRANSFER_OUT, amount.negate(), now),
+                entry(toCardId, fromCardId, CardTransactionType.TRANSFER_IN, amount, now));
+    }
+
+    private CardTransaction entry(Long cardId, Long counterpartyCardId, CardTransactionType type,
+                                  BigDecimal amount, Instant createdAt) {
+        return CardTransaction.builder()
+                .cardId(cardId)
+                .counterpartyCardId(counterpartyCardId)
+                .type(type)
+                .amount(amount)
+                .createdAt(createdAt)
+                .build();
+    }
+
+    private CardTransactionDto toDto(CardTransaction transaction) {
+        CardTransactionDto dto = new CardTransactionDto();
+        dto.setId(transaction.getId());
+        dto.setCardId(transaction.getCardId());
+        dto.setCounterpartyCardId(transaction.getCounterpartyCardId());
+        dto.setType(String.valueOf(transaction.getType()));
+        dto.setAmount(transaction.getAmount());
+        dto.setCreatedAt(transaction.getCreatedAt());
+        return dto;
+    }
+
+    public record Transfer(Long fromCardId, Long toCardId, BigDecimal amount) {
+    }
+
+    public record TopUp(Long cardId, BigDecimal amount, Instant createdAt) {
+    }
+}
@@ -11,7 +11,6 @@ import com.example.bankcards.entity.enums.CardStatus;
 import com.example.bankcards.exception.InvalidCardOperationException;
 import com.example.bankcards.repository.CardRepository;
 import com.example.bankcards.repository.CardRequestRepository;
-import com.example.bankcards.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -26,12 +25,13 @@ import java.util.stream.Collectors;
 public class CardRequestService {
 
     private final CardRequestRepository cardRequestRepository;
-    private final UserRepository userRepository;
+    private final UserCache userCache;
     private final CardRepository cardRepository;
+    private final CardBalanceShardService cardBalanceShardService;
 
     @Transactional(readOnly = true)
     public List<CardRequestDto> getUserRequests(String username) {
-        User user = userRepository.findByUsername(username)
+        User user = userCache.findByUsername(username)
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
         return cardRequestRepository.findByUser_Id(user.getId()).stream()
@@ -42,7 +42,7 @@ public class CardRequestService {
 
     @Transactional
     public CardRequestDto createRequest(CardRequestCreatingDto requestDto, String username) {
-        User user = userRepository.findByUsername(username)
+        User user = userCache.findByUsername(username)
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
         Card card = cardRepository.findByIdAndUser(requestDto.getCardId(), user)
@@ -54,7 +54,7 @@ public class CardRequestService {
         }
 
         if (requestDto.getRequestType() == CardRequestType.CLOSE) {
-            if (card.getBalance().compareTo(BigDecimal.ZERO) > 0) {
+            if (cardBalanceShardService.totalBalance(card).compareTo(BigDecimal.ZERO) > 0) {
                 throw new InvalidCardOperationException("Cannot close card with non-zero balance");
             }
             if (!card.getStatus().equals(CardStatus.ACTIVE)) {
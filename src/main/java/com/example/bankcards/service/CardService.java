@@ -1,142 +1,134 @@
 package com.example.bankcards.service;
 
 import com.example.bankcards.dto.CardDto;
+import com.example.bankcards.dto.CardSliceDto;
+import com.example.bankcards.dto.CardView;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.entity.enums.CardStatus;
 import com.example.bankcards.exception.CardNotFoundException;
 import com.example.bankcards.exception.InvalidCardOperationException;
 import com.example.bankcards.repository.CardRepository;
-import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.CardNumberCipher;
 import com.example.bankcards.util.CardNumberGenerator;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import javax.crypto.Cipher;
-import javax.crypto.spec.SecretKeySpec;
 import java.math.BigDecimal;
-import java.security.Key;
 import java.time.Instant;
 import java.time.LocalDate;
-import java.util.Base64;
+import java.util.List;
 
 @Service
 @RequiredArgsConstructor
 public class CardService {
 
-    private static final String ALGORITHM = "AES";
-    private static final byte[] KEY = "MySuperSecretKey".getBytes(); // заменить на env var
-    private final CardRepository cardRepository;
-    private final UserRepository userRepository;
-
-    private Key getSecretKey() {
-        return new SecretKeySpec(KEY, 0, KEY.length, ALGORITHM);
-    }
-
-    public String encrypt(String cardNumber) throws Exception {
-        Cipher cipher = Cipher.getInstance(ALGORITHM);
-        cipher.init(Cipher.ENCRYPT_MODE, getSecretKey());
-        return Base64.getEncoder().encodeToString(cipher.doFinal(cardNumber.getBytes()));
-    }
-
-    public String decrypt(String encryptedCardNumber) throws Exception {
-        Cipher cipher = Cipher.getInstance(ALGORITHM);
-        cipher.init(Cipher.DECRYPT_MODE, getSecretKey());
-        byte[] decodedBytes = Base64.getDecoder().decode(encryptedCardNumber);
-        return new String(cipher.doFinal(decodedBytes));
-    }
+    private static final int MAX_SCROLL_LIMIT = 100;
 
-    public String maskCardNumber(String cardNumber) {
-        return "**** **** **** " + cardNumber.substring(12);
-    }
+    private final CardRepository cardRepository;
+    private final UserCache userCache;
+    private final CardNumberCipher cardNumberCipher;
+    private final CardLedgerService cardLedgerService;
+    private final CardBalanceShardService cardBalanceShardService;
+    private final CardDtoMapper cardDtoMapper;
 
     @Transactional
     public CardDto createCard(String username) {
-        User user = userRepository.findByUsername(username)
+        User user = userCache.findByUsername(username)
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
-        String encryptedCardNumber;
+        String cardNumber;
+        String cardNumberHash;
         do {
-            String plainCardNumber = CardNumberGenerator.generate();
-            try {
-                encryptedCardNumber = encrypt(plainCardNumber);
-            } catch (Exception e) {
-                throw new RuntimeException(e);
-            }
-        } while (cardRepository.existsByCardNumber(encryptedCardNumber));
+            cardNumber = CardNumberGenerator.generate();
+            cardNumberHash = cardNumberCipher.hash(cardNumber);
+        } while (cardRepository.isCardNumberTaken(cardNumberHash, cardNumberCipher.legacyEncryptedForms(cardNumber)));
 
         LocalDate expiryDate = LocalDate.now().plusYears(5);
 
-        try {
-            Card card = Card.builder()
-                    .cardNumber(encrypt(encryptedCardNumber))
-                    .expiryDate(expiryDate)
-                    .user(user)
-                    .status(CardStatus.ACTIVE)
-                    .balance(BigDecimal.ZERO)
-                    .createdAt(Instant.now())
-                    .build();
-
-            cardRepository.save(card);
-            return toDto(card);
-        } catch (Exception e) {
-            throw new RuntimeException("Error creating card", e);
-        }
+        Card card = Card.builder()
+                .cardNumber(cardNumberCipher.encrypt(cardNumber))
+                .cardNumberHash(cardNumberHash)
+                .last4(cardNumber.substring(cardNumber.length() - 4))
+                .expiryDate(expiryDate)
+                .user(user)
+                .status(CardStatus.ACTIVE)
+                .balance(BigDecimal.ZERO)
+                .createdAt(Instant.now())
+                .build();
+
+        cardRepository.save(card);
+        return cardDtoMapper.toDto(card);
     }
 
     @Transactional(readOnly = true)
     public Page<CardDto> getUserCards(String username, Pageable pageable) {
-        User user = userRepository.findByUsername(username)
+        User user = userCache.findByUsername(username)
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
-        return cardRepository.findByUser(user, pageable)
-                .map(this::toDto);
+        return cardRepository.findViewsByUser(user, pageable)
+                .map(cardDtoMapper::toDto);
+    }
+
+    /**
+     * Порция карт пользователя с id больше after; вместо OFFSET и COUNT(*)
+     * используется индекс (user_id, id), поэтому любая порция стоит как первая
+     */
+    @Transactional(readOnly = true)
+    public CardSliceDto scrollUserCards(String username, Long after, int limit) {
+        User user = userCache.findByUsername(username)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+
+        int size = Math.min(Math.max(limit, 1), MAX_SCROLL_LIMIT);
+        List<CardView> cards = cardRepository.findViewsByUserAfter(user, after == null ? 0L : after, Limit.of(size + 1));
+        return toSliceDto(cards, size);
     }
 
     public CardDto getCardDetailsById(Long cardId, String username) {
-        User user = userRepository.findByUsername(username)
+        User user = userCache.findByUsername(username)
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
-        Card card = cardRepository.findByIdAndUser(cardId, user)
+        CardView card = cardRepository.findViewByIdAndUser(cardId, user)
                 .orElseThrow(() -> new CardNotFoundException("Card not found"));
 
-        return toDto(card);
+        return cardDtoMapper.toDto(card);
     }
 
     @Transactional
     public void topUpCardById(Long cardId, String username, BigDecimal amount) {
-        User user = userRepository.findByUsername(username)
+        User user = userCache.findByUsername(username)
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
+        if (cardRepository.creditIfActive(cardId, user.getId(), amount) == 1) {
+            cardLedgerService.recordTopUp(cardId, amount);
+            return;
+        }
+
         Card card = cardRepository.findByIdAndUser(cardId, user)
                 .orElseThrow(() -> new CardNotFoundException("Card not found"));
 
         if (card.getStatus() != CardStatus.ACTIVE) {
             throw new InvalidCardOperationException("Card is not active");
         }
-
-        card.setBalance(card.getBalance().add(amount));
-        cardRepository.save(card);
+        if (!cardBalanceShardService.credit(card, amount)) {
+            throw new InvalidCardOperationException("Card is not active");
+        }
+        cardLedgerService.recordTopUp(cardId, amount);
     }
 
-    private CardDto toDto(Card card) {
-        try {
-            String decrypted = decrypt(card.getCardNumber());
-            CardDto dto = new CardDto();
-            dto.setId(card.getId());
-            dto.setMaskedCardNumber(maskCardNumber(decrypted));
-            dto.setOwnerName(card.getUser().getFirstName() + " " + card.getUser().getLastName());
-            dto.setExpiryDate(card.getExpiryDate());
-            dto.setStatus(card.getStatus().name());
-            dto.setBalance(card.getBalance());
-            dto.setCreatedAt(card.getCreatedAt().toString());
-            return dto;
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to decrypt card number", e);
+    private CardSliceDto toSliceDto(List<CardView> cards, int size) {
+        boolean hasNext = cards.size() > size;
+        List<CardView> content = hasNext ? cards.subList(0, size) : cards;
+        CardSliceDto slice = new CardSliceDto();
+        slice.setContent(content.stream().map(cardDtoMapper::toDto).toList());
+        slice.setHasNext(hasNext);
+        if (hasNext) {
+            slice.setNextCursor(content.get(content.size() - 1).id());
         }
+        return slice;
     }
 }
-
@@ -1,7 +1,7 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.config.CardExpiryProperties;
 import com.example.bankcards.repository.CardRepository;
-import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -12,10 +12,39 @@ import org.springframework.stereotype.Service;
 public class CardStatusSchedulerService {
 
     private final CardRepository cardRepository;
+    private final CardExpiryProperties properties;
 
-    @Transactional
+    /**
+     * Помечает просроченные карты порциями по chunkSize, каждая в своей транзакции,
+     * вместо одного UPDATE по всей таблице
+     */
     public void updateExpiredCardsStatus() {
-        int updatedCount = cardRepository.markExpiredCardsBlocked();
-        log.info("Updated expired cards count: {}", updatedCount);
+        int chunkSize = properties.getChunkSize();
+        int total = 0;
+        int chunks = 0;
+        int updated;
+        do {
+            updated = cardRepository.markExpiredCardsChunk(chunkSize);
+            total += updated;
+            chunks++;
+            log.info("Expired cards chunk {}: {} updated, {} in total", chunks, updated, total);
+        } while (updated == chunkSize && pause());
+
+        log.info("Updated expired cards count: {}", total);
+    }
+
+    private boolean pause() {
+        long millis = properties.getPause().toMillis();
+        if (millis <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Expired cards sweep interrupted, remaining cards will be updated on the next run");
+            return false;
+        }
     }
 }
@@ -0,0 +1,164 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.IdempotencyProperties;
+import com.example.bankcards.entity.IdempotencyKey;
+import com.example.bankcards.entity.IdempotencyKeyId;
+import com.example.bankcards.entity.enums.IdempotencyKeyStatus;
+import com.example.bankcards.exception.IdempotencyConflictException;
+import com.example.bankcards.repository.IdempotencyKeyRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Выполняет денежную операцию не более одного раза на пару (пользователь, Idempotency-Key).
+ * Сохранённый ответ сначала ищется в локальном кэше с TTL, затем в таблице idempotency_keys;
+ * одновременные дубликаты на одном узле дожидаются результата первого запроса.
+ * Операция выполняется внутри транзакции ключа, поэтому сервисы, которые она вызывает,
+ * должны присоединяться к ней, а не фиксировать движение денег отдельно
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class IdempotencyService {
+
+    private static final int MAX_KEY_LENGTH = 100;
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final IdempotencyProperties idempotencyProperties;
+    private final TransactionOperations transactionOperations;
+
+    private final Map<IdempotencyKeyId, CachedResponse> cache = new ConcurrentHashMap<>();
+    private final Map<IdempotencyKeyId, CompletableFuture<CachedResponse>> inFlight = new ConcurrentHashMap<>();
+
+    public String execute(String username, String key, String requestHash, Supplier<String> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency-Key must be at most " + MAX_KEY_LENGTH + " characters");
+        }
+
+        IdempotencyKeyId id = new IdempotencyKeyId(username, key);
+        CachedResponse cached = cache.get(id);
+        if (cached != null && !cached.isExpired()) {
+            return cached.bodyFor(requestHash);
+        }
+
+        CompletableFuture<CachedResponse> own = new CompletableFuture<>();
+        CompletableFuture<CachedResponse> running = inFlight.putIfAbsent(id, own);
+        if (running != null) {
+            return await(running).bodyFor(requestHash);
+        }
+
+        try {
+            CachedResponse response = executeOnce(id, requestHash, action);
+            remember(id, response);
+            own.complete(response);
+            return response.body();
+        } catch (RuntimeException e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(id, own);
+        }
+    }
+
+    public void evictExpired() {
+        cache.values().removeIf(CachedResponse::isExpired);
+        int deleted = idempotencyKeyRepository.deleteCreatedBefore(Instant.now().minus(idempotencyProperties.getTtl()));
+        log.info("Expired idempotency keys deleted: {}", deleted);
+    }
+
+    public static String fingerprint(Object... parts) {
+        StringBuilder source = new StringBuilder();
+        for (Object part : parts) {
+            source.append(part).append('|');
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(source.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Ключ, сама операция и сохранённый ответ фиксируются одной транзакцией: после сбоя
+     * в базе остаётся либо проведённая операция вместе с ответом, либо ни то ни другое.
+     * Дубликат с другого узла ждёт на уникальном ключе, пока эта транзакция не завершится
+     */
+    private CachedResponse executeOnce(IdempotencyKeyId id, String requestHash, Supplier<String> action) {
+        return transactionOperations.execute(status -> {
+            if (idempotencyKeyRepository.insertIfAbsent(id.getUsername(), id.getIdempotencyKey(), requestHash) == 0) {
+                return storedResponse(id);
+            }
+            // если операция упадёт, откат транзакции освободит и ключ, так что клиент сможет повторить запрос
+            String body = action.get();
+            idempotencyKeyRepository.complete(id, body, IdempotencyKeyStatus.COMPLETED);
+            return new CachedResponse(requestHash, body, expiresAt());
+        });
+    }
+
+    private CachedResponse storedResponse(IdempotencyKeyId id) {
+        Optional<IdempotencyKey> stored = idempotencyKeyRepository.findById(id);
+        if (stored.isEmpty() || stored.get().getStatus() != IdempotencyKeyStatus.COMPLETED) {
+            throw new IdempotencyConflictException("Request with this Idempotency-Key is still in progress");
+        }
+        IdempotencyKey record = stored.get();
+        return new CachedResponse(record.getRequestHash(), record.getResponseBody(),
+                record.getCreatedAt().plus(idempotencyProperties.getTtl()));
+    }
+
+    private void remember(IdempotencyKeyId id, CachedResponse response) {
+        if (cache.size() >= idempotencyProperties.getCacheMaxSize()) {
+            cache.values().removeIf(CachedResponse::isExpired);
+            if (cache.size() >= idempotencyProperties.getCacheMaxSize()) {
+                return;
+            }
+        }
+        cache.put(id, response);
+    }
+
+    private Instant expiresAt() {
+        return Instant.now().plus(idempotencyProperties.getTtl());
+    }
+
+    private CachedResponse await(CompletableFuture<CachedResponse> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private record CachedResponse(String requestHash, String body, Instant expiresAt) {
+
+        boolean isExpired() {
+            return Instant.now().isAfter(expiresAt);
+        }
+
+        String bodyFor(String hash) {
+            if (!requestHash.equals(hash)) {
+                throw new IdempotencyConflictException("Idempotency-Key was already used for a different request");
+            }
+            return body;
+        }
+    }
+}
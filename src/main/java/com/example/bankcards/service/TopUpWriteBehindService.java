@@ -0,0 +1,374 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.TopUpJournalProperties;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.exception.CardNotFoundException;
+import com.example.bankcards.exception.InvalidCardOperationException;
+import com.example.bankcards.exception.TooManyRequestsException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.util.GroupCommitLog;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Отложенная запись пополнений. Пополнение только зачисляет средства и не может
+ * упасть из-за баланса, поэтому его достаточно надёжно записать в локальный журнал
+ * (один fsync на группу параллельных запросов) и ответить клиенту. Раз в
+ * flush-interval накопленные пополнения суммируются по картам и переносятся в cards
+ * одним UPDATE на карту вместе с записями card_transactions и номером последней
+ * перенесённой записи журнала. После перезапуска записи журнала с номером больше
+ * сохранённого переносятся повторно.
+ * <p>
+ * Статус карты проверяется повторно при переносе: если карта за это время стала
+ * разложенной, сумма зачисляется в её части, а если её заблокировали или удалили,
+ * пополнение попадает в top_up_dead_letters для ручного возврата
+ */
+@Slf4j
+@Service
+public class TopUpWriteBehindService implements DisposableBean {
+
+    private static final String INIT_CHECKPOINT_SQL =
+            "INSERT INTO top_up_journal_checkpoints (journal_id, applied_seq, updated_at) VALUES (?, 0, now()) "
+                    + "ON CONFLICT (journal_id) DO NOTHING";
+    private static final String SELECT_CHECKPOINT_SQL =
+            "SELECT applied_seq FROM top_up_journal_checkpoints WHERE journal_id = ?";
+    private static final String UPDATE_CHECKPOINT_SQL =
+            "UPDATE top_up_journal_checkpoints SET applied_seq = ?, updated_at = now() "
+                    + "WHERE journal_id = ? AND applied_seq < ?";
+    private static final String INSERT_DEAD_LETTER_SQL =
+            "INSERT INTO top_up_dead_letters (journal_id, seq, card_id, amount, reason, created_at, dead_lettered_at) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, now())";
+
+    static final String CARD_NOT_FOUND = "CARD_NOT_FOUND";
+    static final String CARD_NOT_ACTIVE = "CARD_NOT_ACTIVE";
+    static final String APPLY_FAILED = "APPLY_FAILED";
+
+    private final CardService cardService;
+    private final CardRepository cardRepository;
+    private final UserCache userCache;
+    private final CardLedgerService cardLedgerService;
+    private final CardBalanceShardService cardBalanceShardService;
+    private final TransactionOperations transactionOperations;
+    private final JdbcTemplate jdbcTemplate;
+    private final TopUpJournalProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final String journalId;
+
+    // записи попадают сюда из потока журнала строго по возрастанию номера
+    private final Queue<PendingTopUp> pending = new ConcurrentLinkedQueue<>();
+    // порция, которую не удалось перенести, повторяется первой
+    private final Deque<PendingTopUp> retry = new ArrayDeque<>();
+    private int retryFailures;
+    private int entryFailures;
+
+    private volatile GroupCommitLog journal;
+    private volatile long durableSeq;
+    private volatile long appliedSeq;
+    private ScheduledExecutorService flusher;
+
+    public TopUpWriteBehindService(CardService cardService, CardRepository cardRepository, UserCache userCache,
+                                   CardLedgerService cardLedgerService,
+                                   CardBalanceShardService cardBalanceShardService,
+                                   TransactionOperations transactionOperations, JdbcTemplate jdbcTemplate,
+                                   TopUpJournalProperties properties, MeterRegistry meterRegistry) {
+        this.cardService = cardService;
+        this.cardRepository = cardRepository;
+        this.userCache = userCache;
+        this.cardLedgerService = cardLedgerService;
+        this.cardBalanceShardService = cardBalanceShardService;
+        this.transactionOperations = transactionOperations;
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.journalId = properties.getJournalId();
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        if (journalId == null || journalId.isBlank()) {
+            // с идентификатором по умолчанию (например, имя хоста контейнера) новый процесс получил бы
+            // чистый checkpoint и зачислил бы все записи журнала повторно
+            throw new IllegalStateException(
+                    "bankcards.top-up-journal.journal-id must be set when the journal is enabled");
+        }
+        jdbcTemplate.update(INIT_CHECKPOINT_SQL, journalId);
+        long checkpoint = jdbcTemplate.queryForObject(SELECT_CHECKPOINT_SQL, Long.class, journalId);
+        appliedSeq = checkpoint;
+
+        GroupCommitLog opened = new GroupCommitLog(Path.of(properties.getPath()), checkpoint,
+                properties.getMaxCommitBatch(), this::onDurable);
+        for (GroupCommitLog.Entry entry : opened.recovered()) {
+            if (entry.seq() > checkpoint) {
+                pending.add(toPendingTopUp(entry));
+                durableSeq = entry.seq();
+            }
+        }
+        if (!pending.isEmpty()) {
+            log.info("Replaying {} journaled top-ups after seq {}", pending.size(), checkpoint);
+        }
+        durableSeq = Math.max(durableSeq, checkpoint);
+        journal = opened;
+
+        Gauge.builder("topup.journal.lag", this, service -> service.durableSeq - service.appliedSeq)
+                .description("Top-ups confirmed to clients but not yet applied to cards")
+                .register(meterRegistry);
+
+        long intervalNanos = properties.getFlushInterval().toNanos();
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "top-up-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public boolean isEnabled() {
+        return journal != null;
+    }
+
+    /**
+     * Пополняет карту; в режиме журнала возвращается после fsync записи,
+     * баланс карты меняется при ближайшем переносе. Внутри уже открытой транзакции
+     * (запрос с Idempotency-Key) пополнение проводится сразу в ней: запись журнала
+     * пережила бы откат этой транзакции и была бы перенесена повторно
+     */
+    public void topUp(Long cardId, String username, BigDecimal amount) {
+        GroupCommitLog current = journal;
+        if (current == null || TransactionSynchronizationManager.isActualTransactionActive()) {
+            cardService.topUpCardById(cardId, username, amount);
+            return;
+        }
+
+        User user = userCache.findByUsername(username)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        Card card = cardRepository.findByIdAndUser(cardId, user)
+                .orElseThrow(() -> new CardNotFoundException("Card not found"));
+        if (card.getStatus() != CardStatus.ACTIVE) {
+            throw new InvalidCardOperationException("Card is not active");
+        }
+        if (cardBalanceShardService.isSharded(card)) {
+            // у карты с разложенным балансом зачисления и так не упираются в одну строку
+            cardService.topUpCardById(cardId, username, amount);
+            return;
+        }
+
+        String payload = cardId + ";" + amount.toPlainString() + ";" + Instant.now().toEpochMilli();
+        try {
+            current.append(payload, properties.getAppendTimeout()).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                // запись не взята в журнал и не будет записана, повтор безопасен
+                throw new TooManyRequestsException("Top-up journal is busy, try again later");
+            }
+            throw new IllegalStateException("Failed to journal top-up of card " + cardId, e.getCause());
+        }
+    }
+
+    /**
+     * Переносит накопленные пополнения в cards одной транзакцией
+     *
+     * @return сколько пополнений перенесено
+     */
+    public synchronized int flush() {
+        if (!retry.isEmpty() && retryFailures >= properties.getMaxApplyAttempts()) {
+            return flushIsolated();
+        }
+
+        List<PendingTopUp> batch = new ArrayList<>();
+        int maxSize = Math.max(1, properties.getMaxFlushSize());
+        while (!retry.isEmpty() && batch.size() < maxSize) {
+            batch.add(retry.poll());
+        }
+        PendingTopUp next;
+        while (batch.size() < maxSize && (next = pending.poll()) != null) {
+            batch.add(next);
+        }
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        long lastSeq = batch.get(batch.size() - 1).seq();
+        int deadLettered;
+        try {
+            deadLettered = transactionOperations.execute(status -> apply(batch, lastSeq));
+        } catch (RuntimeException e) {
+            for (int i = batch.size() - 1; i >= 0; i--) {
+                retry.addFirst(batch.get(i));
+            }
+            retryFailures++;
+            throw e;
+        }
+
+        retryFailures = 0;
+        onApplied(lastSeq, deadLettered);
+        return batch.size();
+    }
+
+    /**
+     * Порция не переносится maxApplyAttempts раз подряд: записи переносятся по одной
+     * в порядке номеров, чтобы checkpoint оставался непрерывным, а запись, которая
+     * сама не переносится maxApplyAttempts раз, уходит в top_up_dead_letters и не
+     * задерживает следующие
+     */
+    private int flushIsolated() {
+        int done = 0;
+        while (!retry.isEmpty()) {
+            PendingTopUp topUp = retry.peek();
+            int deadLettered;
+            try {
+                deadLettered = transactionOperations.execute(status -> apply(List.of(topUp), topUp.seq()));
+            } catch (RuntimeException e) {
+                if (++entryFailures < properties.getMaxApplyAttempts()) {
+                    throw e;
+                }
+                log.error("Top-up {} failed {} times, moving it to dead letters", topUp, entryFailures, e);
+                deadLettered = transactionOperations.execute(status -> {
+                    deadLetter(List.of(topUp), APPLY_FAILED);
+                    jdbcTemplate.update(UPDATE_CHECKPOINT_SQL, topUp.seq(), journalId, topUp.seq());
+                    return 1;
+                });
+            }
+            retry.poll();
+            entryFailures = 0;
+            onApplied(topUp.seq(), deadLettered);
+            done++;
+        }
+        retryFailures = 0;
+        return done;
+    }
+
+    private void onApplied(long lastSeq, int deadLettered) {
+        appliedSeq = lastSeq;
+        if (deadLettered > 0) {
+            meterRegistry.counter("topup.journal.dead_letters").increment(deadLettered);
+        }
+        GroupCommitLog current = journal;
+        if (current != null && current.size() > properties.getTruncateSize().toBytes()) {
+            current.truncate(lastSeq);
+        }
+    }
+
+    /**
+     * Зачисляет порцию и сдвигает checkpoint; выполняется внутри транзакции
+     *
+     * @return сколько пополнений ушло в top_up_dead_letters
+     */
+    private int apply(List<PendingTopUp> batch, long lastSeq) {
+        Map<Long, BigDecimal> deltas = new HashMap<>();
+        Map<Long, List<PendingTopUp>> byCard = new HashMap<>();
+        for (PendingTopUp topUp : batch) {
+            deltas.merge(topUp.cardId(), topUp.amount(), BigDecimal::add);
+            byCard.computeIfAbsent(topUp.cardId(), id -> new ArrayList<>()).add(topUp);
+        }
+
+        Set<PendingTopUp> deadLetters = new HashSet<>();
+        for (Long cardId : cardRepository.creditActiveCards(deltas)) {
+            Card card = cardRepository.findById(cardId).orElse(null);
+            if (card == null) {
+                deadLetter(byCard.get(cardId), CARD_NOT_FOUND);
+                deadLetters.addAll(byCard.get(cardId));
+            } else if (card.getStatus() != CardStatus.ACTIVE || !cardBalanceShardService.credit(card, deltas.get(cardId))) {
+                deadLetter(byCard.get(cardId), CARD_NOT_ACTIVE);
+                deadLetters.addAll(byCard.get(cardId));
+            }
+        }
+
+        List<CardLedgerService.TopUp> topUps = new ArrayList<>(batch.size());
+        for (PendingTopUp topUp : batch) {
+            if (!deadLetters.contains(topUp)) {
+                topUps.add(new CardLedgerService.TopUp(topUp.cardId(), topUp.amount(), topUp.createdAt()));
+            }
+        }
+        cardLedgerService.recordTopUps(topUps);
+        jdbcTemplate.update(UPDATE_CHECKPOINT_SQL, lastSeq, journalId, lastSeq);
+        return deadLetters.size();
+    }
+
+    private void deadLetter(List<PendingTopUp> topUps, String reason) {
+        log.warn("Top-ups {} were not applied: {}", topUps, reason);
+        jdbcTemplate.batchUpdate(INSERT_DEAD_LETTER_SQL, topUps, topUps.size(), (ps, topUp) -> {
+            ps.setString(1, journalId);
+            ps.setLong(2, topUp.seq());
+            ps.setLong(3, topUp.cardId());
+            ps.setBigDecimal(4, topUp.amount());
+            ps.setString(5, reason);
+            ps.setTimestamp(6, Timestamp.from(topUp.createdAt()));
+        });
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        GroupCommitLog current = journal;
+        if (current == null) {
+            return;
+        }
+        flusher.shutdown();
+        flusher.awaitTermination(10, TimeUnit.SECONDS);
+        journal = null;
+        current.close();
+        try {
+            while (flush() > 0) {
+                // переносим всё подтверждённое до остановки
+            }
+        } catch (RuntimeException e) {
+            log.warn("Top-ups after seq {} stay in the journal until restart", appliedSeq, e);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Failed to apply journaled top-ups, will retry", e);
+        }
+    }
+
+    private void onDurable(List<GroupCommitLog.Entry> entries) {
+        for (GroupCommitLog.Entry entry : entries) {
+            pending.add(toPendingTopUp(entry));
+        }
+        durableSeq = entries.get(entries.size() - 1).seq();
+    }
+
+    private PendingTopUp toPendingTopUp(GroupCommitLog.Entry entry) {
+        String[] fields = entry.payload().split(";");
+        return new PendingTopUp(entry.seq(), Long.parseLong(fields[0]), new BigDecimal(fields[1]),
+                Instant.ofEpochMilli(Long.parseLong(fields[2])));
+    }
+
+    private record PendingTopUp(long seq, Long cardId, BigDecimal amount, Instant createdAt) {
+    }
+}
@@ -1,56 +1,517 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.config.TransferProperties;
 import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.dto.TransferResultDto;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.CardStatus;
 import com.example.bankcards.exception.InsufficientFundsException;
 import com.example.bankcards.exception.InvalidCardOperationException;
 import com.example.bankcards.exception.InvalidTransferException;
+import com.example.bankcards.exception.TooManyRequestsException;
 import com.example.bankcards.repository.CardRepository;
-import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.util.SingleWriterSequencer;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Service
+@Slf4j
 @RequiredArgsConstructor
-public class TransferService {
+public class TransferService implements DisposableBean {
 
     private final CardRepository cardRepository;
-    private final UserRepository userRepository;
+    private final UserCache userCache;
+    private final TransactionOperations transactionOperations;
+    private final TransferProperties transferProperties;
+    private final CardLedgerService cardLedgerService;
+    private final CardBalanceShardService cardBalanceShardService;
+
+    private volatile SingleWriterSequencer<SequencedTransfer> sequencer;
+    private boolean destroyed; // под this
 
-    @Transactional
     public void transferMoney(TransferRequest request, String username) {
-        User user = userRepository.findByUsername(username)
+        User user = userCache.findByUsername(username)
+                .orElseThrow(() -> new InvalidTransferException("User not found"));
+
+        BigDecimal amount = extractAmount(request);
+
+        if (request.getFromCardId().equals(request.getToCardId())) {
+            throw new InvalidCardOperationException("Cannot transfer to the same card");
+        }
+
+        switch (lockingMode()) {
+            case OPTIMISTIC -> transferWithRetry(request, user, amount);
+            case PESSIMISTIC -> transactionOperations.executeWithoutResult(
+                    status -> transferWithOrderedLocks(request, user, amount));
+            case ATOMIC -> transactionOperations.executeWithoutResult(
+                    status -> transferAtomically(request, user, amount));
+            case SEQUENCED -> transferSequenced(request, user, amount);
+        }
+    }
+
+    /**
+     * Внутри уже открытой транзакции (запрос с Idempotency-Key) перевод обязан зафиксироваться
+     * вместе с ней: писатель SEQUENCED коммитит порцию в своей транзакции, а повтор OPTIMISTIC
+     * невозможен, когда конфликт версий откатывает общую транзакцию. Такие переводы идут в режиме ATOMIC
+     */
+    private TransferProperties.LockingMode lockingMode() {
+        TransferProperties.LockingMode mode = transferProperties.getLockingMode();
+        if ((mode == TransferProperties.LockingMode.SEQUENCED || mode == TransferProperties.LockingMode.OPTIMISTIC)
+                && TransactionSynchronizationManager.isActualTransactionActive()) {
+            return TransferProperties.LockingMode.ATOMIC;
+        }
+        return mode;
+    }
+
+    /**
+     * Выполняет пакет переводов в одной транзакции: все карты пакета
+     * блокируются один раз в порядке id, а итоговое изменение баланса
+     * каждой карты записывается одним JDBC batch. Переводы, которым не
+     * хватает средств или которые касаются неактивной карты, отклоняются
+     * по отдельности, не прерывая остальные
+     */
+    public List<TransferResultDto> transferBatch(List<TransferRequest> requests, String username) {
+        User user = userCache.findByUsername(username)
                 .orElseThrow(() -> new InvalidTransferException("User not found"));
 
-        Card fromCard = cardRepository.findByIdAndUser(request.getFromCardId(), user)
+        Set<Long> cardIds = new TreeSet<>();
+        for (int i = 0; i < requests.size(); i++) {
+            TransferRequest request = requests.get(i);
+            extractAmount(request);
+            if (request.getFromCardId().equals(request.getToCardId())) {
+                throw new InvalidCardOperationException("Cannot transfer to the same card (transfer #" + i + ")");
+            }
+            cardIds.add(request.getFromCardId());
+            cardIds.add(request.getToCardId());
+        }
+
+        return transactionOperations.execute(status -> {
+            List<Card> cards = cardRepository.findAllByIdInAndUserForUpdate(cardIds, user);
+            if (cards.size() != cardIds.size()) {
+                Set<Long> missing = new TreeSet<>(cardIds);
+                cards.forEach(card -> missing.remove(card.getId()));
+                throw new InvalidTransferException("Cards not found or access denied: " + missing);
+            }
+
+            Map<Long, Card> cardsById = new HashMap<>();
+            Map<Long, BigDecimal> balances = new HashMap<>();
+            cards.forEach(card -> {
+                cardsById.put(card.getId(), card);
+                balances.put(card.getId(), lockedBalance(card));
+            });
+
+            Map<Long, BigDecimal> deltas = new HashMap<>();
+            List<TransferResultDto> results = new ArrayList<>(requests.size());
+            List<CardLedgerService.Transfer> completed = new ArrayList<>(requests.size());
+            for (int i = 0; i < requests.size(); i++) {
+                TransferRequest request = requests.get(i);
+                String rejection = applyBatchLeg(request, cardsById, balances, deltas);
+                results.add(toResultDto(i, request, rejection));
+                if (rejection == null) {
+                    completed.add(new CardLedgerService.Transfer(
+                            request.getFromCardId(), request.getToCardId(), request.getAmount()));
+                }
+            }
+
+            applyDeltas(cardsById, deltas);
+            cardLedgerService.recordTransfers(completed);
+            return results;
+        });
+    }
+
+    private BigDecimal lockedBalance(Card card) {
+        return cardBalanceShardService.isSharded(card) ? cardBalanceShardService.lockBalance(card) : card.getBalance();
+    }
+
+    /**
+     * Итоговые изменения обычных карт пишутся одним JDBC batch, карт с разложенным балансом — в их части
+     */
+    private void applyDeltas(Map<Long, Card> cardsById, Map<Long, BigDecimal> deltas) {
+        Map<Long, BigDecimal> cardDeltas = new HashMap<>();
+        deltas.forEach((cardId, delta) -> {
+            Card card = cardsById.get(cardId);
+            if (cardBalanceShardService.isSharded(card)) {
+                cardBalanceShardService.applyLockedDelta(card, delta);
+            } else {
+                cardDeltas.put(cardId, delta);
+            }
+        });
+        cardRepository.applyBalanceDeltas(cardDeltas);
+    }
+
+    /**
+     * Ставит перевод в кольцевой буфер и ждёт фиксации транзакции порции,
+     * в которую он попал. Ошибка отдельного перевода не влияет на остальные переводы порции.
+     * Если писатель не взял перевод за sequencerTimeout, перевод снимается и уже не будет применён.
+     * Взятый перевод ждёт фиксации порции не дольше ещё одного sequencerTimeout
+     */
+    private void transferSequenced(TransferRequest request, User user, BigDecimal amount) {
+        SequencedTransfer transfer = new SequencedTransfer(request, user, amount);
+        if (!sequencer().offer(transfer)) {
+            throw new TooManyRequestsException("Too many transfers in progress, try again later");
+        }
+        long timeoutNanos = transferProperties.getSequencerTimeout().toNanos();
+        try {
+            try {
+                transfer.result().get(timeoutNanos, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                if (transfer.reject(new TooManyRequestsException("Too many transfers in progress, try again later"))) {
+                    throw new TooManyRequestsException("Too many transfers in progress, try again later");
+                }
+                transfer.result().get(timeoutNanos, TimeUnit.NANOSECONDS);
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Sequenced transfer failed", e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Transfer was taken by the sequencer but not committed in time; "
+                    + "check the card statement before retrying", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for sequenced transfer", e);
+        }
+    }
+
+    private SingleWriterSequencer<SequencedTransfer> sequencer() {
+        SingleWriterSequencer<SequencedTransfer> current = sequencer;
+        // писатель, упавший с Error, заменяется новым
+        if (current == null || !current.isRunning()) {
+            synchronized (this) {
+                current = sequencer;
+                if ((current == null || !current.isRunning()) && !destroyed) {
+                    current = new SingleWriterSequencer<>("transfer-sequencer",
+                            transferProperties.getSequencerCapacity(), transferProperties.getSequencerMaxBatch(),
+                            this::applySequencedBatch, TransferService::rejectSequenced);
+                    sequencer = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Писатель упал на порции или на остановке: ни один из переводов уже не получит результат
+     * из applySequencedBatch, поэтому они завершаются ошибкой, даже если писатель успел их взять
+     */
+    private static void rejectSequenced(List<SequencedTransfer> transfers, Throwable cause) {
+        IllegalStateException failure = new IllegalStateException("Transfer sequencer failed", cause);
+        for (SequencedTransfer transfer : transfers) {
+            transfer.taken().set(true);
+            transfer.result().completeExceptionally(failure);
+        }
+    }
+
+    /**
+     * Применяет порцию переводов разных пользователей в одной транзакции: карты
+     * блокируются одним запросом в порядке id, балансы меняются итоговыми дельтами.
+     * Результаты отдаются вызывающим только после коммита
+     */
+    void applySequencedBatch(List<SequencedTransfer> offered) {
+        List<SequencedTransfer> batch = new ArrayList<>(offered.size());
+        for (SequencedTransfer transfer : offered) {
+            if (transfer.taken().compareAndSet(false, true)) {
+                batch.add(transfer);
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        Set<Long> cardIds = new TreeSet<>();
+        for (SequencedTransfer transfer : batch) {
+            cardIds.add(transfer.request().getFromCardId());
+            cardIds.add(transfer.request().getToCardId());
+        }
+
+        List<RuntimeException> failures = new ArrayList<>(batch.size());
+        try {
+            transactionOperations.executeWithoutResult(status -> {
+                failures.clear();
+                Map<Long, Card> cardsById = new HashMap<>();
+                Map<Long, BigDecimal> balances = new HashMap<>();
+                for (Card card : cardRepository.findAllByIdInForUpdate(cardIds)) {
+                    cardsById.put(card.getId(), card);
+                    balances.put(card.getId(), lockedBalance(card));
+                }
+
+                Map<Long, BigDecimal> deltas = new HashMap<>();
+                List<CardLedgerService.Transfer> completed = new ArrayList<>(batch.size());
+                for (SequencedTransfer transfer : batch) {
+                    RuntimeException failure = applySequencedLeg(transfer, cardsById, balances, deltas);
+                    failures.add(failure);
+                    if (failure == null) {
+                        completed.add(new CardLedgerService.Transfer(transfer.request().getFromCardId(),
+                                transfer.request().getToCardId(), transfer.amount()));
+                    }
+                }
+
+                applyDeltas(cardsById, deltas);
+                cardLedgerService.recordTransfers(completed);
+            });
+        } catch (RuntimeException e) {
+            batch.forEach(transfer -> transfer.result().completeExceptionally(e));
+            return;
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            if (failures.get(i) == null) {
+                batch.get(i).result().complete(null);
+            } else {
+                batch.get(i).result().completeExceptionally(failures.get(i));
+            }
+        }
+    }
+
+    private RuntimeException applySequencedLeg(SequencedTransfer transfer, Map<Long, Card> cardsById,
+                                               Map<Long, BigDecimal> balances, Map<Long, BigDecimal> deltas) {
+        Long userId = transfer.user().getId();
+        Card fromCard = cardsById.get(transfer.request().getFromCardId());
+        Card toCard = cardsById.get(transfer.request().getToCardId());
+        BigDecimal amount = transfer.amount();
+
+        if (fromCard == null || !Objects.equals(fromCard.getUser().getId(), userId)) {
+            return new InvalidTransferException("Source card not found or access denied");
+        }
+        if (toCard == null || !Objects.equals(toCard.getUser().getId(), userId)) {
+            return new InvalidTransferException("Target card not found or access denied");
+        }
+        if (fromCard.getStatus() != CardStatus.ACTIVE) {
+            return new InvalidCardOperationException("Source card is not active");
+        }
+        if (toCard.getStatus() != CardStatus.ACTIVE) {
+            return new InvalidCardOperationException("Target card is not active");
+        }
+        if (balances.get(fromCard.getId()).compareTo(amount) < 0) {
+            return new InsufficientFundsException("Insufficient funds on source card");
+        }
+
+        balances.merge(fromCard.getId(), amount.negate(), BigDecimal::add);
+        balances.merge(toCard.getId(), amount, BigDecimal::add);
+        deltas.merge(fromCard.getId(), amount.negate(), BigDecimal::add);
+        deltas.merge(toCard.getId(), amount, BigDecimal::add);
+        return null;
+    }
+
+    @Override
+    public void destroy() {
+        SingleWriterSequencer<SequencedTransfer> current;
+        synchronized (this) {
+            destroyed = true;
+            current = sequencer;
+        }
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    private String applyBatchLeg(TransferRequest request, Map<Long, Card> cardsById,
+                                 Map<Long, BigDecimal> balances, Map<Long, BigDecimal> deltas) {
+        Long fromId = request.getFromCardId();
+        Long toId = request.getToCardId();
+        BigDecimal amount = request.getAmount();
+
+        if (cardsById.get(fromId).getStatus() != CardStatus.ACTIVE) {
+            return "Source card is not active";
+        }
+        if (cardsById.get(toId).getStatus() != CardStatus.ACTIVE) {
+            return "Target card is not active";
+        }
+        if (balances.get(fromId).compareTo(amount) < 0) {
+            return "Insufficient funds on source card";
+        }
+
+        balances.merge(fromId, amount.negate(), BigDecimal::add);
+        balances.merge(toId, amount, BigDecimal::add);
+        deltas.merge(fromId, amount.negate(), BigDecimal::add);
+        deltas.merge(toId, amount, BigDecimal::add);
+        return null;
+    }
+
+    private TransferResultDto toResultDto(int index, TransferRequest request, String rejection) {
+        TransferResultDto dto = new TransferResultDto();
+        dto.setIndex(index);
+        dto.setFromCardId(request.getFromCardId());
+        dto.setToCardId(request.getToCardId());
+        dto.setAmount(request.getAmount());
+        dto.setStatus(rejection == null ? "COMPLETED" : "REJECTED");
+        dto.setMessage(rejection);
+        return dto;
+    }
+
+    /**
+     * Списание и зачисление выполняются условными UPDATE без предварительного
+     * чтения карт; операторы идут в порядке возрастания id карт
+     */
+    private void transferAtomically(TransferRequest request, User user, BigDecimal amount) {
+        if (request.getFromCardId() < request.getToCardId()) {
+            debit(request.getFromCardId(), user, amount);
+            credit(request.getToCardId(), user, amount);
+        } else {
+            credit(request.getToCardId(), user, amount);
+            debit(request.getFromCardId(), user, amount);
+        }
+        cardLedgerService.recordTransfer(request.getFromCardId(), request.getToCardId(), amount);
+    }
+
+    private void debit(Long cardId, User user, BigDecimal amount) {
+        if (cardRepository.debitIfActive(cardId, user.getId(), amount) == 1) {
+            return;
+        }
+        Card card = cardRepository.findByIdAndUser(cardId, user)
                 .orElseThrow(() -> new InvalidTransferException("Source card not found or access denied"));
+        if (card.getStatus() != CardStatus.ACTIVE) {
+            throw new InvalidCardOperationException("Source card is not active");
+        }
+        if (cardBalanceShardService.isSharded(card) && cardBalanceShardService.debit(card, amount)) {
+            return;
+        }
+        throw new InsufficientFundsException("Insufficient funds on source card");
+    }
 
-        Card toCard = cardRepository.findByIdAndUser(request.getToCardId(), user)
+    private void credit(Long cardId, User user, BigDecimal amount) {
+        if (cardRepository.creditIfActive(cardId, user.getId(), amount) == 1) {
+            return;
+        }
+        Card card = cardRepository.findByIdAndUser(cardId, user)
                 .orElseThrow(() -> new InvalidTransferException("Target card not found or access denied"));
+        if (card.getStatus() != CardStatus.ACTIVE) {
+            throw new InvalidCardOperationException("Target card is not active");
+        }
+        if (!cardBalanceShardService.credit(card, amount)) {
+            throw new InvalidCardOperationException("Target card is not active");
+        }
+    }
 
-        BigDecimal amount = extractAmount(request);
+    /**
+     * Блокирует строки обеих карт в порядке возрастания id, чтобы встречные
+     * переводы между одной парой карт не приводили к взаимной блокировке.
+     * Строка карты с разложенным балансом не блокируется: переводы с ней
+     * сериализуются только на частях баланса
+     */
+    private void transferWithOrderedLocks(TransferRequest request, User user, BigDecimal amount) {
+        Card fromCard;
+        Card toCard;
+        if (request.getFromCardId() < request.getToCardId()) {
+            fromCard = lockSourceCard(request, user);
+            toCard = lockTargetCard(request, user);
+        } else {
+            toCard = lockTargetCard(request, user);
+            fromCard = lockSourceCard(request, user);
+        }
+        applyTransfer(fromCard, toCard, amount);
+    }
 
-        if (fromCard.getId().equals(toCard.getId())) {
-            throw new InvalidCardOperationException("Cannot transfer to the same card");
+    private Card lockSourceCard(TransferRequest request, User user) {
+        return cardRepository.findShardedByIdAndUser(request.getFromCardId(), user)
+                .or(() -> cardRepository.findByIdAndUserForUpdate(request.getFromCardId(), user))
+                .orElseThrow(() -> new InvalidTransferException("Source card not found or access denied"));
+    }
+
+    private Card lockTargetCard(TransferRequest request, User user) {
+        return cardRepository.findShardedByIdAndUser(request.getToCardId(), user)
+                .or(() -> cardRepository.findByIdAndUserForUpdate(request.getToCardId(), user))
+                .orElseThrow(() -> new InvalidTransferException("Target card not found or access denied"));
+    }
+
+    /**
+     * Читает карты без блокировок; конфликт версий при коммите повторяется
+     * в новой транзакции не более maxRetries раз
+     */
+    private void transferWithRetry(TransferRequest request, User user, BigDecimal amount) {
+        int maxRetries = Math.max(1, transferProperties.getMaxRetries());
+        for (int attempt = 1; ; attempt++) {
+            try {
+                transactionOperations.executeWithoutResult(status -> {
+                    Card fromCard = cardRepository.findByIdAndUser(request.getFromCardId(), user)
+                            .orElseThrow(() -> new InvalidTransferException("Source card not found or access denied"));
+                    Card toCard = cardRepository.findByIdAndUser(request.getToCardId(), user)
+                            .orElseThrow(() -> new InvalidTransferException("Target card not found or access denied"));
+                    applyTransfer(fromCard, toCard, amount);
+                });
+                return;
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= maxRetries) {
+                    throw e;
+                }
+                log.debug("Optimistic lock conflict on transfer {} -> {}, attempt {}/{}",
+                        request.getFromCardId(), request.getToCardId(), attempt, maxRetries);
+                backOff();
+            }
         }
+    }
 
-        if (fromCard.getUser().getId() != toCard.getUser().getId()) {
+    private void applyTransfer(Card fromCard, Card toCard, BigDecimal amount) {
+        if (!Objects.equals(fromCard.getUser().getId(), toCard.getUser().getId())) {
             throw new InvalidCardOperationException("Cards must belong to the same user");
         }
+        if (fromCard.getStatus() != CardStatus.ACTIVE) {
+            throw new InvalidCardOperationException("Source card is not active");
+        }
+        if (toCard.getStatus() != CardStatus.ACTIVE) {
+            throw new InvalidCardOperationException("Target card is not active");
+        }
 
-        if (fromCard.getBalance().compareTo(amount) < 0) {
+        if (cardBalanceShardService.isSharded(fromCard)) {
+            if (!cardBalanceShardService.debit(fromCard, amount)) {
+                throw new InsufficientFundsException("Insufficient funds on source card");
+            }
+        } else if (fromCard.getBalance().compareTo(amount) < 0) {
             throw new InsufficientFundsException("Insufficient funds on source card");
+        } else {
+            fromCard.setBalance(fromCard.getBalance().subtract(amount));
         }
 
-        fromCard.setBalance(fromCard.getBalance().subtract(amount));
-        toCard.setBalance(toCard.getBalance().add(amount));
+        if (cardBalanceShardService.isSharded(toCard)) {
+            if (!cardBalanceShardService.credit(toCard, amount)) {
+                throw new InvalidCardOperationException("Target card is not active");
+            }
+        } else {
+            toCard.setBalance(toCard.getBalance().add(amount));
+        }
 
-        cardRepository.save(fromCard);
-        cardRepository.save(toCard);
+        // строка карты с разложенным балансом не меняется, поэтому и её версия не растёт
+        if (!cardBalanceShardService.isSharded(fromCard)) {
+            cardRepository.save(fromCard);
+        }
+        if (!cardBalanceShardService.isSharded(toCard)) {
+            cardRepository.save(toCard);
+        }
+        cardLedgerService.recordTransfer(fromCard.getId(), toCard.getId(), amount);
+    }
+
+    private void backOff() {
+        long backoffMs = transferProperties.getRetryBackoffMs();
+        if (backoffMs <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(backoffMs + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while retrying transfer", e);
+        }
     }
 
     private BigDecimal extractAmount(TransferRequest request) {
@@ -60,4 +521,26 @@ public class TransferService {
         }
         return amount;
     }
-}
\ No newline at end of file
+
+    /**
+     * taken выставляет либо писатель (перевод будет применён), либо таймаут/остановка (не будет)
+     */
+    record SequencedTransfer(TransferRequest request, User user, BigDecimal amount,
+                             CompletableFuture<Void> result, AtomicBoolean taken) {
+
+        SequencedTransfer(TransferRequest request, User user, BigDecimal amount) {
+            this(request, user, amount, new CompletableFuture<>(), new AtomicBoolean());
+        }
+
+        /**
+         * @return false, если писатель уже взял перевод
+         */
+        boolean reject(RuntimeException failure) {
+            if (taken.compareAndSet(false, true)) {
+                result.completeExceptionally(failure);
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.UserCacheProperties;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Optional;
+
+/**
+ * Кэш пользователей по username, чтобы аутентификация и сервисы не читали
+ * таблицу users на каждый запрос. Хранит отсоединённые сущности: их можно
+ * передавать в запросы и связи, но нельзя изменять.
+ * Изменения пользователя должны вызывать evict
+ */
+@Component
+public class UserCache {
+
+    private final UserRepository userRepository;
+    private final Cache<String, User> cache;
+
+    public UserCache(UserRepository userRepository, UserCacheProperties properties, MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxSize())
+                .expireAfterWrite(properties.getTtl())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "users");
+    }
+
+    public Optional<User> findByUsername(String username) {
+        // отсутствующие пользователи не кэшируются
+        return Optional.ofNullable(cache.get(username, key -> userRepository.findByUsername(key).orElse(null)));
+    }
+
+    /**
+     * Удаляет пользователя из кэша сразу и ещё раз после коммита текущей
+     * транзакции, чтобы параллельный запрос не закэшировал старую версию
+     */
+    public void evict(String username) {
+        if (username == null) {
+            return;
+        }
+        cache.invalidate(username);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidate(username);
+                }
+            });
+        }
+    }
+}
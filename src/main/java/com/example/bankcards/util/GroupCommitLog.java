@@ -0,0 +1,342 @@
+package com.example.bankcards.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал только на дозапись с групповой фиксацией: записи, поступившие,
+ * пока идёт предыдущий fsync, пишутся и сбрасываются на диск одним вызовом.
+ * Запись подтверждается только после fsync. Номера записей назначает
+ * единственный поток записи, и слушатель получает записи строго по порядку номеров.
+ * <p>
+ * Формат строки: {@code seq;payload;crc32}. При открытии хвост с неверной
+ * контрольной суммой (недописанная при сбое строка) отрезается
+ */
+@Slf4j
+public class GroupCommitLog implements Closeable {
+
+    public record Entry(long seq, String payload) {
+    }
+
+    private sealed interface Request permits Append, Truncate {
+    }
+
+    // taken выставляет либо поток записи (запись будет записана), либо таймаут ожидания (не будет)
+    private record Append(String payload, CompletableFuture<Long> result, AtomicBoolean taken) implements Request {
+    }
+
+    private record Truncate(long upToSeq) implements Request {
+    }
+
+    private final FileChannel channel;
+    private final List<Entry> recovered;
+    private final int maxBatch;
+    private final Consumer<List<Entry>> onDurable;
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final Object closeLock = new Object();
+    private final Thread writer;
+    private volatile boolean closed;
+    private long lastSeq;
+
+    /**
+     * @param minSeq    номера новых записей будут больше этого значения и больше номеров в файле
+     * @param onDurable вызывается потоком записи после каждого fsync, до подтверждения записей
+     */
+    public GroupCommitLog(Path path, long minSeq, int maxBatch, Consumer<List<Entry>> onDurable) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.recovered = new ArrayList<>();
+        long validLength = scan(path, recovered);
+        if (validLength < channel.size()) {
+            channel.truncate(validLength);
+            channel.force(true);
+        }
+        channel.position(validLength);
+
+        this.lastSeq = recovered.isEmpty() ? minSeq : Math.max(minSeq, recovered.get(recovered.size() - 1).seq());
+        this.maxBatch = Math.max(1, maxBatch);
+        this.onDurable = onDurable;
+        this.writer = new Thread(this::writeLoop, "group-commit-log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Записи, найденные в файле при открытии
+     */
+    public List<Entry> recovered() {
+        return recovered;
+    }
+
+    /**
+     * @return future с номером записи, завершается после fsync
+     */
+    public CompletableFuture<Long> append(String payload) {
+        return enqueue(payload).result();
+    }
+
+    /**
+     * Как {@link #append(String)}, но если поток записи не взял запись за timeout,
+     * она уже не будет записана, а future завершается с TimeoutException.
+     * Взятая запись всегда завершается: номером после fsync или ошибкой записи
+     */
+    public CompletableFuture<Long> append(String payload, Duration timeout) {
+        Append append = enqueue(payload);
+        CompletableFuture.delayedExecutor(timeout.toNanos(), TimeUnit.NANOSECONDS).execute(() -> {
+            if (append.taken().compareAndSet(false, true)) {
+                append.result().completeExceptionally(
+                        new TimeoutException("Entry was not written within " + timeout));
+            }
+        });
+        return append.result();
+    }
+
+    private Append enqueue(String payload) {
+        if (payload.indexOf('\n') >= 0) {
+            throw new IllegalArgumentException("Payload must not contain line breaks");
+        }
+        Append append = new Append(payload, new CompletableFuture<>(), new AtomicBoolean());
+        synchronized (closeLock) {
+            if (closed) {
+                append.taken().set(true);
+                append.result().completeExceptionally(new IllegalStateException("Log is closed"));
+            } else {
+                queue.add(append);
+            }
+        }
+        return append;
+    }
+
+    /**
+     * Очищает файл, если к моменту обработки запроса в нём нет записей с номером больше upToSeq
+     */
+    public void truncate(long upToSeq) {
+        queue.add(new Truncate(upToSeq));
+    }
+
+    public long size() {
+        try {
+            return channel.size();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (closeLock) {
+            closed = true;
+        }
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // поток записи не успел или умер: оставшиеся в очереди записи не будут записаны
+        failQueued(new IllegalStateException("Log is closed"));
+        channel.close();
+    }
+
+    private void failQueued(RuntimeException failure) {
+        Request request;
+        while ((request = queue.poll()) != null) {
+            if (request instanceof Append append && append.taken().compareAndSet(false, true)) {
+                append.result().completeExceptionally(failure);
+            }
+        }
+    }
+
+    private void writeLoop() {
+        List<Request> batch = new ArrayList<>(maxBatch);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Request first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - 1);
+                process(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException | Error e) {
+                log.error("Group commit log writer failed", e);
+                IllegalStateException failure = new IllegalStateException("Log writer failed", e);
+                for (Request request : batch) {
+                    if (request instanceof Append append) {
+                        append.result().completeExceptionally(failure);
+                    }
+                }
+                if (e instanceof Error) {
+                    synchronized (closeLock) {
+                        closed = true;
+                    }
+                    failQueued(failure);
+                    throw e;
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void process(List<Request> batch) {
+        List<Append> appends = new ArrayList<>(batch.size());
+        for (Request request : batch) {
+            if (request instanceof Append append) {
+                if (append.taken().compareAndSet(false, true)) {
+                    appends.add(append);
+                }
+            } else if (request instanceof Truncate truncate) {
+                commit(appends);
+                appends.clear();
+                truncateUpTo(truncate.upToSeq());
+            }
+        }
+        commit(appends);
+    }
+
+    private void commit(List<Append> appends) {
+        if (appends.isEmpty()) {
+            return;
+        }
+        long startSeq = lastSeq;
+        List<Entry> entries = new ArrayList<>(appends.size());
+        StringBuilder lines = new StringBuilder(appends.size() * 64);
+        for (Append append : appends) {
+            Entry entry = new Entry(++lastSeq, append.payload());
+            entries.add(entry);
+            lines.append(format(entry)).append('\n');
+        }
+
+        long position = -1;
+        try {
+            position = channel.position();
+            ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            lastSeq = startSeq;
+            discardPartialWrite(position);
+            appends.forEach(append -> append.result().completeExceptionally(e));
+            return;
+        }
+
+        try {
+            onDurable.accept(entries);
+        } catch (RuntimeException e) {
+            // записи уже на диске и будут прочитаны при следующем открытии; ошибка клиенту
+            // привела бы к повтору запроса и второй такой же записи
+            log.error("Listener failed for durable entries {}..{}", startSeq + 1, lastSeq, e);
+        }
+        for (int i = 0; i < appends.size(); i++) {
+            appends.get(i).result().complete(entries.get(i).seq());
+        }
+    }
+
+    private void truncateUpTo(long upToSeq) {
+        if (lastSeq > upToSeq) {
+            return;
+        }
+        try {
+            channel.truncate(0);
+            channel.force(true);
+        } catch (IOException e) {
+            // файл остаётся прежним, повторная попытка будет при следующем запросе
+        }
+    }
+
+    private void discardPartialWrite(long position) {
+        if (position < 0) {
+            return;
+        }
+        try {
+            channel.truncate(position);
+            channel.position(position);
+        } catch (IOException ignored) {
+            // недописанный хвост отрежется при следующем открытии по контрольной сумме
+        }
+    }
+
+    private static String format(Entry entry) {
+        String body = entry.seq() + ";" + entry.payload();
+        return body + ";" + Long.toHexString(crc(body));
+    }
+
+    private static long crc(String body) {
+        CRC32 crc = new CRC32();
+        crc.update(body.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+
+    /**
+     * Читает корректные записи и возвращает длину файла до первой повреждённой строки
+     */
+    private static long scan(Path path, List<Entry> entries) throws IOException {
+        long validLength = 0;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+            ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+            int b;
+            while ((b = in.read()) != -1) {
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+                Entry entry = parse(line.toString(StandardCharsets.UTF_8));
+                if (entry == null) {
+                    break;
+                }
+                entries.add(entry);
+                validLength += line.size() + 1;
+                line.reset();
+            }
+        }
+        return validLength;
+    }
+
+    private static Entry parse(String line) {
+        int first = line.indexOf(';');
+        int last = line.lastIndexOf(';');
+        if (first < 0 || last <= first) {
+            return null;
+        }
+        String body = line.substring(0, last);
+        try {
+            if (Long.parseUnsignedLong(line.substring(last + 1), 16) != crc(body)) {
+                return null;
+            }
+            return new Entry(Long.parseLong(line.substring(0, first)), line.substring(first + 1, last));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.bankcards.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Иерархическое колесо таймеров. Нижний уровень делит время на wheelSize
+ * интервалов по tickMs, каждый следующий уровень создаётся по мере надобности
+ * и имеет тик, равный полному обороту предыдущего. Когда наступает срок ячейки
+ * верхнего уровня, её элементы перекладываются на нижние уровни, пока не
+ * окажутся в ячейке текущего тика.
+ * Срок округляется вверх до тика, поэтому элемент никогда не срабатывает раньше
+ * своего срока и опаздывает не больше чем на тик плюс интервал между вызовами poll.
+ * Очередь с приоритетом хранит только непустые ячейки, поэтому poll не
+ * перебирает пустые тики, а добавление стоит O(log n) по числу непустых ячеек
+ */
+public class HierarchicalTimingWheel<T> {
+
+    private final PriorityQueue<Bucket<T>> queue = new PriorityQueue<>(Comparator.comparingLong(bucket -> bucket.expiration));
+    private final long tickMs;
+    private final Level<T> root;
+    private int size;
+
+    public HierarchicalTimingWheel(long tickMs, int wheelSize, long startMs) {
+        if (tickMs <= 0 || wheelSize <= 1) {
+            throw new IllegalArgumentException("tickMs must be positive and wheelSize greater than 1");
+        }
+        this.tickMs = tickMs;
+        this.root = new Level<>(tickMs, wheelSize, startMs, queue);
+    }
+
+    /**
+     * Возвращает false, если срок уже наступил (в пределах текущего тика) и элемент не добавлен
+     */
+    public synchronized boolean add(T item, long expirationMs) {
+        long deadlineMs = -Math.floorDiv(-expirationMs, tickMs) * tickMs;
+        if (!root.add(new Entry<>(item, deadlineMs))) {
+            return false;
+        }
+        size++;
+        return true;
+    }
+
+    /**
+     * Продвигает колесо до nowMs и возвращает элементы, срок которых наступил
+     */
+    public synchronized List<T> poll(long nowMs) {
+        List<T> due = new ArrayList<>();
+        Bucket<T> bucket;
+        while ((bucket = queue.peek()) != null && bucket.expiration <= nowMs) {
+            queue.poll();
+            root.advanceClock(bucket.expiration);
+            for (Entry<T> entry : bucket.flush()) {
+                if (!root.add(entry)) {
+                    due.add(entry.item);
+                    size--;
+                }
+            }
+        }
+        root.advanceClock(nowMs);
+        return due;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private record Entry<T>(T item, long deadlineMs) {
+    }
+
+    private static final class Bucket<T> {
+
+        private long expiration = -1;
+        private List<Entry<T>> entries = new ArrayList<>();
+
+        private boolean setExpiration(long expiration) {
+            boolean changed = this.expiration != expiration;
+            this.expiration = expiration;
+            return changed;
+        }
+
+        private List<Entry<T>> flush() {
+            List<Entry<T>> flushed = entries;
+            entries = new ArrayList<>();
+            expiration = -1;
+            return flushed;
+        }
+    }
+
+    private static final class Level<T> {
+
+        private final long tickMs;
+        private final int wheelSize;
+        private final long interval;
+        private final Bucket<T>[] buckets;
+        private final PriorityQueue<Bucket<T>> queue;
+        private long currentTime;
+        private Level<T> overflow;
+
+        @SuppressWarnings("unchecked")
+        private Level(long tickMs, int wheelSize, long startMs, PriorityQueue<Bucket<T>> queue) {
+            this.tickMs = tickMs;
+            this.wheelSize = wheelSize;
+            this.interval = tickMs * wheelSize;
+            this.queue = queue;
+            this.currentTime = startMs - startMs % tickMs;
+            this.buckets = new Bucket[wheelSize];
+            for (int i = 0; i < wheelSize; i++) {
+                buckets[i] = new Bucket<>();
+            }
+        }
+
+        private boolean add(Entry<T> entry) {
+            long expiration = entry.deadlineMs();
+            if (expiration < currentTime + tickMs) {
+                return false;
+            }
+            if (expiration < currentTime + interval) {
+                long virtualId = expiration / tickMs;
+                Bucket<T> bucket = buckets[(int) (virtualId % wheelSize)];
+                bucket.entries.add(entry);
+                if (bucket.setExpiration(virtualId * tickMs)) {
+                    queue.add(bucket);
+                }
+                return true;
+            }
+            if (overflow == null) {
+                overflow = new Level<>(interval, wheelSize, currentTime, queue);
+            }
+            return overflow.add(entry);
+        }
+
+        private void advanceClock(long timeMs) {
+            if (timeMs >= currentTime + tickMs) {
+                currentTime = timeMs - timeMs % tickMs;
+                if (overflow != null) {
+                    overflow.advanceClock(currentTime);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.bankcards.util;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Ограниченный кольцевой буфер «много производителей — один потребитель».
+ * Производитель захватывает слот CAS-ом курсора и публикует элемент записью
+ * порядкового номера слота; потребитель читает слоты строго по порядку
+ * без блокировок. Ёмкость не меньше двух и округляется вверх до степени двойки
+ */
+public class MpscRingBuffer<T> {
+
+    private final Object[] slots;
+    // номер, при котором слот свободен для записи (== позиция) или готов к чтению (== позиция + 1)
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private final int mask;
+    private long head; // только поток-потребитель
+
+    public MpscRingBuffer(int capacity) {
+        // при одном слоте «готов к чтению» (позиция + 1) совпадает с «свободен» для следующей позиции
+        if (capacity < 2 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Capacity must be between 2 and 2^30");
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.mask = size - 1;
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+
+    /**
+     * @return false, если буфер заполнен
+     */
+    public boolean offer(T element) {
+        while (true) {
+            long position = tail.get();
+            int index = (int) position & mask;
+            long available = sequences.get(index) - position;
+            if (available == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots[index] = element;
+                    sequences.lazySet(index, position + 1);
+                    return true;
+                }
+            } else if (available < 0) {
+                return false;
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    /**
+     * Забирает до max опубликованных элементов подряд; вызывается только потоком-потребителем
+     */
+    @SuppressWarnings("unchecked")
+    public int drainTo(List<T> target, int max) {
+        int drained = 0;
+        while (drained < max) {
+            int index = (int) head & mask;
+            if (sequences.get(index) != head + 1) {
+                break;
+            }
+            target.add((T) slots[index]);
+            slots[index] = null;
+            sequences.lazySet(index, head + slots.length);
+            head++;
+            drained++;
+        }
+        return drained;
+    }
+
+    /**
+     * Нет ни опубликованных, ни захваченных, но ещё не опубликованных слотов;
+     * вызывается только потоком-потребителем
+     */
+    public boolean isEmpty() {
+        return tail.get() == head;
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.bankcards.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Один поток-писатель забирает из {@link MpscRingBuffer} всё, что накопилось
+ * (не больше maxBatch), и передаёт обработчику одной порцией. Пока идёт
+ * обработка порции, новые элементы копятся в буфере и уходят следующей порцией,
+ * поэтому размер порции сам растёт с нагрузкой, а при одиночных запросах
+ * задержка не добавляется. Простаивая, писатель сначала крутится, затем засыпает,
+ * пока производитель не разбудит его новым элементом. Элементы, которые уже не будут
+ * обработаны (писатель упал или секвенсор закрыт), передаются в onRejected
+ */
+@Slf4j
+public class SingleWriterSequencer<T> implements AutoCloseable {
+
+    private static final int SPINS_BEFORE_PARK = 100;
+
+    private final MpscRingBuffer<T> ring;
+    private final int maxBatch;
+    private final Consumer<List<T>> handler;
+    private final BiConsumer<List<T>, Throwable> onRejected;
+    private final Thread writer;
+    // производители, которые прошли проверку running, но ещё не положили элемент
+    private final AtomicInteger offering = new AtomicInteger();
+    private volatile boolean running = true;
+    // писатель собирается уснуть или спит; производитель после offer будит его
+    private volatile boolean writerParked;
+
+    public SingleWriterSequencer(String name, int capacity, int maxBatch, Consumer<List<T>> handler,
+                                 BiConsumer<List<T>, Throwable> onRejected) {
+        this.ring = new MpscRingBuffer<>(capacity);
+        this.maxBatch = Math.max(1, maxBatch);
+        this.handler = handler;
+        this.onRejected = onRejected;
+        this.writer = new Thread(this::run, name);
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * @return false, если буфер заполнен или секвенсор остановлен
+     */
+    public boolean offer(T element) {
+        offering.incrementAndGet();
+        try {
+            if (!running || !ring.offer(element)) {
+                return false;
+            }
+            if (writerParked) {
+                LockSupport.unpark(writer);
+            }
+            return true;
+        } finally {
+            offering.decrementAndGet();
+        }
+    }
+
+    /**
+     * @return false, если секвенсор закрыт или его писатель упал
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Останавливает приём и ждёт, пока писатель обработает уже принятые элементы
+     */
+    @Override
+    public void close() {
+        stopAccepting();
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (!writer.isAlive()) {
+            // производитель мог успеть положить элемент, пока писатель завершался
+            List<T> rest = new ArrayList<>();
+            if (ring.drainTo(rest, Integer.MAX_VALUE) > 0) {
+                handler.accept(rest);
+            }
+        }
+    }
+
+    /**
+     * После возврата ни один производитель уже не положит элемент в буфер
+     */
+    private void stopAccepting() {
+        running = false;
+        while (offering.get() != 0) {
+            Thread.onSpinWait();
+        }
+    }
+
+    private void run() {
+        List<T> batch = new ArrayList<>(maxBatch);
+        int idle = 0;
+        while (running || !ring.isEmpty()) {
+            if (ring.drainTo(batch, maxBatch) == 0) {
+                if (++idle < SPINS_BEFORE_PARK) {
+                    Thread.onSpinWait();
+                    continue;
+                }
+                writerParked = true;
+                // флаг выставлен до проверки: элемент, положенный раньше, виден здесь,
+                // а производитель, положивший его позже, увидит флаг и разбудит писателя
+                if (running && ring.isEmpty()) {
+                    LockSupport.park(this);
+                }
+                writerParked = false;
+                continue;
+            }
+            idle = 0;
+            try {
+                handler.accept(batch);
+            } catch (RuntimeException e) {
+                log.error("Sequencer batch handler failed", e);
+                onRejected.accept(batch, e);
+            } catch (Error e) {
+                log.error("Sequencer writer failed, rejecting queued elements", e);
+                onRejected.accept(batch, e);
+                stopAccepting();
+                List<T> rest = new ArrayList<>();
+                ring.drainTo(rest, Integer.MAX_VALUE);
+                onRejected.accept(rest, e);
+                throw e;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.BankRestApplication;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.UserRole;
+import com.example.bankcards.entity.enums.UserStatus;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.CardIssuanceService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Выпуск 100 000 карт через CardIssuanceService: batchSize=1 — каждый INSERT
+ * отдельным запросом, batchSize=50 — JDBC batch'и по hibernate.jdbc.batch_size.
+ * По умолчанию поднимается H2 в памяти; для замера на PostgreSQL передайте
+ * -Dspring.datasource.url=... (и username/password), сетевые round-trip'ы там
+ * делают разницу заметно больше.
+ * Запуск: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.example.bankcards.benchmark.CardBulkInsertBenchmark
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CardBulkInsertBenchmark {
+
+    private static final int USERS = 1000;
+    private static final int CARDS = 100_000;
+
+    @Param({"1", "50"})
+    private int batchSize;
+
+    private ConfigurableApplicationContext context;
+    private CardIssuanceService cardIssuanceService;
+    private CardRepository cardRepository;
+    private List<Long> userIds;
+
+    @Setup(Level.Trial)
+    public void startContext() {
+        context = new SpringApplicationBuilder(BankRestApplication.class).run(
+                arg("server.port", "0"),
+                arg("spring.datasource.url", "jdbc:h2:mem:bulk-insert;DB_CLOSE_DELAY=-1"),
+                arg("spring.datasource.driver-class-name", "org.h2.Driver"),
+                arg("spring.datasource.username", "sa"),
+                arg("spring.datasource.password", ""),
+                arg("spring.liquibase.enabled", "false"),
+                arg("spring.jpa.hibernate.ddl-auto", "create-drop"),
+                arg("spring.jpa.show-sql", "false"),
+                "--spring.jpa.properties.hibernate.jdbc.batch_size=" + batchSize,
+                arg("jwt.secret", "BenchmarkSecretKeyForJwtSigning"),
+                arg("bankcards.backfill.enabled", "false"));
+        cardIssuanceService = context.getBean(CardIssuanceService.class);
+        cardRepository = context.getBean(CardRepository.class);
+
+        UserRepository userRepository = context.getBean(UserRepository.class);
+        List<User> users = new ArrayList<>(USERS);
+        for (int i = 0; i < USERS; i++) {
+            users.add(User.builder()
+                    .username("bulk" + i)
+                    .password("password")
+                    .email("bulk" + i + "@example.com")
+                    .firstName("Bulk")
+                    .lastName("User")
+                    .status(UserStatus.ACTIVE)
+                    .role(UserRole.USER)
+                    .createdAt(Instant.now())
+                    .build());
+        }
+        List<Long> ids = userRepository.saveAll(users).stream().map(User::getId).toList();
+
+        userIds = new ArrayList<>(CARDS);
+        for (int i = 0; i < CARDS; i++) {
+            userIds.add(ids.get(i % USERS));
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void deleteCards() {
+        cardRepository.deleteAllInBatch();
+    }
+
+    @Benchmark
+    public int issueCards() {
+        return cardIssuanceService.issueCards(userIds).getIssued();
+    }
+
+    @TearDown(Level.Trial)
+    public void closeContext() {
+        context.close();
+    }
+
+    private static String arg(String name, String defaultValue) {
+        return "--" + name + "=" + System.getProperty(name, defaultValue);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CardBulkInsertBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
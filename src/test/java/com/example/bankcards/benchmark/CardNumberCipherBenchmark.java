@@ -0,0 +1,67 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.security.CardNumberCipher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость расшифровки номера одной карты при построении CardDto:
+ * perCallCipher — прежняя реализация CardService.decrypt (Cipher.getInstance
+ * и SecretKeySpec на каждый вызов), cachedCipher — CardNumberCipher.
+ * Запуск: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.example.bankcards.benchmark.CardNumberCipherBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CardNumberCipherBenchmark {
+
+    private static final String KEY = "MySuperSecretKey";
+
+    private CardNumberCipher cardNumberCipher;
+    private String encryptedCardNumber;
+
+    @Setup
+    public void setUp() {
+        cardNumberCipher = new CardNumberCipher(KEY, "MySuperSecretHashKey");
+        encryptedCardNumber = cardNumberCipher.encrypt("4000001234567899");
+    }
+
+    @Benchmark
+    public String perCallCipher() throws Exception {
+        Cipher cipher = Cipher.getInstance("AES");
+        cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(KEY.getBytes(), 0, KEY.length(), "AES"));
+        return new String(cipher.doFinal(Base64.getDecoder().decode(encryptedCardNumber)));
+    }
+
+    @Benchmark
+    public String cachedCipher() {
+        return cardNumberCipher.decrypt(encryptedCardNumber);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CardNumberCipherBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
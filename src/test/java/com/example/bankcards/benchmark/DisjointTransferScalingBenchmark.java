@@ -0,0 +1,148 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.BankRestApplication;
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.UserRole;
+import com.example.bankcards.entity.enums.UserStatus;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.CardIssuanceService;
+import com.example.bankcards.service.TransferService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Пропускная способность переводов по непересекающимся парам карт при 1, 4 и 16
+ * клиентах в режимах ATOMIC, PESSIMISTIC и OPTIMISTIC. Каждый клиент переводит
+ * туда и обратно между своей парой карт, так что клиенты не делят блокировок строк,
+ * и пропускная способность должна расти с числом клиентов, пока хватает ядер и
+ * соединений пула. H2 в памяти упирается в процессор и не показывает блокировки
+ * строк PostgreSQL, поэтому осмысленные цифры получаются только на PostgreSQL
+ * (-Dspring.datasource.url=..., username/password).
+ * Запуск: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.example.bankcards.benchmark.DisjointTransferScalingBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DisjointTransferScalingBenchmark {
+
+    private static final int[] CLIENTS = {1, 4, 16};
+    private static final int MAX_CLIENTS = 16;
+
+    @Param({"ATOMIC", "PESSIMISTIC", "OPTIMISTIC"})
+    private String lockingMode;
+
+    private ConfigurableApplicationContext context;
+    private TransferService transferService;
+    private List<Long> cardIds;
+    private final AtomicInteger nextPair = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void startContext() {
+        context = new SpringApplicationBuilder(BankRestApplication.class).run(
+                arg("server.port", "0"),
+                arg("spring.datasource.url", "jdbc:h2:mem:disjoint-transfers;DB_CLOSE_DELAY=-1"),
+                arg("spring.datasource.driver-class-name", "org.h2.Driver"),
+                arg("spring.datasource.username", "sa"),
+                arg("spring.datasource.password", ""),
+                arg("spring.datasource.hikari.maximum-pool-size", String.valueOf(MAX_CLIENTS)),
+                arg("spring.liquibase.enabled", "false"),
+                arg("spring.jpa.hibernate.ddl-auto", "create-drop"),
+                arg("spring.jpa.show-sql", "false"),
+                arg("jwt.secret", "BenchmarkSecretKeyForJwtSigning"),
+                arg("bankcards.backfill.enabled", "false"),
+                "--bankcards.transfer.locking-mode=" + lockingMode);
+        transferService = context.getBean(TransferService.class);
+
+        User user = context.getBean(UserRepository.class).save(User.builder()
+                .username("disjoint-bench")
+                .password("password")
+                .email("disjoint-bench@example.com")
+                .firstName("Disjoint")
+                .lastName("Bench")
+                .status(UserStatus.ACTIVE)
+                .role(UserRole.USER)
+                .createdAt(Instant.now())
+                .build());
+        context.getBean(CardIssuanceService.class).issueCards(Collections.nCopies(MAX_CLIENTS * 2, user.getId()));
+        context.getBean(JdbcTemplate.class).update("UPDATE cards SET balance = 1000000000");
+        cardIds = context.getBean(CardRepository.class).findAll().stream().map(card -> card.getId()).toList();
+    }
+
+    /**
+     * Пара карт одного клиента; направление перевода меняется на каждом вызове
+     */
+    @State(Scope.Thread)
+    public static class Pair {
+
+        private Long from;
+        private Long to;
+
+        @Setup(Level.Trial)
+        public void assign(DisjointTransferScalingBenchmark benchmark) {
+            int pair = benchmark.nextPair.getAndIncrement();
+            from = benchmark.cardIds.get(pair * 2);
+            to = benchmark.cardIds.get(pair * 2 + 1);
+        }
+    }
+
+    @Benchmark
+    public void transfer(Pair pair) {
+        TransferRequest request = new TransferRequest();
+        request.setFromCardId(pair.from);
+        request.setToCardId(pair.to);
+        request.setAmount(BigDecimal.ONE);
+        transferService.transferMoney(request, "disjoint-bench");
+        Long from = pair.from;
+        pair.from = pair.to;
+        pair.to = from;
+    }
+
+    @TearDown(Level.Trial)
+    public void closeContext() {
+        context.close();
+    }
+
+    private static String arg(String name, String defaultValue) {
+        return "--" + name + "=" + System.getProperty(name, defaultValue);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int clients : CLIENTS) {
+            new Runner(new OptionsBuilder()
+                    .include(DisjointTransferScalingBenchmark.class.getSimpleName())
+                    .threads(clients)
+                    .build())
+                    .run();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.JwtAuthenticationFilter;
+import com.example.bankcards.security.JwtProvider;
+import com.example.bankcards.security.TokenRevocationService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Стоимость JwtAuthenticationFilter в stateless-режиме на один запрос
+ * с уже выданным токеном: claimsCache=false — проверка HS512 и разбор JSON
+ * на каждый запрос, claimsCache=true — claims из кэша по SHA-256 токена.
+ * Запуск: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.example.bankcards.benchmark.JwtAuthenticationFilterBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JwtAuthenticationFilterBenchmark {
+
+    @Param({"false", "true"})
+    private boolean claimsCache;
+
+    private JwtAuthenticationFilter filter;
+    private String authorizationHeader;
+
+    @Setup
+    public void setUp() {
+        JwtProvider jwtProvider = new JwtProvider();
+        ReflectionTestUtils.setField(jwtProvider, "jwtSecret", "BenchmarkSecretKeyForJwtSigning");
+        ReflectionTestUtils.setField(jwtProvider, "jwtExpirationMs", 86_400_000L);
+        ReflectionTestUtils.setField(jwtProvider, "claimsCacheEnabled", claimsCache);
+        filter = new JwtAuthenticationFilter(jwtProvider, null, new TokenRevocationService(
+                mock(UserRepository.class), 86_400_000L, Duration.ofSeconds(10)), true);
+
+        User principal = new User("benchmark", "password", List.of(new SimpleGrantedAuthority("ROLE_USER")));
+        String token = jwtProvider.generateToken(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+        authorizationHeader = "Bearer " + token;
+    }
+
+    @Benchmark
+    public Authentication filterRequest() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", authorizationHeader);
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        SecurityContextHolder.clearContext();
+        return authentication;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtAuthenticationFilterBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
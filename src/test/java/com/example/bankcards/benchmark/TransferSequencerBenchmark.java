@@ -0,0 +1,131 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.BankRestApplication;
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.UserRole;
+import com.example.bankcards.entity.enums.UserStatus;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.CardIssuanceService;
+import com.example.bankcards.service.TransferService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность переводов при 1, 16 и 256 одновременных клиентах:
+ * ATOMIC — каждый перевод своей транзакцией с условными UPDATE, SEQUENCED —
+ * переводы через кольцевой буфер, один поток-писатель и одна транзакция на порцию.
+ * Переводы идут между случайными картами одного пользователя, так что при
+ * большом числе клиентов они конкурируют за строки и соединения пула.
+ * По умолчанию поднимается H2 в памяти, где коммит почти бесплатен; на
+ * PostgreSQL (-Dspring.datasource.url=..., username/password) к каждому коммиту
+ * добавляется fsync WAL, и выигрыш от одного коммита на порцию заметно больше.
+ * Запуск: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.example.bankcards.benchmark.TransferSequencerBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransferSequencerBenchmark {
+
+    private static final int CARDS = 64;
+    private static final int[] CLIENTS = {1, 16, 256};
+
+    @Param({"ATOMIC", "SEQUENCED"})
+    private String lockingMode;
+
+    private ConfigurableApplicationContext context;
+    private TransferService transferService;
+    private List<Long> cardIds;
+
+    @Setup(Level.Trial)
+    public void startContext() {
+        context = new SpringApplicationBuilder(BankRestApplication.class).run(
+                arg("server.port", "0"),
+                arg("spring.datasource.url", "jdbc:h2:mem:transfer-sequencer;DB_CLOSE_DELAY=-1"),
+                arg("spring.datasource.driver-class-name", "org.h2.Driver"),
+                arg("spring.datasource.username", "sa"),
+                arg("spring.datasource.password", ""),
+                arg("spring.liquibase.enabled", "false"),
+                arg("spring.jpa.hibernate.ddl-auto", "create-drop"),
+                arg("spring.jpa.show-sql", "false"),
+                arg("jwt.secret", "BenchmarkSecretKeyForJwtSigning"),
+                arg("bankcards.backfill.enabled", "false"),
+                "--bankcards.transfer.locking-mode=" + lockingMode);
+        transferService = context.getBean(TransferService.class);
+
+        User user = context.getBean(UserRepository.class).save(User.builder()
+                .username("transfer-bench")
+                .password("password")
+                .email("transfer-bench@example.com")
+                .firstName("Transfer")
+                .lastName("Bench")
+                .status(UserStatus.ACTIVE)
+                .role(UserRole.USER)
+                .createdAt(Instant.now())
+                .build());
+        context.getBean(CardIssuanceService.class).issueCards(Collections.nCopies(CARDS, user.getId()));
+        context.getBean(JdbcTemplate.class).update("UPDATE cards SET balance = 1000000000");
+        cardIds = context.getBean(CardRepository.class).findAll().stream().map(card -> card.getId()).toList();
+    }
+
+    @Benchmark
+    public void transfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(CARDS);
+        int to = (from + 1 + random.nextInt(CARDS - 1)) % CARDS;
+
+        TransferRequest request = new TransferRequest();
+        request.setFromCardId(cardIds.get(from));
+        request.setToCardId(cardIds.get(to));
+        request.setAmount(BigDecimal.ONE);
+        transferService.transferMoney(request, "transfer-bench");
+    }
+
+    @TearDown(Level.Trial)
+    public void closeContext() {
+        context.close();
+    }
+
+    private static String arg(String name, String defaultValue) {
+        return "--" + name + "=" + System.getProperty(name, defaultValue);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int clients : CLIENTS) {
+            new Runner(new OptionsBuilder()
+                    .include(TransferSequencerBenchmark.class.getSimpleName())
+                    .threads(clients)
+                    .build())
+                    .run();
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.BankRestApplication;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.UserRole;
+import com.example.bankcards.entity.enums.UserStatus;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.JwtProvider;
+import com.example.bankcards.service.CardIssuanceService;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Нагрузочный прогон веб-слоя: clients клиентов одновременно в цикле
+ * запрашивают GET /api/cards/scroll в течение duration секунд, при пуле из
+ * пяти соединений, как в application.yml. Печатает пропускную способность,
+ * p50/p99 задержки, число 429 и ошибок, пик потоков и пик занятой кучи.
+ * Режим веб-слоя задаётся -Dspring.threads.virtual.enabled=true|false
+ * (виртуальные потоки включаются только на JDK 21+); ограничитель соединений —
+ * -Dbankcards.connection-limiter.enabled. Клиенты и сервер живут в одном JVM,
+ * поэтому память сравнивается только между режимами, а не в абсолютных числах.
+ * По умолчанию H2 в памяти; для PostgreSQL передайте -Dspring.datasource.url=...
+ * Запуск: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.example.bankcards.benchmark.WebTierLoadBenchmark
+ * -Dclients=5000 -Dduration=30
+ */
+public class WebTierLoadBenchmark {
+
+    private static final String USERNAME = "load-test";
+    private static final int CARDS = 50;
+
+    public static void main(String[] args) throws Exception {
+        int clients = Integer.getInteger("clients", 5000);
+        int durationSeconds = Integer.getInteger("duration", 30);
+        boolean virtualThreads = Boolean.parseBoolean(System.getProperty("spring.threads.virtual.enabled", "false"));
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(BankRestApplication.class).run(
+                arg("server.port", "0"),
+                arg("spring.datasource.url", "jdbc:h2:mem:load-test;DB_CLOSE_DELAY=-1"),
+                arg("spring.datasource.driver-class-name", "org.h2.Driver"),
+                arg("spring.datasource.username", "sa"),
+                arg("spring.datasource.password", ""),
+                arg("spring.datasource.hikari.maximum-pool-size", "5"),
+                arg("spring.liquibase.enabled", "false"),
+                arg("spring.jpa.hibernate.ddl-auto", "create-drop"),
+                arg("spring.jpa.show-sql", "false"),
+                arg("spring.threads.virtual.enabled", String.valueOf(virtualThreads)),
+                arg("bankcards.connection-limiter.enabled", String.valueOf(virtualThreads)),
+                arg("server.tomcat.max-connections", String.valueOf(clients * 2)),
+                arg("server.tomcat.accept-count", String.valueOf(clients)),
+                arg("jwt.secret", "LoadTestSecretKeyForJwtSigning"),
+                arg("bankcards.backfill.enabled", "false"),
+                arg("logging.level.root", "WARN"));
+        try {
+            String token = prepareUser(context);
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            URI uri = URI.create("http://localhost:" + port + "/api/cards/scroll?limit=20");
+            run(uri, token, clients, Duration.ofSeconds(durationSeconds), virtualThreads);
+        } finally {
+            context.close();
+        }
+    }
+
+    private static String prepareUser(ConfigurableApplicationContext context) {
+        User user = context.getBean(UserRepository.class).save(User.builder()
+                .username(USERNAME)
+                .password("password")
+                .email("load-test@example.com")
+                .firstName("Load")
+                .lastName("Test")
+                .status(UserStatus.ACTIVE)
+                .role(UserRole.USER)
+                .createdAt(Instant.now())
+                .build());
+        context.getBean(CardIssuanceService.class).issueCards(Collections.nCopies(CARDS, user.getId()));
+
+        org.springframework.security.core.userdetails.User principal = new org.springframework.security.core.userdetails.User(
+                USERNAME, "", List.of(new SimpleGrantedAuthority("ROLE_USER")));
+        return context.getBean(JwtProvider.class).generateToken(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+    }
+
+    private static void run(URI uri, String token, int clients, Duration duration, boolean virtualThreads)
+            throws Exception {
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("Authorization", "Bearer " + token)
+                .timeout(Duration.ofSeconds(60))
+                .GET()
+                .build();
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        System.gc();
+        long baselineHeap = memory.getHeapMemoryUsage().getUsed();
+        threads.resetPeakThreadCount();
+        AtomicLong peakHeap = new AtomicLong();
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate(() -> peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max),
+                0, 100, TimeUnit.MILLISECONDS);
+
+        ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+        AtomicInteger rejected = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        long deadline = System.nanoTime() + duration.toNanos();
+        CompletableFuture<?>[] loops = new CompletableFuture<?>[clients];
+        for (int i = 0; i < clients; i++) {
+            loops[i] = loop(httpClient, request, deadline, latencies, rejected, errors);
+        }
+        CompletableFuture.allOf(loops).get(duration.toSeconds() + 120, TimeUnit.SECONDS);
+        sampler.shutdownNow();
+
+        long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        System.out.printf("mode=%s clients=%d duration=%ds%n",
+                virtualThreads ? "virtual" : "platform", clients, duration.toSeconds());
+        System.out.printf("ok=%d rejected(429)=%d errors=%d throughput=%.0f req/s%n",
+                sorted.length, rejected.get(), errors.get(), sorted.length / (double) duration.toSeconds());
+        System.out.printf("latency p50=%.1f ms p99=%.1f ms max=%.1f ms%n",
+                percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 1.0));
+        System.out.printf("peak threads=%d peak heap=%d MB (baseline %d MB)%n", threads.getPeakThreadCount(),
+                peakHeap.get() >> 20, baselineHeap >> 20);
+    }
+
+    /**
+     * Один клиент: следующий запрос уходит сразу после ответа на предыдущий, до дедлайна
+     */
+    private static CompletableFuture<Void> loop(HttpClient httpClient, HttpRequest request, long deadline,
+                                                ConcurrentLinkedQueue<Long> latencies, AtomicInteger rejected,
+                                                AtomicInteger errors) {
+        if (System.nanoTime() >= deadline) {
+            return CompletableFuture.completedFuture(null);
+        }
+        long started = System.nanoTime();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .handle((response, failure) -> {
+                    if (failure != null || response.statusCode() >= 500) {
+                        errors.incrementAndGet();
+                    } else if (response.statusCode() == 429) {
+                        rejected.incrementAndGet();
+                    } else {
+                        latencies.add(System.nanoTime() - started);
+                    }
+                    return null;
+                })
+                .thenCompose(ignored -> loop(httpClient, request, deadline, latencies, rejected, errors));
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1);
+        return sorted[Math.max(index, 0)] / 1_000_000.0;
+    }
+
+    private static String arg(String name, String defaultValue) {
+        return "--" + name + "=" + System.getProperty(name, defaultValue);
+    }
+}
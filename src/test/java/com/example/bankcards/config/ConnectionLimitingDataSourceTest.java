@@ -0,0 +1,101 @@
+package com.example.bankcards.config;
+
+import com.example.bankcards.exception.TooManyRequestsException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ConnectionLimitingDataSourceTest {
+
+    private DataSource target;
+    private ConnectionLimitingDataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        target = mock(DataSource.class);
+        when(target.getConnection()).thenAnswer(invocation -> mock(Connection.class));
+        dataSource = new ConnectionLimitingDataSource(target, 2, Duration.ofMillis(20));
+    }
+
+    @Test
+    void getConnection_shouldFailFast_whenAllPermitsAreTaken() throws SQLException {
+        dataSource.getConnection();
+        dataSource.getConnection();
+
+        TooManyRequestsException ex = assertThrows(TooManyRequestsException.class, dataSource::getConnection);
+        assertEquals("Database is busy, try again later", ex.getMessage());
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS,
+                AnnotatedElementUtils.findMergedAnnotation(ex.getClass(), ResponseStatus.class).code());
+        verify(target, times(2)).getConnection();
+    }
+
+    @Test
+    void close_shouldReturnPermitOnlyOnce() throws SQLException {
+        Connection connection = dataSource.getConnection();
+        assertEquals(1, dataSource.availablePermits());
+
+        connection.close();
+        connection.close();
+
+        assertEquals(2, dataSource.availablePermits());
+    }
+
+    @Test
+    void getConnection_shouldReturnPermit_whenTargetFails() throws SQLException {
+        when(target.getConnection()).thenThrow(new SQLException("pool is closed"));
+
+        assertThrows(SQLException.class, dataSource::getConnection);
+
+        assertEquals(2, dataSource.availablePermits());
+    }
+
+    @Test
+    void connection_shouldDelegateOtherCalls() throws SQLException {
+        Connection physical = mock(Connection.class);
+        when(target.getConnection()).thenReturn(physical);
+
+        Connection connection = dataSource.getConnection();
+        connection.setAutoCommit(false);
+        connection.commit();
+        connection.close();
+
+        verify(physical).setAutoCommit(false);
+        verify(physical).commit();
+        verify(physical).close();
+    }
+
+    @Test
+    void unwrap_shouldReturnProxy_forConnectionInterface() throws SQLException {
+        Connection physical = mock(Connection.class);
+        when(target.getConnection()).thenReturn(physical);
+
+        Connection connection = dataSource.getConnection();
+        Connection unwrapped = connection.unwrap(Connection.class);
+
+        assertSame(connection, unwrapped);
+        assertTrue(connection.isWrapperFor(Connection.class));
+        unwrapped.close();
+        connection.close();
+
+        assertEquals(2, dataSource.availablePermits());
+        verify(physical, never()).unwrap(any());
+    }
+}
@@ -1,28 +1,51 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.dto.BulkCardIssueResultDto;
+import com.example.bankcards.dto.BulkUserStatusResultDto;
 import com.example.bankcards.dto.CardDto;
 import com.example.bankcards.dto.CardRequestDto;
+import com.example.bankcards.dto.CardSliceDto;
 import com.example.bankcards.dto.UserDto;
+import com.example.bankcards.dto.UserImportResultDto;
+import com.example.bankcards.entity.enums.UserStatus;
 import com.example.bankcards.service.AdminService;
+import com.example.bankcards.service.CardBalanceShardService;
+import com.example.bankcards.service.CardExportService;
+import com.example.bankcards.service.CardIssuanceService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.List;
 
 import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 
@@ -36,6 +59,15 @@ class AdminControllerTest {
     @MockitoBean
     private AdminService adminService;
 
+    @MockitoBean
+    private CardExportService cardExportService;
+
+    @MockitoBean
+    private CardIssuanceService cardIssuanceService;
+
+    @MockitoBean
+    private CardBalanceShardService cardBalanceShardService;
+
 
     @Test
     void blockCard_shouldCallServiceAndReturnOk() throws Exception {
@@ -133,4 +165,129 @@ class AdminControllerTest {
 
         verify(adminService, times(1)).updateCardRequestStatus(requestId, status);
     }
-}
\ No newline at end of file
+
+    @Test
+    void scrollAllCards_shouldReturnSlice() throws Exception {
+        CardSliceDto slice = new CardSliceDto();
+        slice.setContent(List.of(new CardDto()));
+
+        when(adminService.scrollAllCards(null, 20)).thenReturn(slice);
+
+        mockMvc.perform(get("/api/admin/cards/scroll"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(1)))
+                .andExpect(jsonPath("$.hasNext").value(false));
+    }
+
+    @Test
+    void exportCards_shouldStreamCsvAttachment() throws Exception {
+        doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(1).write("id\n1\n".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(cardExportService).exportCards(eq(CardExportService.Format.CSV), any(OutputStream.class));
+
+        MvcResult result = mockMvc.perform(get("/api/admin/cards/export").param("format", "CSV"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertEquals(Duration.ofMinutes(30).toMillis(), result.getRequest().getAsyncContext().getTimeout());
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"cards.csv\""))
+                .andExpect(content().contentType("text/csv"))
+                .andExpect(content().string("id\n1\n"));
+    }
+
+    @Test
+    void importUsers_shouldReturnImportResult() throws Exception {
+        UserImportResultDto result = new UserImportResultDto();
+        result.setImported(1);
+        result.setSkipped(0);
+        result.setSkippedUsernames(List.of());
+        when(adminService.importUsers(any())).thenReturn(result);
+
+        String body = """
+                {"users": [{"username": "migrated", "email": "migrated@example.com",
+                  "passwordHash": "$2a$10$.NuxW/cjAgEla9xzBBNMle05OHHQCgeioLhR7D8uWYi/DLpIGmeHu",
+                  "firstName": "John", "lastName": "Doe"}]}
+                """;
+
+        mockMvc.perform(post("/api/admin/users/import")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body)
+                        .with(csrf()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.skipped").value(0));
+    }
+
+    @Test
+    void importUsers_shouldRejectPlaintextPassword() throws Exception {
+        String body = """
+                {"users": [{"username": "migrated", "email": "migrated@example.com",
+                  "passwordHash": "plaintext", "firstName": "John", "lastName": "Doe"}]}
+                """;
+
+        mockMvc.perform(post("/api/admin/users/import")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body)
+                        .with(csrf()))
+                .andExpect(status().isBadRequest());
+
+        verify(adminService, never()).importUsers(any());
+    }
+
+    @Test
+    void issueCards_shouldReturnBulkResult() throws Exception {
+        BulkCardIssueResultDto result = new BulkCardIssueResultDto();
+        result.setIssued(2);
+        result.setMissingUserIds(List.of(9L));
+        when(cardIssuanceService.issueCards(List.of(1L, 2L, 9L))).thenReturn(result);
+
+        mockMvc.perform(post("/api/admin/cards/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"userIds\": [1, 2, 9]}")
+                        .with(csrf()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.issued").value(2))
+                .andExpect(jsonPath("$.missingUserIds[0]").value(9));
+    }
+
+    @Test
+    void updateUsersStatus_shouldReturnCounts() throws Exception {
+        BulkUserStatusResultDto result = new BulkUserStatusResultDto();
+        result.setUpdatedUsers(2);
+        result.setUpdatedCards(5000);
+        when(adminService.updateUsersStatus(List.of(1L, 2L), UserStatus.BLOCKED)).thenReturn(result);
+
+        mockMvc.perform(patch("/api/admin/users/status")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"userIds\": [1, 2], \"status\": \"BLOCKED\"}")
+                        .with(csrf()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.updatedUsers").value(2))
+                .andExpect(jsonPath("$.updatedCards").value(5000));
+    }
+
+    @Test
+    void changeBalanceShards_shouldCallService() throws Exception {
+        mockMvc.perform(patch("/api/admin/cards/{cardId}/balance-shards", 7L)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"shards\": 16}")
+                        .with(csrf()))
+                .andExpect(status().isOk());
+
+        verify(cardBalanceShardService).changeShardCount(7L, 16);
+    }
+
+    @Test
+    void changeBalanceShards_shouldRejectTooManyShards() throws Exception {
+        mockMvc.perform(patch("/api/admin/cards/{cardId}/balance-shards", 7L)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"shards\": 65}")
+                        .with(csrf()))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(cardBalanceShardService);
+    }
+}
@@ -1,8 +1,14 @@
 package com.example.bankcards.controller;
 
 import com.example.bankcards.dto.CardDto;
+import com.example.bankcards.dto.CardSliceDto;
+import com.example.bankcards.dto.CardTransactionDto;
+import com.example.bankcards.service.CardLedgerService;
 import com.example.bankcards.service.CardService;
+import com.example.bankcards.service.IdempotencyService;
+import com.example.bankcards.service.TopUpWriteBehindService;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -11,11 +17,15 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.List;
+import java.util.function.Supplier;
 
 import static org.hamcrest.Matchers.hasSize;
 import static org.mockito.ArgumentMatchers.any;
@@ -24,6 +34,7 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
@@ -40,9 +51,24 @@ class CardControllerTest {
     @MockitoBean
     private CardService cardService;
 
+    @MockitoBean
+    private IdempotencyService idempotencyService;
+
+    @MockitoBean
+    private CardLedgerService cardLedgerService;
+
+    @MockitoBean
+    private TopUpWriteBehindService topUpWriteBehindService;
+
     @Autowired
     private ObjectMapper objectMapper;
 
+    @BeforeEach
+    void setUp() {
+        when(idempotencyService.execute(any(), any(), any(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<String>>getArgument(3).get());
+    }
+
     @Test
     void getUserCards_shouldReturnPageOfCards() throws Exception {
         CardDto card1 = new CardDto();
@@ -84,4 +110,53 @@ class CardControllerTest {
 
         verify(cardService, times(1)).getCardDetailsById(5L, "testuser");
     }
-}
\ No newline at end of file
+
+    @Test
+    void scrollUserCards_shouldPassCursorAndLimit() throws Exception {
+        CardSliceDto slice = new CardSliceDto();
+        slice.setContent(List.of(new CardDto(), new CardDto()));
+        slice.setHasNext(true);
+        slice.setNextCursor(42L);
+
+        when(cardService.scrollUserCards("testuser", 40L, 2)).thenReturn(slice);
+
+        mockMvc.perform(get("/api/cards/scroll")
+                        .param("after", "40")
+                        .param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(2)))
+                .andExpect(jsonPath("$.hasNext").value(true))
+                .andExpect(jsonPath("$.nextCursor").value(42));
+    }
+
+    @Test
+    void getCardTransactions_shouldPassPeriodAndPage() throws Exception {
+        Instant from = Instant.parse("2025-03-01T00:00:00Z");
+        Instant to = Instant.parse("2025-04-01T00:00:00Z");
+        Page<CardTransactionDto> page = new PageImpl<>(List.of(new CardTransactionDto()), PageRequest.of(1, 10), 11);
+
+        when(cardLedgerService.getCardTransactions(5L, "testuser", from, to, PageRequest.of(1, 10)))
+                .thenReturn(page);
+
+        mockMvc.perform(get("/api/cards/{id}/transactions", 5L)
+                        .param("from", "2025-03-01T00:00:00Z")
+                        .param("to", "2025-04-01T00:00:00Z")
+                        .param("page", "1")
+                        .param("size", "10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(1)));
+
+        verify(cardLedgerService).getCardTransactions(5L, "testuser", from, to, PageRequest.of(1, 10));
+    }
+
+    @Test
+    void topUpCard_shouldGoThroughWriteBehindService() throws Exception {
+        mockMvc.perform(patch("/api/cards/{id}/topup", 5L)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"amount\": 25.50}"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("Card topped up successfully. Amount: 25.50"));
+
+        verify(topUpWriteBehindService).topUp(5L, "testuser", new BigDecimal("25.50"));
+    }
+}
@@ -1,8 +1,12 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.dto.BatchTransferRequest;
 import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.dto.TransferResultDto;
+import com.example.bankcards.service.IdempotencyService;
 import com.example.bankcards.service.TransferService;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,15 +17,22 @@ import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.math.BigDecimal;
+import java.util.List;
+import java.util.function.Supplier;
 
+import static org.hamcrest.Matchers.hasSize;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(TransferController.class)
@@ -35,9 +46,18 @@ class TransferControllerTest {
     @MockitoBean
     private TransferService transferService;
 
+    @MockitoBean
+    private IdempotencyService idempotencyService;
+
     @Autowired
     private ObjectMapper objectMapper;
 
+    @BeforeEach
+    void setUp() {
+        when(idempotencyService.execute(any(), any(), any(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<String>>getArgument(3).get());
+    }
+
     @Test
     void transfer_shouldCallServiceAndReturnOk() throws Exception {
         TransferRequest request = new TransferRequest();
@@ -63,4 +83,61 @@ class TransferControllerTest {
         assertEquals(request.getAmount(), captor.getValue().getAmount());
         assertEquals("testuser", usernameCaptor.getValue());
     }
-}
\ No newline at end of file
+
+    @Test
+    void transferBatch_shouldReturnResultPerTransfer() throws Exception {
+        TransferRequest leg = new TransferRequest();
+        leg.setFromCardId(1L);
+        leg.setToCardId(2L);
+        leg.setAmount(BigDecimal.TEN);
+
+        BatchTransferRequest request = new BatchTransferRequest();
+        request.setTransfers(List.of(leg));
+
+        TransferResultDto result = new TransferResultDto();
+        result.setIndex(0);
+        result.setStatus("COMPLETED");
+        when(transferService.transferBatch(anyList(), eq("testuser"))).thenReturn(List.of(result));
+
+        mockMvc.perform(post("/api/transfers/batch")
+                        .contentType("application/json")
+                        .content(objectMapper.writeValueAsString(request))
+                        .with(csrf()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].status").value("COMPLETED"));
+
+        verify(transferService, times(1)).transferBatch(anyList(), eq("testuser"));
+    }
+
+    @Test
+    void transferBatch_shouldReturnBadRequest_whenBatchEmpty() throws Exception {
+        BatchTransferRequest request = new BatchTransferRequest();
+        request.setTransfers(List.of());
+
+        mockMvc.perform(post("/api/transfers/batch")
+                        .contentType("application/json")
+                        .content(objectMapper.writeValueAsString(request))
+                        .with(csrf()))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void transfer_shouldPassIdempotencyKeyToService() throws Exception {
+        TransferRequest request = new TransferRequest();
+        request.setFromCardId(1L);
+        request.setToCardId(2L);
+        request.setAmount(BigDecimal.valueOf(100.50));
+
+        mockMvc.perform(post("/api/transfers/transfer")
+                        .contentType("application/json")
+                        .header("Idempotency-Key", "c0ffee")
+                        .content(objectMapper.writeValueAsString(request))
+                        .with(csrf()))
+                .andExpect(status().isOk())
+                .andExpect(content().string("Transfer successful"));
+
+        String expectedHash = IdempotencyService.fingerprint("transfer", 1L, 2L, "100.5");
+        verify(idempotencyService).execute(eq("testuser"), eq("c0ffee"), eq(expectedHash), any());
+    }
+}
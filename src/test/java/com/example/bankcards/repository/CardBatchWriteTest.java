@@ -0,0 +1,156 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.entity.enums.UserRole;
+import com.example.bankcards.entity.enums.UserStatus;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверяет по статистике Hibernate, что saveAll карт уходит JDBC batch'ами
+ * (hibernate.jdbc.batch_size из application.yml), а не отдельным запросом на строку
+ */
+@DataJpaTest(properties = {
+        "spring.liquibase.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+class CardBatchWriteTest {
+
+    private static final int CARDS = 120;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private User owner;
+
+    @BeforeEach
+    void setUp() {
+        owner = userRepository.saveAndFlush(User.builder()
+                .username("owner")
+                .password("password")
+                .email("owner@example.com")
+                .firstName("First")
+                .lastName("Last")
+                .status(UserStatus.ACTIVE)
+                .role(UserRole.USER)
+                .createdAt(Instant.now())
+                .build());
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void saveAll_shouldBatchInserts() {
+        cardRepository.saveAll(newCards());
+        cardRepository.flush();
+
+        assertEquals(CARDS, statistics.getEntityInsertCount());
+        // 3 batch'а INSERT и 3 nextval из cards_seq вместо 120 + 120 запросов
+        assertTrue(statistics.getPrepareStatementCount() <= 6,
+                "statements: " + statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void saveAll_shouldBatchUpdates() {
+        cardRepository.saveAll(newCards());
+        cardRepository.flush();
+        entityManager.clear();
+
+        List<Card> cards = cardRepository.findByUser(owner);
+        statistics.clear();
+
+        cards.forEach(card -> card.setStatus(CardStatus.BLOCKED));
+        cardRepository.saveAll(cards);
+        cardRepository.flush();
+
+        assertEquals(CARDS, statistics.getEntityUpdateCount());
+        assertTrue(statistics.getPrepareStatementCount() <= 3,
+                "statements: " + statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void blockAllByUserId_shouldBlockCardsWithOneStatement() {
+        cardRepository.saveAll(newCards());
+        cardRepository.flush();
+        entityManager.clear();
+        statistics.clear();
+
+        int blocked = cardRepository.blockAllByUserId(owner.getId());
+
+        assertEquals(CARDS, blocked);
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertTrue(cardRepository.findByUser(owner).stream().allMatch(card -> card.getStatus() == CardStatus.BLOCKED));
+    }
+
+    @Test
+    void creditActiveCards_shouldSkipBlockedAndShardedCards() {
+        List<Card> cards = cardRepository.saveAll(newCards().subList(0, 3));
+        cards.get(1).setStatus(CardStatus.BLOCKED);
+        cards.get(2).setBalanceShards(2);
+        cardRepository.saveAllAndFlush(cards);
+        entityManager.clear();
+
+        Set<Long> skipped = cardRepository.creditActiveCards(Map.of(
+                cards.get(0).getId(), BigDecimal.TEN,
+                cards.get(1).getId(), BigDecimal.TEN,
+                cards.get(2).getId(), BigDecimal.TEN,
+                Long.MAX_VALUE, BigDecimal.TEN));
+
+        assertEquals(Set.of(cards.get(1).getId(), cards.get(2).getId(), Long.MAX_VALUE), skipped);
+        assertEquals(0, BigDecimal.TEN.compareTo(balanceOf(cards.get(0))));
+        assertEquals(0, BigDecimal.ZERO.compareTo(balanceOf(cards.get(1))));
+    }
+
+    private BigDecimal balanceOf(Card card) {
+        return cardRepository.findById(card.getId()).orElseThrow().getBalance();
+    }
+
+    private List<Card> newCards() {
+        List<Card> cards = new ArrayList<>(CARDS);
+        for (int i = 0; i < CARDS; i++) {
+            cards.add(Card.builder()
+                    .cardNumber("encrypted-" + i)
+                    .cardNumberHash("hash-" + i)
+                    .last4(String.format("%04d", i))
+                    .expiryDate(LocalDate.now().plusYears(5))
+                    .status(CardStatus.ACTIVE)
+                    .balance(BigDecimal.ZERO)
+                    .user(owner)
+                    .createdAt(Instant.now())
+                    .build());
+        }
+        return cards;
+    }
+}
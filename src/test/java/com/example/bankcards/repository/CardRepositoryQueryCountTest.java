@@ -0,0 +1,173 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.dto.CardView;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardBalanceShard;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.entity.enums.UserRole;
+import com.example.bankcards.entity.enums.UserStatus;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Проверяет по статистике Hibernate, что проекции карт читаются одним
+ * запросом независимо от количества карт и владельцев
+ */
+@DataJpaTest(properties = {
+        "spring.liquibase.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+class CardRepositoryQueryCountTest {
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private User owner;
+
+    @BeforeEach
+    void setUp() {
+        owner = persistUser("owner");
+        for (int i = 0; i < 20; i++) {
+            persistCard(i % 2 == 0 ? owner : persistUser("user" + i));
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void findAllViews_shouldLoadCardsAndOwnersInOneQuery() {
+        List<CardView> views = cardRepository.findAllViews();
+
+        assertEquals(20, views.size());
+        views.forEach(view -> view.ownerUsername().length());
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    void findViewsByUser_shouldRunOnePageQueryAndOneCount() {
+        Page<CardView> page = cardRepository.findViewsByUser(owner, PageRequest.of(0, 5));
+
+        assertEquals(5, page.getContent().size());
+        assertEquals(10, page.getTotalElements());
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    void findViewsAfter_shouldLoadSliceInOneQuery() {
+        List<CardView> views = cardRepository.findViewsAfter(0L, Limit.of(15));
+
+        assertEquals(15, views.size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void findViewsAfter_shouldSumBalanceShardsInSameQuery() {
+        Card hotCard = persistCard(owner);
+        hotCard.setBalanceShards(2);
+        entityManager.persist(CardBalanceShard.builder().cardId(hotCard.getId()).shardNo(0).balance(BigDecimal.valueOf(70)).build());
+        entityManager.persist(CardBalanceShard.builder().cardId(hotCard.getId()).shardNo(1).balance(BigDecimal.valueOf(30)).build());
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+
+        List<CardView> views = cardRepository.findViewsAfter(hotCard.getId() - 1, Limit.of(1));
+
+        assertEquals(0, BigDecimal.valueOf(100).compareTo(views.get(0).balance()));
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void streamAllViews_shouldSumBalanceShardsInSameQuery() {
+        Card hotCard = persistCard(owner);
+        hotCard.setBalanceShards(2);
+        entityManager.persist(CardBalanceShard.builder().cardId(hotCard.getId()).shardNo(0).balance(BigDecimal.valueOf(70)).build());
+        entityManager.persist(CardBalanceShard.builder().cardId(hotCard.getId()).shardNo(1).balance(BigDecimal.valueOf(30)).build());
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+
+        List<CardView> views;
+        try (Stream<CardView> stream = cardRepository.streamAllViews()) {
+            views = stream.toList();
+        }
+
+        CardView hotView = views.stream().filter(view -> view.id().equals(hotCard.getId())).findFirst().orElseThrow();
+        assertEquals(0, BigDecimal.valueOf(100).compareTo(hotView.balance()));
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void findViewsAfter_shouldReturnEncryptedNumber_onlyForCardsWithoutLast4() {
+        Card legacyCard = persistCard(owner);
+        legacyCard.setLast4(null);
+        entityManager.flush();
+        entityManager.clear();
+
+        List<CardView> views = cardRepository.findViewsAfter(legacyCard.getId() - 1, Limit.of(1));
+        List<CardView> backfilled = cardRepository.findViewsAfter(0L, Limit.of(1));
+
+        assertEquals(legacyCard.getCardNumber(), views.get(0).legacyCardNumber());
+        assertNull(backfilled.get(0).legacyCardNumber());
+    }
+
+    private User persistUser(String username) {
+        User user = User.builder()
+                .username(username)
+                .password("password")
+                .email(username + "@example.com")
+                .firstName("First")
+                .lastName("Last")
+                .status(UserStatus.ACTIVE)
+                .role(UserRole.USER)
+                .createdAt(Instant.now())
+                .build();
+        entityManager.persist(user);
+        return user;
+    }
+
+    private Card persistCard(User user) {
+        Card card = Card.builder()
+                .cardNumber("encrypted-" + System.nanoTime())
+                .last4("1234")
+                .expiryDate(LocalDate.now().plusYears(5))
+                .status(CardStatus.ACTIVE)
+                .balance(BigDecimal.ZERO)
+                .user(user)
+                .createdAt(Instant.now())
+                .build();
+        entityManager.persist(card);
+        return card;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.bankcards.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.YearMonth;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CardTransactionRepositoryCustomImplTest {
+
+    private static final YearMonth MONTH = YearMonth.of(2028, 2);
+    private static final Date FROM = Date.valueOf(LocalDate.of(2028, 2, 1));
+    private static final Date TO = Date.valueOf(LocalDate.of(2028, 3, 1));
+    private static final String CREATE = "CREATE TABLE card_transactions_2028_02 PARTITION OF card_transactions "
+            + "FOR VALUES FROM ('2028-02-01') TO ('2028-03-01')";
+
+    private JdbcTemplate jdbcTemplate;
+    private CardTransactionRepositoryCustomImpl repository;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        repository = new CardTransactionRepositoryCustomImpl(jdbcTemplate, TransactionOperations.withoutTransaction());
+        when(jdbcTemplate.queryForObject(startsWith("SELECT to_regclass"), eq(Boolean.class), any(Object[].class)))
+                .thenReturn(false);
+    }
+
+    @Test
+    void createMonthlyPartition_shouldOnlyCreate_whenDefaultHasNoRowsOfMonth() {
+        when(jdbcTemplate.queryForObject(startsWith("SELECT EXISTS"), eq(Boolean.class), eq(FROM), eq(TO)))
+                .thenReturn(false);
+
+        repository.createMonthlyPartition(MONTH);
+
+        verify(jdbcTemplate).execute(CREATE);
+        verify(jdbcTemplate, never()).execute(startsWith("ALTER TABLE"));
+    }
+
+    @Test
+    void createMonthlyPartition_shouldMoveRowsOutOfDefault() {
+        when(jdbcTemplate.queryForObject(startsWith("SELECT EXISTS"), eq(Boolean.class), eq(FROM), eq(TO)))
+                .thenReturn(true);
+
+        repository.createMonthlyPartition(MONTH);
+
+        InOrder order = inOrder(jdbcTemplate);
+        order.verify(jdbcTemplate).execute("ALTER TABLE card_transactions DETACH PARTITION card_transactions_default");
+        order.verify(jdbcTemplate).execute(CREATE);
+        order.verify(jdbcTemplate).update(startsWith("INSERT INTO card_transactions_2028_02 SELECT *"), eq(FROM), eq(TO));
+        order.verify(jdbcTemplate).update(startsWith("DELETE FROM card_transactions_default"), eq(FROM), eq(TO));
+        order.verify(jdbcTemplate)
+                .execute("ALTER TABLE card_transactions ATTACH PARTITION card_transactions_default DEFAULT");
+    }
+
+    @Test
+    void createMonthlyPartition_shouldSkip_whenPartitionExists() {
+        when(jdbcTemplate.queryForObject(startsWith("SELECT to_regclass"), eq(Boolean.class), any(Object[].class)))
+                .thenReturn(true);
+
+        repository.createMonthlyPartition(MONTH);
+
+        verify(jdbcTemplate, never()).execute(anyString());
+    }
+}
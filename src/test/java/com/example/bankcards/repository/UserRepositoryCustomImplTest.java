@@ -0,0 +1,84 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.UserRole;
+import com.example.bankcards.entity.enums.UserStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class UserRepositoryCustomImplTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private UserRepositoryCustomImpl repository;
+    private final List<String> statements = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        repository = new UserRepositoryCustomImpl(jdbcTemplate);
+    }
+
+    @Test
+    void insertAllSkippingDuplicates_shouldReportUsersMissingFromReturning() throws Exception {
+        returnUsernames("fresh", "twice");
+
+        List<User> skipped = repository.insertAllSkippingDuplicates(
+                List.of(user("fresh"), user("taken"), user("twice"), user("twice")));
+
+        assertEquals(List.of("taken", "twice"), skipped.stream().map(User::getUsername).toList());
+        assertTrue(statements.get(0).contains("nextval('users_seq')"));
+        assertTrue(statements.get(0).endsWith("ON CONFLICT DO NOTHING RETURNING username"));
+    }
+
+    @Test
+    void insertAllSkippingDuplicates_shouldSplitLargeImportIntoStatements() throws Exception {
+        returnUsernames();
+
+        List<User> users = IntStream.range(0, 1001).mapToObj(i -> user("user" + i)).toList();
+
+        assertEquals(1001, repository.insertAllSkippingDuplicates(users).size());
+        assertEquals(3, statements.size());
+    }
+
+    private void returnUsernames(String... usernames) throws Exception {
+        doAnswer(invocation -> {
+            statements.add(invocation.getArgument(0));
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (String username : usernames) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getString("username")).thenReturn(username);
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), any(Object[].class));
+    }
+
+    private User user(String username) {
+        return User.builder()
+                .username(username)
+                .password("hash")
+                .email(username + "@example.com")
+                .firstName("First")
+                .lastName("Last")
+                .status(UserStatus.ACTIVE)
+                .role(UserRole.USER)
+                .createdAt(Instant.now())
+                .build();
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.bankcards.scheduling;
+
+import com.example.bankcards.service.CardBackfillService;
+import org.junit.jupiter.api.Test;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class CardBackfillRunnerTest {
+
+    private final CardBackfillService cardBackfillService = mock(CardBackfillService.class);
+    private final SchedulerLock schedulerLock = mock(SchedulerLock.class);
+    private final CardBackfillRunner runner = new CardBackfillRunner(cardBackfillService, schedulerLock);
+
+    @Test
+    void backfill_shouldRunUnderSchedulerLock() {
+        when(schedulerLock.runLocked(eq("card-backfill"), any(Runnable.class))).thenAnswer(invocation -> {
+            invocation.<Runnable>getArgument(1).run();
+            return true;
+        });
+
+        runner.backfill();
+
+        verify(cardBackfillService).backfillCardNumberData();
+    }
+
+    @Test
+    void backfill_shouldSkip_whenAnotherNodeIsBackfilling() {
+        when(schedulerLock.runLocked(eq("card-backfill"), any(Runnable.class))).thenReturn(false);
+
+        runner.backfill();
+
+        verifyNoInteractions(cardBackfillService);
+    }
+
+    @Test
+    void backfill_shouldNotThrow_whenLockCannotBeAcquired() {
+        when(schedulerLock.runLocked(eq("card-backfill"), any(Runnable.class)))
+                .thenThrow(new IllegalStateException("database is down"));
+
+        runner.backfill();
+
+        verifyNoInteractions(cardBackfillService);
+    }
+}
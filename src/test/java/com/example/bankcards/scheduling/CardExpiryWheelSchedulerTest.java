@@ -0,0 +1,79 @@
+package com.example.bankcards.scheduling;
+
+import com.example.bankcards.config.CardExpiryProperties;
+import com.example.bankcards.service.CardExpiryWheelService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class CardExpiryWheelSchedulerTest {
+
+    private CardExpiryWheelService cardExpiryWheelService;
+    private SchedulerLock schedulerLock;
+    private CardExpiryWheelScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        cardExpiryWheelService = mock(CardExpiryWheelService.class);
+        schedulerLock = mock(SchedulerLock.class);
+        scheduler = new CardExpiryWheelScheduler(cardExpiryWheelService, new CardExpiryProperties(), schedulerLock);
+    }
+
+    @Test
+    void expireDue_shouldNotTakeLock_whenNothingIsDue() {
+        when(cardExpiryWheelService.pollDue()).thenReturn(List.of());
+
+        scheduler.expireDue();
+
+        verifyNoInteractions(schedulerLock);
+    }
+
+    @Test
+    void expireDue_shouldExpireUnderLock_whenCardsAreDue() {
+        when(cardExpiryWheelService.pollDue()).thenReturn(List.of(1L, 2L));
+        when(schedulerLock.runLocked(eq("card-expiry-wheel"), any(Duration.class), any())).thenAnswer(invocation -> {
+            invocation.<Runnable>getArgument(2).run();
+            return true;
+        });
+
+        scheduler.expireDue();
+
+        verify(cardExpiryWheelService).expire(List.of(1L, 2L));
+        verify(cardExpiryWheelService, never()).requeue(any());
+    }
+
+    @Test
+    void expireDue_shouldRequeue_whenLockIsHeldByAnotherNode() {
+        when(cardExpiryWheelService.pollDue()).thenReturn(List.of(1L));
+        when(schedulerLock.runLocked(anyString(), any(Duration.class), any())).thenReturn(false);
+
+        scheduler.expireDue();
+
+        verify(cardExpiryWheelService, never()).expire(any());
+        verify(cardExpiryWheelService).requeue(List.of(1L));
+    }
+
+    @Test
+    void expireDue_shouldRequeue_whenLockCannotBeAcquired() {
+        when(cardExpiryWheelService.pollDue()).thenReturn(List.of(1L));
+        doThrow(new IllegalStateException("database is down"))
+                .when(schedulerLock).runLocked(anyString(), any(Duration.class), any());
+
+        assertThrows(IllegalStateException.class, scheduler::expireDue);
+
+        verify(cardExpiryWheelService).requeue(List.of(1L));
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.bankcards.scheduling;
+
+import com.example.bankcards.config.SchedulerLockProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SchedulerLockTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private SimpleMeterRegistry meterRegistry;
+    private SchedulerLockProperties properties;
+    private SchedulerLock schedulerLock;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        meterRegistry = new SimpleMeterRegistry();
+        properties = new SchedulerLockProperties();
+        properties.setNodeId("node-1");
+        schedulerLock = new SchedulerLock(jdbcTemplate, properties, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        schedulerLock.destroy();
+    }
+
+    @Test
+    void runLocked_shouldRunTaskAndRelease_whenLeaseAcquired() {
+        when(jdbcTemplate.update(startsWith("INSERT"), any(Object[].class))).thenReturn(1);
+        AtomicReference<Double> ownerDuringRun = new AtomicReference<>();
+
+        boolean ran = schedulerLock.runLocked("card-expiry", () -> ownerDuringRun.set(ownerGauge()));
+
+        assertTrue(ran);
+        assertEquals(1.0, ownerDuringRun.get());
+        assertEquals(0.0, ownerGauge());
+        assertEquals(1, meterRegistry.get("scheduler.lock.duration").tag("name", "card-expiry").timer().count());
+        verify(jdbcTemplate).update(startsWith("UPDATE scheduler_locks SET lock_until = GREATEST"),
+                eq(60.0), eq("card-expiry"), eq("node-1"));
+    }
+
+    @Test
+    void runLocked_shouldKeepLockForRequestedMinHold() {
+        when(jdbcTemplate.update(startsWith("INSERT"), any(Object[].class))).thenReturn(1);
+
+        schedulerLock.runLocked("card-expiry-wheel", Duration.ofMillis(500), () -> { });
+
+        verify(jdbcTemplate).update(startsWith("UPDATE scheduler_locks SET lock_until = GREATEST"),
+                eq(0.5), eq("card-expiry-wheel"), eq("node-1"));
+    }
+
+    @Test
+    void runLocked_shouldSkipWithoutRunning_whenLockHeldElsewhere() {
+        when(jdbcTemplate.update(startsWith("INSERT"), any(Object[].class))).thenReturn(0);
+        AtomicBoolean ran = new AtomicBoolean();
+
+        assertFalse(schedulerLock.runLocked("card-expiry", () -> ran.set(true)));
+
+        assertFalse(ran.get());
+        assertEquals(1.0, meterRegistry.get("scheduler.lock.skipped").tag("name", "card-expiry").counter().count());
+        verify(jdbcTemplate, never()).update(startsWith("UPDATE"), any(Object[].class));
+    }
+
+    @Test
+    void runLocked_shouldReleaseLock_whenTaskFails() {
+        when(jdbcTemplate.update(startsWith("INSERT"), any(Object[].class))).thenReturn(1);
+
+        assertThrows(IllegalStateException.class, () -> schedulerLock.runLocked("card-expiry", () -> {
+            throw new IllegalStateException("boom");
+        }));
+
+        assertEquals(0.0, ownerGauge());
+        verify(jdbcTemplate).update(startsWith("UPDATE scheduler_locks SET lock_until = GREATEST"),
+                eq(60.0), eq("card-expiry"), eq("node-1"));
+    }
+
+    @Test
+    void runLocked_shouldExtendLeaseWhileTaskRuns() {
+        properties.setHeartbeat(Duration.ofMillis(20));
+        when(jdbcTemplate.update(startsWith("INSERT"), any(Object[].class))).thenReturn(1);
+        when(jdbcTemplate.update(startsWith("UPDATE scheduler_locks SET lock_until = now() + "), any(Object[].class)))
+                .thenReturn(1);
+
+        schedulerLock.runLocked("card-expiry", () -> verify(jdbcTemplate, timeout(1_000).atLeastOnce())
+                .update(startsWith("UPDATE scheduler_locks SET lock_until = now() + "), eq(300L), eq("card-expiry"), eq("node-1")));
+
+        verify(jdbcTemplate, atLeastOnce()).update(startsWith("UPDATE scheduler_locks SET lock_until = now() + "),
+                eq(300L), eq("card-expiry"), eq("node-1"));
+    }
+
+    private double ownerGauge() {
+        return meterRegistry.get("scheduler.lock.owner").tag("name", "card-expiry").tag("node", "node-1").gauge().value();
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.bankcards.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CardNumberCipherTest {
+
+    private final CardNumberCipher cardNumberCipher = new CardNumberCipher("MySuperSecretKey", "MySuperSecretHashKey");
+
+    @Test
+    void encryptAndDecrypt_shouldReturnOriginalString() {
+        String original = "1234567890123456";
+
+        String encrypted = cardNumberCipher.encrypt(original);
+        assertNotNull(encrypted);
+        assertNotEquals(original, encrypted);
+
+        String decrypted = cardNumberCipher.decrypt(encrypted);
+        assertEquals(original, decrypted);
+    }
+
+    @Test
+    void hash_shouldBeDeterministicAndKeyed() {
+        String hash = cardNumberCipher.hash("4000001234567899");
+
+        assertEquals(64, hash.length());
+        assertEquals(hash, cardNumberCipher.hash("4000001234567899"));
+        assertNotEquals(hash, cardNumberCipher.hash("4000001234567881"));
+        assertNotEquals(hash, new CardNumberCipher("MySuperSecretKey", "AnotherHashKey").hash("4000001234567899"));
+    }
+
+    @Test
+    void cachedCiphers_shouldBeReusableAcrossCallsAndThreads() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 1_000; i++) {
+                    String number = String.format("4000%06d%06d", thread, i);
+                    assertEquals(number, cardNumberCipher.decrypt(cardNumberCipher.encrypt(number)));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    void constructor_shouldRejectInvalidKeyLength() {
+        assertThrows(IllegalStateException.class, () -> new CardNumberCipher("short", "MySuperSecretHashKey"));
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.exception.TooManyRequestsException;
+import com.example.bankcards.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class JwtAuthenticationFilterTest {
+
+    private JwtProvider jwtProvider;
+    private UserDetailsServiceImpl userDetailsService;
+    private UserRepository userRepository;
+    private TokenRevocationService tokenRevocationService;
+    private String token;
+
+    @BeforeEach
+    void setUp() {
+        jwtProvider = new JwtProvider();
+        ReflectionTestUtils.setField(jwtProvider, "jwtSecret", "TestSecretKeyForJwtSigning");
+        ReflectionTestUtils.setField(jwtProvider, "jwtExpirationMs", 60_000L);
+        userDetailsService = mock(UserDetailsServiceImpl.class);
+        userRepository = mock(UserRepository.class);
+        tokenRevocationService = new TokenRevocationService(userRepository, 60_000, Duration.ofSeconds(10));
+
+        User principal = new User("testuser", "password", List.of(new SimpleGrantedAuthority("ROLE_USER")));
+        token = jwtProvider.generateToken(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void statelessMode_shouldAuthenticateFromClaims_withoutLoadingUser() throws Exception {
+        Authentication authentication = filter(true);
+
+        assertEquals("testuser", authentication.getName());
+        assertEquals(List.of(new SimpleGrantedAuthority("ROLE_USER")), List.copyOf(authentication.getAuthorities()));
+        verify(userDetailsService, never()).loadUserByUsername(anyString());
+    }
+
+    @Test
+    void databaseMode_shouldLoadUserDetails() throws Exception {
+        when(userDetailsService.loadUserByUsername("testuser"))
+                .thenReturn(new User("testuser", "password", List.of(new SimpleGrantedAuthority("ROLE_ADMIN"))));
+
+        Authentication authentication = filter(false);
+
+        assertEquals(List.of(new SimpleGrantedAuthority("ROLE_ADMIN")), List.copyOf(authentication.getAuthorities()));
+    }
+
+    @Test
+    void revokedToken_shouldNotAuthenticate() throws Exception {
+        tokenRevocationService.revokeAll("testuser");
+
+        assertNull(filter(true));
+    }
+
+    @Test
+    void tokenRevokedOnAnotherNode_shouldNotAuthenticate() throws Exception {
+        when(userRepository.findTokensRevokedAtByUsername("testuser")).thenReturn(Optional.of(Instant.now()));
+
+        assertNull(filter(true));
+    }
+
+    @Test
+    void invalidToken_shouldNotAuthenticate() throws Exception {
+        token = token + "x";
+
+        assertNull(filter(true));
+    }
+
+    @Test
+    void busyDatabase_shouldAnswer429_withoutCallingChain() throws Exception {
+        when(userRepository.findTokensRevokedAtByUsername("testuser"))
+                .thenThrow(new TooManyRequestsException("Database is busy, try again later"));
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer " + token);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        new JwtAuthenticationFilter(jwtProvider, userDetailsService, tokenRevocationService, true)
+                .doFilter(request, response, chain);
+
+        assertEquals(429, response.getStatus());
+        assertNull(chain.getRequest());
+    }
+
+    private Authentication filter(boolean stateless) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer " + token);
+        new JwtAuthenticationFilter(jwtProvider, userDetailsService, tokenRevocationService, stateless)
+                .doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+}
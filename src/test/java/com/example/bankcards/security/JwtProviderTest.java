@@ -0,0 +1,71 @@
+package com.example.bankcards.security;
+
+import io.jsonwebtoken.Claims;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class JwtProviderTest {
+
+    private JwtProvider jwtProvider;
+
+    @BeforeEach
+    void setUp() {
+        jwtProvider = new JwtProvider();
+        ReflectionTestUtils.setField(jwtProvider, "jwtSecret", "TestSecretKeyForJwtSigning");
+        ReflectionTestUtils.setField(jwtProvider, "jwtExpirationMs", 60_000L);
+    }
+
+    @Test
+    void parseClaims_shouldReuseCachedClaims_forSameToken() {
+        String token = token();
+
+        Claims first = jwtProvider.parseClaims(token);
+        Claims second = jwtProvider.parseClaims(token);
+
+        assertEquals("testuser", first.getSubject());
+        assertSame(first, second);
+    }
+
+    @Test
+    void parseClaims_shouldRejectTamperedToken_evenWhenOriginalIsCached() {
+        String token = token();
+        jwtProvider.parseClaims(token);
+
+        assertNull(jwtProvider.parseClaims(token + "x"));
+    }
+
+    @Test
+    void parseClaims_shouldNotCacheExpiredToken() throws Exception {
+        ReflectionTestUtils.setField(jwtProvider, "jwtExpirationMs", 1L);
+        String token = token();
+        Thread.sleep(1_100);
+
+        assertNull(jwtProvider.parseClaims(token));
+        assertNull(jwtProvider.parseClaims(token));
+    }
+
+    @Test
+    void parseClaims_withCacheDisabled_shouldVerifyEveryTime() {
+        ReflectionTestUtils.setField(jwtProvider, "claimsCacheEnabled", false);
+        String token = token();
+
+        assertNotSame(jwtProvider.parseClaims(token), jwtProvider.parseClaims(token));
+    }
+
+    private String token() {
+        User principal = new User("testuser", "password", List.of(new SimpleGrantedAuthority("ROLE_USER")));
+        return jwtProvider.generateToken(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+    }
+}
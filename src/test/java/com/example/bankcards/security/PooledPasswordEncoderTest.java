@@ -0,0 +1,120 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.exception.TooManyRequestsException;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PooledPasswordEncoderTest {
+
+    @Test
+    void encodeAndMatches_shouldRunBcryptWithConfiguredStrength() {
+        PooledPasswordEncoder encoder = new PooledPasswordEncoder(4, 2, 4, Duration.ofSeconds(5));
+
+        String hash = encoder.encode("secret");
+
+        assertTrue(hash.startsWith("$2a$04$"));
+        assertTrue(encoder.matches("secret", hash));
+        assertFalse(encoder.matches("wrong", hash));
+        encoder.destroy();
+    }
+
+    @Test
+    void upgradeEncoding_shouldBeTrue_whenStoredCostDiffers() {
+        PooledPasswordEncoder encoder = new PooledPasswordEncoder(5, 1, 1, Duration.ofSeconds(5));
+
+        assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(4).encode("secret")));
+        assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(6).encode("secret")));
+        assertFalse(encoder.upgradeEncoding(new BCryptPasswordEncoder(5).encode("secret")));
+        assertFalse(encoder.upgradeEncoding(null));
+        encoder.destroy();
+    }
+
+    @Test
+    void encode_shouldReject_whenPoolAndQueueAreFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordEncoder blocking = new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "hash-" + rawPassword;
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                return false;
+            }
+        };
+        PooledPasswordEncoder encoder = new PooledPasswordEncoder(blocking, 10, 1, 1, Duration.ofSeconds(5));
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+
+        Future<String> running = callers.submit(() -> encoder.encode("first"));
+        started.await(5, TimeUnit.SECONDS);
+        Future<String> queued = callers.submit(() -> encoder.encode("second"));
+        while (!queuedTaskAccepted(encoder)) {
+            Thread.onSpinWait();
+        }
+
+        assertThrows(TooManyRequestsException.class, () -> encoder.encode("third"));
+
+        release.countDown();
+        assertEquals("hash-first", running.get(5, TimeUnit.SECONDS));
+        assertEquals("hash-second", queued.get(5, TimeUnit.SECONDS));
+        callers.shutdown();
+        encoder.destroy();
+    }
+
+    @Test
+    void matches_shouldReject_whenHashingDoesNotFinishInTime() throws Exception {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        PasswordEncoder slow = new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                return "hash-" + rawPassword;
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                try {
+                    new CountDownLatch(1).await();
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+                return true;
+            }
+        };
+        PooledPasswordEncoder encoder = new PooledPasswordEncoder(slow, 10, 1, 1, Duration.ofMillis(50));
+
+        assertThrows(TooManyRequestsException.class, () -> encoder.matches("secret", "hash-secret"));
+
+        // задача снята, поток пула освободился
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertEquals("hash-next", encoder.encode("next"));
+        encoder.destroy();
+    }
+
+    private boolean queuedTaskAccepted(PooledPasswordEncoder encoder) {
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) ReflectionTestUtils.getField(encoder, "executor");
+        return executor.getQueue().size() == 1;
+    }
+}
@@ -1,8 +1,14 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.config.UserCacheProperties;
+import com.example.bankcards.dto.BulkUserStatusResultDto;
 import com.example.bankcards.dto.CardDto;
 import com.example.bankcards.dto.CardRequestDto;
+import com.example.bankcards.dto.CardSliceDto;
+import com.example.bankcards.dto.CardView;
+import com.example.bankcards.dto.ImportedUserDto;
 import com.example.bankcards.dto.UserDto;
+import com.example.bankcards.dto.UserImportResultDto;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.CardRequest;
 import com.example.bankcards.entity.User;
@@ -14,27 +20,41 @@ import com.example.bankcards.entity.enums.UserStatus;
 import com.example.bankcards.repository.CardRepository;
 import com.example.bankcards.repository.CardRequestRepository;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.CardNumberCipher;
+import com.example.bankcards.security.TokenRevocationService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Limit;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDate;
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 class AdminServiceTest {
 
     private UserRepository userRepository;
+    private UserCache userCache;
+    private TokenRevocationService tokenRevocationService;
     private CardRepository cardRepository;
     private CardRequestRepository cardRequestRepository;
 
@@ -43,9 +63,12 @@ class AdminServiceTest {
     @BeforeEach
     void setup() {
         userRepository = mock(UserRepository.class);
+        tokenRevocationService = new TokenRevocationService(userRepository, 60_000, Duration.ofSeconds(10));
+        userCache = new UserCache(userRepository, new UserCacheProperties(), new SimpleMeterRegistry());
         cardRepository = mock(CardRepository.class);
         cardRequestRepository = mock(CardRequestRepository.class);
-        adminService = new AdminService(userRepository, cardRepository, cardRequestRepository);
+        adminService = new AdminService(userRepository, cardRepository, cardRequestRepository, userCache,
+                tokenRevocationService, new CardDtoMapper(mock(CardNumberCipher.class)));
     }
 
     @Test
@@ -163,29 +186,21 @@ class AdminServiceTest {
 
     @Test
     void getAllCards_shouldReturnDtos() {
-        Card card = new Card();
-        card.setId(1L);
-        card.setCardNumber("1234567812345678");
-        User user = new User();
-        user.setUsername("owner");
-        card.setUser(user);
-        card.setExpiryDate(LocalDate.of(2030, 12, 31));
-        card.setStatus(CardStatus.ACTIVE);
-        card.setBalance(BigDecimal.valueOf(5000));
-        card.setCreatedAt(Instant.now());
+        CardView card = new CardView(1L, "5678", LocalDate.of(2030, 12, 31), CardStatus.ACTIVE,
+                BigDecimal.valueOf(5000), Instant.now(), "owner", "John", "Doe", null);
 
-        when(cardRepository.findAll()).thenReturn(List.of(card));
+        when(cardRepository.findAllViews()).thenReturn(List.of(card));
 
         List<CardDto> dtos = adminService.getAllCards();
 
         assertEquals(1, dtos.size());
         CardDto dto = dtos.get(0);
-        assertEquals(card.getId(), dto.getId());
+        assertEquals(card.id(), dto.getId());
         assertEquals("**** **** **** 5678", dto.getMaskedCardNumber());
-        assertEquals(user.getUsername(), dto.getOwnerName());
-        assertEquals(card.getExpiryDate(), dto.getExpiryDate());
-        assertEquals(card.getStatus().name(), dto.getStatus());
-        assertEquals(card.getBalance(), dto.getBalance());
+        assertEquals("owner", dto.getOwnerName());
+        assertEquals(card.expiryDate(), dto.getExpiryDate());
+        assertEquals(card.status().name(), dto.getStatus());
+        assertEquals(card.balance(), dto.getBalance());
         assertNotNull(dto.getCreatedAt());
     }
 
@@ -193,26 +208,22 @@ class AdminServiceTest {
     void updateUserStatus_shouldUpdateStatusAndBlockCardsIfNeeded() {
         User user = new User();
         user.setId(1L);
+        user.setUsername("blocked");
         user.setStatus(UserStatus.ACTIVE);
 
-        Card card1 = new Card();
-        card1.setStatus(CardStatus.ACTIVE);
-        Card card2 = new Card();
-        card2.setStatus(CardStatus.ACTIVE);
-
         when(userRepository.findById(1L)).thenReturn(Optional.of(user));
-        when(cardRepository.findByUser(user)).thenReturn(List.of(card1, card2));
         when(userRepository.save(any())).thenAnswer(i -> i.getArgument(0));
-        when(cardRepository.saveAll(any())).thenAnswer(i -> i.getArgument(0));
+        when(cardRepository.blockAllByUserId(1L)).thenReturn(2);
 
         adminService.updateUserStatus(1L, "BLOCKED");
 
         assertEquals(UserStatus.BLOCKED, user.getStatus());
-        assertEquals(CardStatus.BLOCKED, card1.getStatus());
-        assertEquals(CardStatus.BLOCKED, card2.getStatus());
 
         verify(userRepository).save(user);
-        verify(cardRepository).saveAll(List.of(card1, card2));
+        verify(cardRepository).blockAllByUserId(1L);
+        verify(cardRepository, never()).findByUser(any());
+        verify(cardRepository, never()).saveAll(any());
+        assertTrue(tokenRevocationService.isRevoked("blocked", new Date(System.currentTimeMillis() - 1_000)));
     }
 
     @Test
@@ -228,7 +239,7 @@ class AdminServiceTest {
 
         assertEquals(UserStatus.ACTIVE, user.getStatus());
         verify(userRepository).save(user);
-        verify(cardRepository, never()).saveAll(any());
+        verify(cardRepository, never()).blockAllByUserId(any());
     }
 
     @Test
@@ -264,19 +275,87 @@ class AdminServiceTest {
     }
 
     @Test
-    void maskCardNumber_shouldMaskProperly() throws Exception {
-        // Проверка приватного метода через рефлексию (если нужно)
-        var method = AdminService.class.getDeclaredMethod("maskCardNumber", String.class);
-        method.setAccessible(true);
+    void scrollAllCards_shouldReturnSliceWithoutCount() {
+        CardView first = new CardView(5L, "1111", LocalDate.of(2030, 1, 31), CardStatus.ACTIVE,
+                BigDecimal.ONE, Instant.now(), "owner", "John", "Doe", null);
+        CardView second = new CardView(6L, "2222", LocalDate.of(2030, 1, 31), CardStatus.ACTIVE,
+                BigDecimal.ONE, Instant.now(), "owner", "John", "Doe", null);
+
+        when(cardRepository.findViewsAfter(4L, Limit.of(2))).thenReturn(List.of(first, second));
 
-        String masked = (String) method.invoke(adminService, "1234567812345678");
-        assertEquals("**** **** **** 5678", masked);
+        CardSliceDto slice = adminService.scrollAllCards(4L, 1);
+
+        assertEquals(1, slice.getContent().size());
+        assertEquals("**** **** **** 1111", slice.getContent().get(0).getMaskedCardNumber());
+        assertTrue(slice.isHasNext());
+        assertEquals(5L, slice.getNextCursor());
+        verify(cardRepository, never()).count();
+    }
 
-        masked = (String) method.invoke(adminService, "1234");
-        assertEquals("**** **** **** 1234", masked);
+    @Test
+    void importUsers_shouldInsertBatchAndReportSkippedDuplicates() {
+        ImportedUserDto fresh = importedUser("fresh");
+        ImportedUserDto duplicate = importedUser("duplicate");
+
+        when(userRepository.insertAllSkippingDuplicates(any())).thenAnswer(invocation -> {
+            List<User> users = invocation.getArgument(0);
+            return List.of(users.get(1));
+        });
+
+        UserImportResultDto result = adminService.importUsers(List.of(fresh, duplicate));
+
+        assertEquals(1, result.getImported());
+        assertEquals(1, result.getSkipped());
+        assertEquals(List.of("duplicate"), result.getSkippedUsernames());
+
+        ArgumentCaptor<List<User>> captor = ArgumentCaptor.captor();
+        verify(userRepository).insertAllSkippingDuplicates(captor.capture());
+        User inserted = captor.getValue().get(0);
+        assertEquals("fresh", inserted.getUsername());
+        assertEquals(fresh.getPasswordHash(), inserted.getPassword());
+        assertEquals(UserRole.USER, inserted.getRole());
+        assertEquals(UserStatus.ACTIVE, inserted.getStatus());
+        assertNotNull(inserted.getCreatedAt());
+        verify(userRepository, never()).save(any());
+    }
+
+    private ImportedUserDto importedUser(String username) {
+        ImportedUserDto user = new ImportedUserDto();
+        user.setUsername(username);
+        user.setEmail(username + "@example.com");
+        user.setPasswordHash("$2a$10$.NuxW/cjAgEla9xzBBNMle05OHHQCgeioLhR7D8uWYi/DLpIGmeHu");
+        user.setFirstName("John");
+        user.setLastName("Doe");
+        return user;
+    }
+
+    @Test
+    void updateUsersStatus_shouldBlockUsersAndCardsWithTwoUpdates() {
+        when(userRepository.findUsernamesByIdIn(Set.of(1L, 2L))).thenReturn(List.of("first", "second"));
+        when(userRepository.updateStatusByIdIn(Set.of(1L, 2L), UserStatus.BLOCKED)).thenReturn(2);
+        when(cardRepository.blockAllByUserIdIn(Set.of(1L, 2L))).thenReturn(3000);
+
+        BulkUserStatusResultDto result = adminService.updateUsersStatus(List.of(1L, 2L, 2L), UserStatus.BLOCKED);
+
+        assertEquals(2, result.getUpdatedUsers());
+        assertEquals(3000, result.getUpdatedCards());
+        verify(cardRepository, never()).findByUser(any());
+        Date issuedBefore = new Date(System.currentTimeMillis() - 1_000);
+        assertTrue(tokenRevocationService.isRevoked("first", issuedBefore));
+        assertTrue(tokenRevocationService.isRevoked("second", issuedBefore));
+        verify(userRepository).updateTokensRevokedAtByUsernameIn(eq(List.of("first", "second")), any(Instant.class));
+    }
+
+    @Test
+    void updateUsersStatus_shouldUnblockUsersWithoutTouchingCardsOrTokens() {
+        when(userRepository.findUsernamesByIdIn(Set.of(1L))).thenReturn(List.of("first"));
+        when(userRepository.updateStatusByIdIn(Set.of(1L), UserStatus.ACTIVE)).thenReturn(1);
 
-        masked = (String) method.invoke(adminService, "123");
-        assertEquals("****", masked);
+        BulkUserStatusResultDto result = adminService.updateUsersStatus(List.of(1L), UserStatus.ACTIVE);
 
+        assertEquals(1, result.getUpdatedUsers());
+        assertEquals(0, result.getUpdatedCards());
+        verifyNoInteractions(cardRepository);
+        assertFalse(tokenRevocationService.isRevoked("first", new Date(System.currentTimeMillis() - 1_000)));
     }
 }
@@ -1,23 +1,31 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.config.UserCacheProperties;
 import com.example.bankcards.dto.AuthResponse;
 import com.example.bankcards.dto.LoginRequest;
 import com.example.bankcards.dto.RegisterRequest;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.entity.enums.UserRole;
 import com.example.bankcards.entity.enums.UserStatus;
+import com.example.bankcards.exception.UserAlreadyExistsException;
 import com.example.bankcards.repository.UserRepository;
 import com.example.bankcards.security.JwtProvider;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
+import java.sql.SQLException;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.mock;
@@ -29,6 +37,7 @@ import static org.mockito.Mockito.when;
 class AuthServiceTest {
 
     private UserRepository userRepository;
+    private UserCache userCache;
     private PasswordEncoder passwordEncoder;
     private JwtProvider jwtProvider;
     private AuthenticationManager authenticationManager;
@@ -38,30 +47,26 @@ class AuthServiceTest {
     @BeforeEach
     void setUp() {
         userRepository = mock(UserRepository.class);
+        userCache = new UserCache(userRepository, new UserCacheProperties(), new SimpleMeterRegistry());
         passwordEncoder = mock(PasswordEncoder.class);
         jwtProvider = mock(JwtProvider.class);
         authenticationManager = mock(AuthenticationManager.class);
 
-        authService = new AuthService(userRepository, passwordEncoder, jwtProvider, authenticationManager);
+        authService = new AuthService(userRepository, passwordEncoder, jwtProvider, authenticationManager, userCache);
     }
 
     @Test
     void register_shouldSaveUser_whenUsernameAndEmailNotTaken() {
-        RegisterRequest request = new RegisterRequest();
-        request.setUsername("newuser");
-        request.setEmail("email@example.com");
-        request.setPassword("password123");
-        request.setFirstName("John");
-        request.setLastName("Doe");
+        RegisterRequest request = registerRequest("newuser", "email@example.com");
 
-        when(userRepository.existsByUsername("newuser")).thenReturn(false);
-        when(userRepository.existsByEmail("email@example.com")).thenReturn(false);
         when(passwordEncoder.encode("password123")).thenReturn("encodedPassword");
 
         authService.register(request);
 
         ArgumentCaptor<User> userCaptor = ArgumentCaptor.forClass(User.class);
-        verify(userRepository, times(1)).save(userCaptor.capture());
+        verify(userRepository, times(1)).saveAndFlush(userCaptor.capture());
+        verify(userRepository, never()).existsByUsername(any());
+        verify(userRepository, never()).existsByEmail(any());
 
         User savedUser = userCaptor.getValue();
         assertEquals("newuser", savedUser.getUsername());
@@ -76,31 +81,60 @@ class AuthServiceTest {
 
     @Test
     void register_shouldThrow_whenUsernameTaken() {
-        RegisterRequest request = new RegisterRequest();
-        request.setUsername("existinguser");
-        request.setEmail("email@example.com");
+        RegisterRequest request = registerRequest("existinguser", "email@example.com");
 
-        when(userRepository.existsByUsername("existinguser")).thenReturn(true);
+        when(userRepository.saveAndFlush(any())).thenThrow(uniqueViolation("users_username_key"));
 
-        RuntimeException ex = assertThrows(RuntimeException.class, () -> authService.register(request));
+        UserAlreadyExistsException ex = assertThrows(UserAlreadyExistsException.class,
+                () -> authService.register(request));
         assertEquals("Username is already taken", ex.getMessage());
-
-        verify(userRepository, never()).save(any());
     }
 
     @Test
     void register_shouldThrow_whenEmailTaken() {
-        RegisterRequest request = new RegisterRequest();
-        request.setUsername("newuser");
-        request.setEmail("existingemail@example.com");
+        RegisterRequest request = registerRequest("newuser", "existingemail@example.com");
 
-        when(userRepository.existsByUsername("newuser")).thenReturn(false);
-        when(userRepository.existsByEmail("existingemail@example.com")).thenReturn(true);
+        when(userRepository.saveAndFlush(any())).thenThrow(uniqueViolation("users_email_key"));
 
-        RuntimeException ex = assertThrows(RuntimeException.class, () -> authService.register(request));
+        UserAlreadyExistsException ex = assertThrows(UserAlreadyExistsException.class,
+                () -> authService.register(request));
         assertEquals("Email is already taken", ex.getMessage());
+    }
+
+    @Test
+    void register_shouldRethrow_whenConstraintNameMissing() {
+        RegisterRequest request = registerRequest("newuser", "existingemail@example.com");
+        DataIntegrityViolationException violation = new DataIntegrityViolationException(
+                "could not execute statement",
+                new SQLException("Unique index or primary key violation: PUBLIC.CONSTRAINT_INDEX_4 ON PUBLIC.USERS(EMAIL)",
+                        "23505"));
+
+        when(userRepository.saveAndFlush(any())).thenThrow(violation);
+
+        assertSame(violation, assertThrows(DataIntegrityViolationException.class,
+                () -> authService.register(request)));
+    }
+
+    @Test
+    void register_shouldRethrow_whenOtherUniqueConstraintMentionsUsername() {
+        RegisterRequest request = registerRequest("newuser", "email@example.com");
+        DataIntegrityViolationException violation = uniqueViolation("user_audit_username_key");
 
-        verify(userRepository, never()).save(any());
+        when(userRepository.saveAndFlush(any())).thenThrow(violation);
+
+        assertSame(violation, assertThrows(DataIntegrityViolationException.class,
+                () -> authService.register(request)));
+    }
+
+    @Test
+    void register_shouldRethrow_whenViolationIsNotAboutUniqueness() {
+        RegisterRequest request = registerRequest("newuser", "email@example.com");
+        DataIntegrityViolationException violation = violation("users_username_key", "23514");
+
+        when(userRepository.saveAndFlush(any())).thenThrow(violation);
+
+        assertSame(violation, assertThrows(DataIntegrityViolationException.class,
+                () -> authService.register(request)));
     }
 
     @Test
@@ -121,4 +155,24 @@ class AuthServiceTest {
         verify(authenticationManager, times(1)).authenticate(any(UsernamePasswordAuthenticationToken.class));
         verify(jwtProvider, times(1)).generateToken(authentication);
     }
+
+    private RegisterRequest registerRequest(String username, String email) {
+        RegisterRequest request = new RegisterRequest();
+        request.setUsername(username);
+        request.setEmail(email);
+        request.setPassword("password123");
+        request.setFirstName("John");
+        request.setLastName("Doe");
+        return request;
+    }
+
+    private DataIntegrityViolationException uniqueViolation(String constraintName) {
+        return violation(constraintName, "23505");
+    }
+
+    private DataIntegrityViolationException violation(String constraintName, String sqlState) {
+        ConstraintViolationException cause = new ConstraintViolationException(
+                "could not execute statement", new SQLException("constraint violated", sqlState), constraintName);
+        return new DataIntegrityViolationException("could not execute statement", cause);
+    }
 }
@@ -0,0 +1,76 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.security.CardNumberCipher;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CardBackfillServiceTest {
+
+    private CardRepository cardRepository;
+    private CardNumberCipher cardNumberCipher;
+    private CardBackfillService cardBackfillService;
+
+    @BeforeEach
+    void setUp() {
+        cardRepository = mock(CardRepository.class);
+        cardNumberCipher = new CardNumberCipher("MySuperSecretKey", "MySuperSecretHashKey");
+        cardBackfillService = new CardBackfillService(cardRepository, cardNumberCipher,
+                TransactionOperations.withoutTransaction());
+    }
+
+    @Test
+    void backfillCardNumberData_shouldHashCardsChunkByChunk() {
+        Card card = Card.builder().id(5L).cardNumber(cardNumberCipher.encrypt("4000001234567899")).build();
+        when(cardRepository.findBackfillChunk(eq(0L), any(Limit.class))).thenReturn(List.of(card));
+        when(cardRepository.findBackfillChunk(eq(5L), any(Limit.class))).thenReturn(List.of());
+
+        int updated = cardBackfillService.backfillCardNumberData();
+
+        assertEquals(1, updated);
+        verify(cardRepository).fillCardNumberData(5L, cardNumberCipher.encrypt("4000001234567899"),
+                cardNumberCipher.hash("4000001234567899"), "7899");
+        verify(cardRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void backfillCardNumberData_shouldRepairDoubleEncryptedCardNumbers() {
+        String doubleEncrypted = cardNumberCipher.encrypt(cardNumberCipher.encrypt("4000001234567899"));
+        Card card = Card.builder().id(1L).cardNumber(doubleEncrypted).build();
+        when(cardRepository.findBackfillChunk(anyLong(), any(Limit.class)))
+                .thenReturn(List.of(card), List.of());
+
+        cardBackfillService.backfillCardNumberData();
+
+        verify(cardRepository).fillCardNumberData(1L, cardNumberCipher.encrypt("4000001234567899"),
+                cardNumberCipher.hash("4000001234567899"), "7899");
+    }
+
+    @Test
+    void backfillCardNumberData_shouldSkipCardsThatCannotBeDecrypted() {
+        Card broken = Card.builder().id(1L).cardNumber("not-base64!").build();
+        Card card = Card.builder().id(2L).cardNumber(cardNumberCipher.encrypt("4000001234567899")).build();
+        when(cardRepository.findBackfillChunk(eq(0L), any(Limit.class))).thenReturn(List.of(broken, card));
+        when(cardRepository.findBackfillChunk(eq(2L), any(Limit.class))).thenReturn(List.of());
+
+        int updated = cardBackfillService.backfillCardNumberData();
+
+        assertEquals(1, updated);
+        verify(cardRepository, never()).fillCardNumberData(eq(1L), any(), any(), any());
+        verify(cardRepository).fillCardNumberData(eq(2L), any(), any(), eq("7899"));
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardBalanceShard;
+import com.example.bankcards.exception.CardNotFoundException;
+import com.example.bankcards.exception.InvalidCardOperationException;
+import com.example.bankcards.repository.CardBalanceShardRepository;
+import com.example.bankcards.repository.CardRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CardBalanceShardServiceTest {
+
+    private CardBalanceShardRepository cardBalanceShardRepository;
+    private CardRepository cardRepository;
+    private CardBalanceShardService cardBalanceShardService;
+
+    private Card card;
+
+    @BeforeEach
+    void setUp() {
+        cardBalanceShardRepository = mock(CardBalanceShardRepository.class);
+        cardRepository = mock(CardRepository.class);
+        cardBalanceShardService = new CardBalanceShardService(cardBalanceShardRepository, cardRepository);
+
+        card = new Card();
+        card.setId(10L);
+        card.setBalance(BigDecimal.ZERO);
+        card.setBalanceShards(4);
+    }
+
+    @Test
+    void credit_shouldHitOneShardWithinRange() {
+        when(cardBalanceShardRepository.creditShard(eq(10L), anyInt(), eq(BigDecimal.TEN))).thenReturn(1);
+
+        assertTrue(cardBalanceShardService.credit(card, BigDecimal.TEN));
+
+        ArgumentCaptor<Integer> shardNo = ArgumentCaptor.forClass(Integer.class);
+        verify(cardBalanceShardRepository).creditShard(eq(10L), shardNo.capture(), eq(BigDecimal.TEN));
+        assertTrue(shardNo.getValue() >= 0 && shardNo.getValue() < 4);
+    }
+
+    @Test
+    void credit_shouldCreditCardBalance_whenShardsWereFoldedConcurrently() {
+        when(cardBalanceShardRepository.creditShard(eq(10L), anyInt(), eq(BigDecimal.TEN))).thenReturn(0);
+        when(cardRepository.lockBalanceShardsIfActive(10L)).thenReturn(Optional.of(0));
+        when(cardRepository.creditById(10L, BigDecimal.TEN)).thenReturn(1);
+
+        assertTrue(cardBalanceShardService.credit(card, BigDecimal.TEN));
+
+        verify(cardRepository).creditById(10L, BigDecimal.TEN);
+    }
+
+    @Test
+    void credit_shouldRetryWithCurrentShardCount_whenShardCountShrank() {
+        when(cardBalanceShardRepository.creditShard(eq(10L), anyInt(), eq(BigDecimal.TEN))).thenReturn(0, 1);
+        when(cardRepository.lockBalanceShardsIfActive(10L)).thenReturn(Optional.of(1));
+
+        assertTrue(cardBalanceShardService.credit(card, BigDecimal.TEN));
+
+        ArgumentCaptor<Integer> shardNo = ArgumentCaptor.forClass(Integer.class);
+        verify(cardBalanceShardRepository, times(2)).creditShard(eq(10L), shardNo.capture(), eq(BigDecimal.TEN));
+        assertEquals(0, shardNo.getAllValues().get(1));
+        verify(cardRepository, never()).creditById(any(), any());
+    }
+
+    @Test
+    void credit_shouldFail_whenCardIsNotActive() {
+        when(cardBalanceShardRepository.creditShard(eq(10L), anyInt(), eq(BigDecimal.TEN))).thenReturn(0);
+        when(cardRepository.lockBalanceShardsIfActive(10L)).thenReturn(Optional.empty());
+
+        assertFalse(cardBalanceShardService.credit(card, BigDecimal.TEN));
+        verify(cardRepository, never()).creditById(any(), any());
+    }
+
+    @Test
+    void debit_shouldNotLockAllShards_whenOneShardHasFunds() {
+        when(cardBalanceShardRepository.debitAnyShard(10L, BigDecimal.TEN)).thenReturn(1);
+
+        assertTrue(cardBalanceShardService.debit(card, BigDecimal.TEN));
+        verify(cardBalanceShardRepository, never()).findAllByCardIdForUpdate(any());
+    }
+
+    @Test
+    void debit_shouldCollectAmountFromSeveralShards_whenNoSingleShardSuffices() {
+        List<CardBalanceShard> shards = shards(30, 50, 20, 0);
+        when(cardRepository.lockBalanceShardsIfActive(10L)).thenReturn(Optional.of(4));
+        when(cardBalanceShardRepository.findAllByCardIdForUpdate(10L)).thenReturn(shards);
+
+        assertTrue(cardBalanceShardService.debit(card, BigDecimal.valueOf(70)));
+
+        assertEquals(BigDecimal.valueOf(10), shards.get(0).getBalance());
+        assertEquals(BigDecimal.ZERO, shards.get(1).getBalance());
+        assertEquals(BigDecimal.valueOf(20), shards.get(2).getBalance());
+    }
+
+    @Test
+    void debit_shouldFail_whenTotalIsInsufficient() {
+        List<CardBalanceShard> shards = shards(30, 20, 0, 0);
+        when(cardRepository.lockBalanceShardsIfActive(10L)).thenReturn(Optional.of(4));
+        when(cardBalanceShardRepository.findAllByCardIdForUpdate(10L)).thenReturn(shards);
+
+        assertFalse(cardBalanceShardService.debit(card, BigDecimal.valueOf(51)));
+        assertEquals(BigDecimal.valueOf(30), shards.get(0).getBalance());
+    }
+
+    @Test
+    void debit_shouldDebitCardBalance_whenShardsWereFoldedAfterCardWasRead() {
+        when(cardBalanceShardRepository.debitAnyShard(10L, BigDecimal.TEN)).thenReturn(0);
+        when(cardRepository.lockBalanceShardsIfActive(10L)).thenReturn(Optional.of(0));
+        when(cardRepository.debitById(10L, BigDecimal.TEN)).thenReturn(1);
+
+        assertTrue(cardBalanceShardService.debit(card, BigDecimal.TEN));
+
+        verify(cardRepository).debitById(10L, BigDecimal.TEN);
+        verify(cardBalanceShardRepository, never()).findAllByCardIdForUpdate(any());
+    }
+
+    @Test
+    void debit_shouldFail_whenFoldedCardBalanceIsInsufficient() {
+        when(cardRepository.lockBalanceShardsIfActive(10L)).thenReturn(Optional.of(0));
+        when(cardRepository.debitById(10L, BigDecimal.TEN)).thenReturn(0);
+
+        assertFalse(cardBalanceShardService.debit(card, BigDecimal.TEN));
+    }
+
+    @Test
+    void debit_shouldDrainCurrentShards_whenShardCountChangedAfterCardWasRead() {
+        List<CardBalanceShard> shards = shards(6, 6);
+        when(cardBalanceShardRepository.debitAnyShard(10L, BigDecimal.TEN)).thenReturn(0);
+        when(cardRepository.lockBalanceShardsIfActive(10L)).thenReturn(Optional.of(2));
+        when(cardBalanceShardRepository.findAllByCardIdForUpdate(10L)).thenReturn(shards);
+
+        assertTrue(cardBalanceShardService.debit(card, BigDecimal.TEN));
+
+        assertEquals(BigDecimal.ZERO, shards.get(0).getBalance());
+        assertEquals(BigDecimal.valueOf(2), shards.get(1).getBalance());
+        verify(cardRepository, never()).debitById(any(), any());
+    }
+
+    @Test
+    void debit_shouldThrow_whenCardIsNotActive() {
+        when(cardRepository.lockBalanceShardsIfActive(10L)).thenReturn(Optional.empty());
+
+        assertThrows(InvalidCardOperationException.class, () -> cardBalanceShardService.debit(card, BigDecimal.TEN));
+        verify(cardBalanceShardRepository, never()).findAllByCardIdForUpdate(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void changeShardCount_shouldSpreadCardBalanceEvenly() {
+        Card plain = new Card();
+        plain.setId(10L);
+        plain.setBalance(new BigDecimal("100.01"));
+        when(cardRepository.findByIdForUpdate(10L)).thenReturn(Optional.of(plain));
+        when(cardBalanceShardRepository.findAllByCardIdForUpdate(10L)).thenReturn(List.of());
+
+        cardBalanceShardService.changeShardCount(10L, 3);
+
+        ArgumentCaptor<List<CardBalanceShard>> captor = ArgumentCaptor.forClass(List.class);
+        verify(cardBalanceShardRepository).saveAll(captor.capture());
+        List<CardBalanceShard> saved = captor.getValue();
+        assertEquals(3, saved.size());
+        assertEquals(new BigDecimal("33.35"), saved.get(0).getBalance());
+        assertEquals(new BigDecimal("33.33"), saved.get(1).getBalance());
+        assertEquals(new BigDecimal("33.33"), saved.get(2).getBalance());
+        assertEquals(BigDecimal.ZERO, plain.getBalance());
+        assertEquals(3, plain.getBalanceShards());
+    }
+
+    @Test
+    void changeShardCount_toZero_shouldFoldShardsBackIntoCard() {
+        List<CardBalanceShard> shards = shards(30, 50, 20, 0);
+        when(cardRepository.findByIdForUpdate(10L)).thenReturn(Optional.of(card));
+        when(cardBalanceShardRepository.findAllByCardIdForUpdate(10L)).thenReturn(shards);
+
+        cardBalanceShardService.changeShardCount(10L, 0);
+
+        shards.forEach(shard -> verify(cardBalanceShardRepository).delete(shard));
+        assertEquals(BigDecimal.valueOf(100), card.getBalance());
+        assertEquals(0, card.getBalanceShards());
+        verify(cardRepository).save(card);
+    }
+
+    @Test
+    void changeShardCount_shouldThrow_whenCardNotFound() {
+        when(cardRepository.findByIdForUpdate(10L)).thenReturn(Optional.empty());
+
+        assertThrows(CardNotFoundException.class, () -> cardBalanceShardService.changeShardCount(10L, 4));
+    }
+
+    private List<CardBalanceShard> shards(int... balances) {
+        List<CardBalanceShard> shards = new ArrayList<>();
+        for (int i = 0; i < balances.length; i++) {
+            shards.add(CardBalanceShard.builder()
+                    .cardId(10L)
+                    .shardNo(i)
+                    .balance(BigDecimal.valueOf(balances[i]))
+                    .build());
+        }
+        return shards;
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardDto;
+import com.example.bankcards.dto.CardView;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.security.CardNumberCipher;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CardDtoMapperTest {
+
+    private final CardNumberCipher cardNumberCipher = new CardNumberCipher("MySuperSecretKey", "MySuperSecretHashKey");
+    private final CardDtoMapper mapper = new CardDtoMapper(cardNumberCipher);
+
+    @Test
+    void maskLast4_shouldMaskProperly() {
+        assertEquals("**** **** **** 5678", mapper.maskLast4("5678"));
+        assertEquals("****", mapper.maskLast4(null));
+    }
+
+    @Test
+    void toDto_shouldShowOwnerFullName_andToAdminDtoUsername() {
+        CardView card = new CardView(5L, "1111", LocalDate.of(2030, 1, 31), CardStatus.ACTIVE,
+                BigDecimal.TEN, Instant.parse("2025-01-01T00:00:00Z"), "john", "John", "Doe", null);
+
+        CardDto dto = mapper.toDto(card);
+        CardDto adminDto = mapper.toAdminDto(card);
+
+        assertEquals("**** **** **** 1111", dto.getMaskedCardNumber());
+        assertEquals("John Doe", dto.getOwnerName());
+        assertEquals("ACTIVE", dto.getStatus());
+        assertEquals("2025-01-01T00:00:00Z", dto.getCreatedAt());
+        assertEquals("john", adminDto.getOwnerName());
+        assertEquals("**** **** **** 1111", adminDto.getMaskedCardNumber());
+    }
+
+    @Test
+    void toAdminDto_shouldTolerateMissingCreatedAt() {
+        CardView card = new CardView(5L, null, null, CardStatus.BLOCKED, BigDecimal.ZERO, null,
+                "john", "John", "Doe", null);
+
+        CardDto dto = mapper.toAdminDto(card);
+
+        assertEquals("****", dto.getMaskedCardNumber());
+        assertNull(dto.getCreatedAt());
+    }
+
+    @Test
+    void toDto_shouldTakeLast4FromNumber_whenCardIsNotBackfilledYet() {
+        CardView single = new CardView(5L, null, null, CardStatus.ACTIVE, BigDecimal.ZERO, null,
+                "john", "John", "Doe", cardNumberCipher.encrypt("4000001234567899"));
+        CardView doubleEncrypted = new CardView(6L, null, null, CardStatus.ACTIVE, BigDecimal.ZERO, null,
+                "john", "John", "Doe", cardNumberCipher.encrypt(cardNumberCipher.encrypt("4000001234560001")));
+        CardView broken = new CardView(7L, null, null, CardStatus.ACTIVE, BigDecimal.ZERO, null,
+                "john", "John", "Doe", "not-base64!");
+
+        assertEquals("**** **** **** 7899", mapper.toDto(single).getMaskedCardNumber());
+        assertEquals("**** **** **** 0001", mapper.toAdminDto(doubleEncrypted).getMaskedCardNumber());
+        assertEquals("****", mapper.toDto(broken).getMaskedCardNumber());
+    }
+}
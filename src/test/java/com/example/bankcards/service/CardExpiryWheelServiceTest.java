@@ -0,0 +1,147 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.CardExpiryProperties;
+import com.example.bankcards.dto.CardExpiryView;
+import com.example.bankcards.repository.CardRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CardExpiryWheelServiceTest {
+
+    private static final ZoneId ZONE = ZoneOffset.UTC;
+    private static final LocalDate TODAY = LocalDate.of(2030, 3, 10);
+
+    private CardRepository cardRepository;
+    private CardExpiryProperties properties;
+    private MutableClock clock;
+    private CardExpiryWheelService service;
+
+    @BeforeEach
+    void setUp() {
+        cardRepository = mock(CardRepository.class);
+        properties = new CardExpiryProperties();
+        clock = new MutableClock(TODAY.atTime(15, 0).atZone(ZONE).toInstant());
+        service = new CardExpiryWheelService(cardRepository, properties, clock);
+    }
+
+    @Test
+    void expireDue_shouldExpireCardAtStartOfNextDay() {
+        assertTrue(service.schedule(1L, TODAY));
+
+        clock.set(TODAY.atTime(23, 59, 59).atZone(ZONE).toInstant());
+        assertEquals(0, service.expireDue());
+        verify(cardRepository, never()).markExpiredByIds(anyList(), any());
+
+        when(cardRepository.markExpiredByIds(List.of(1L), TODAY.plusDays(1))).thenReturn(1);
+        clock.set(TODAY.plusDays(1).atStartOfDay(ZONE).toInstant());
+
+        assertEquals(1, service.expireDue());
+        assertEquals(0, service.size());
+    }
+
+    @Test
+    void expireDue_shouldRequeueCards_whenUpdateFails() {
+        assertTrue(service.schedule(1L, TODAY));
+        clock.set(TODAY.plusDays(1).atStartOfDay(ZONE).toInstant());
+        when(cardRepository.markExpiredByIds(List.of(1L), TODAY.plusDays(1)))
+                .thenThrow(new QueryTimeoutException("statement timeout"))
+                .thenReturn(1);
+
+        assertEquals(0, service.expireDue());
+        assertEquals(1, service.size());
+        assertFalse(service.schedule(1L, TODAY));
+
+        assertEquals(1, service.expireDue());
+        assertEquals(0, service.size());
+    }
+
+    @Test
+    void requeue_shouldReturnPolledCardsToNextTick() {
+        assertTrue(service.schedule(1L, TODAY));
+        clock.set(TODAY.plusDays(1).atStartOfDay(ZONE).toInstant());
+
+        List<Long> due = service.pollDue();
+        assertEquals(List.of(1L), due);
+        assertEquals(List.of(), service.pollDue());
+
+        service.requeue(due);
+        assertEquals(List.of(1L), service.pollDue());
+        verify(cardRepository, never()).markExpiredByIds(anyList(), any());
+    }
+
+    @Test
+    void schedule_shouldIgnoreCardsBeyondHorizonAndDuplicates() {
+        assertFalse(service.schedule(1L, TODAY.plusYears(5)));
+        assertTrue(service.schedule(2L, TODAY.plusDays(3)));
+        assertFalse(service.schedule(2L, TODAY.plusDays(3)));
+
+        assertEquals(1, service.size());
+    }
+
+    @Test
+    void loadHorizon_shouldExpireYesterdaysCardsOnNextTick() {
+        when(cardRepository.findExpiringBetween(TODAY.minusDays(1), TODAY.plusDays(7))).thenReturn(List.of(
+                new CardExpiryView(1L, TODAY.minusDays(1)),
+                new CardExpiryView(2L, TODAY.plusDays(2))));
+        when(cardRepository.markExpiredByIds(List.of(1L), TODAY)).thenReturn(1);
+
+        assertEquals(2, service.loadHorizon());
+        assertEquals(1, service.expireDue());
+        assertEquals(1, service.size());
+    }
+
+    @Test
+    void schedule_shouldDoNothing_whenWheelDisabled() {
+        properties.setWheelEnabled(false);
+
+        assertFalse(service.schedule(1L, TODAY));
+        assertEquals(0, service.loadHorizon());
+        verify(cardRepository, never()).findExpiringBetween(any(), any());
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant instant;
+
+        private MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        private void set(Instant instant) {
+            this.instant = instant;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZONE;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardView;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.security.CardNumberCipher;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CardExportServiceTest {
+
+    private CardRepository cardRepository;
+    private CardExportService cardExportService;
+
+    @BeforeEach
+    void setUp() {
+        cardRepository = mock(CardRepository.class);
+        cardExportService = new CardExportService(cardRepository, JsonMapper.builder().findAndAddModules().build(),
+                new CardDtoMapper(mock(CardNumberCipher.class)));
+    }
+
+    @Test
+    void exportCards_ndjson_shouldWriteOneObjectPerLine_andCloseStream() throws Exception {
+        AtomicBoolean closed = new AtomicBoolean();
+        when(cardRepository.streamAllViews()).thenReturn(
+                Stream.of(card(1L, "owner"), card(2L, "owner")).onClose(() -> closed.set(true)));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cardExportService.exportCards(CardExportService.Format.NDJSON, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].startsWith("{\"id\":1,\"maskedCardNumber\":\"**** **** **** 0001\",\"ownerName\":\"owner\""));
+        assertTrue(lines[1].startsWith("{\"id\":2,"));
+        assertTrue(closed.get());
+    }
+
+    @Test
+    void exportCards_csv_shouldWriteHeaderAndEscapeValues() throws Exception {
+        when(cardRepository.streamAllViews()).thenReturn(Stream.of(card(7L, "Doe, \"JD\"")));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cardExportService.exportCards(CardExportService.Format.CSV, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals("id,maskedCardNumber,ownerName,expiryDate,status,balance,createdAt", lines[0]);
+        assertTrue(lines[1].startsWith("7,**** **** **** 0007,\"Doe, \"\"JD\"\"\",2030-01-31,ACTIVE,10.50,"));
+    }
+
+    @Test
+    void exportCards_shouldTakeBalanceFromView() throws Exception {
+        when(cardRepository.streamAllViews()).thenReturn(Stream.of(
+                new CardView(3L, "0003", LocalDate.of(2030, 1, 31), CardStatus.BLOCKED, new BigDecimal("125.00"),
+                        Instant.EPOCH, "owner", "First", "Last", null)));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cardExportService.exportCards(CardExportService.Format.CSV, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals("3,**** **** **** 0003,owner,2030-01-31,BLOCKED,125.00,1970-01-01T00:00:00Z", lines[1]);
+    }
+
+    private CardView card(Long id, String username) {
+        return new CardView(id, String.format("%04d", id), LocalDate.of(2030, 1, 31), CardStatus.ACTIVE,
+                new BigDecimal("10.50"), Instant.now(), username, "First", "Last", null);
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.BulkCardIssueResultDto;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.CardNumberCipher;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CardIssuanceServiceTest {
+
+    private CardRepository cardRepository;
+    private UserRepository userRepository;
+    private EntityManager entityManager;
+    private CardNumberCipher cardNumberCipher;
+    private CardIssuanceService cardIssuanceService;
+
+    @BeforeEach
+    void setUp() {
+        cardRepository = mock(CardRepository.class);
+        userRepository = mock(UserRepository.class);
+        entityManager = mock(EntityManager.class);
+        cardNumberCipher = new CardNumberCipher("MySuperSecretKey", "MySuperSecretHashKey");
+        cardIssuanceService = new CardIssuanceService(cardRepository, userRepository, cardNumberCipher, entityManager);
+
+        when(userRepository.findAllById(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            return ids.stream().filter(id -> id > 0).map(this::user).collect(Collectors.toList());
+        });
+        when(cardRepository.findExistingCardNumberHashes(anyCollection())).thenReturn(List.of());
+    }
+
+    @Test
+    void issueCards_shouldSaveCardsPerChunkAndClearContext() {
+        List<Long> userIds = LongStream.rangeClosed(1, 2500).boxed().toList();
+
+        BulkCardIssueResultDto result = cardIssuanceService.issueCards(userIds);
+
+        assertEquals(2500, result.getIssued());
+        assertEquals(List.of(), result.getMissingUserIds());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Card>> captor = ArgumentCaptor.forClass(List.class);
+        verify(cardRepository, times(3)).saveAll(captor.capture());
+        verify(cardRepository, times(3)).flush();
+        verify(entityManager, times(3)).clear();
+        verify(cardRepository, never()).isCardNumberTaken(any(), any());
+
+        List<Card> cards = captor.getAllValues().stream().flatMap(List::stream).toList();
+        Set<String> hashes = new HashSet<>();
+        for (Card card : cards) {
+            String plain = cardNumberCipher.decrypt(card.getCardNumber());
+            assertEquals(cardNumberCipher.hash(plain), card.getCardNumberHash());
+            assertEquals(plain.substring(plain.length() - 4), card.getLast4());
+            assertEquals(CardStatus.ACTIVE, card.getStatus());
+            assertEquals(BigDecimal.ZERO, card.getBalance());
+            assertNotNull(card.getCreatedAt());
+            hashes.add(card.getCardNumberHash());
+        }
+        assertEquals(2500, hashes.size());
+    }
+
+    @Test
+    void issueCards_shouldReportMissingUsers() {
+        BulkCardIssueResultDto result = cardIssuanceService.issueCards(List.of(1L, -5L, 2L, 2L));
+
+        assertEquals(3, result.getIssued());
+        assertEquals(List.of(-5L), result.getMissingUserIds());
+    }
+
+    @Test
+    void issueCards_shouldRegenerateNumbersThatAlreadyExist() {
+        when(cardRepository.findExistingCardNumberHashes(anyCollection()))
+                .thenAnswer(invocation -> List.of(invocation.<Collection<String>>getArgument(0).iterator().next()))
+                .thenReturn(List.of());
+
+        BulkCardIssueResultDto result = cardIssuanceService.issueCards(List.of(1L, 2L, 3L));
+
+        assertEquals(3, result.getIssued());
+        verify(cardRepository, times(2)).findExistingCardNumberHashes(anyCollection());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Card>> captor = ArgumentCaptor.forClass(List.class);
+        verify(cardRepository).saveAll(captor.capture());
+        assertEquals(3, captor.getValue().size());
+    }
+
+    @Test
+    void issueCards_shouldRegenerateNumbersTakenByUnbackfilledCards() {
+        when(cardRepository.findUnbackfilledCardNumbers(anyCollection()))
+                .thenAnswer(invocation -> List.of(invocation.<Collection<String>>getArgument(0).iterator().next()))
+                .thenReturn(List.of());
+
+        BulkCardIssueResultDto result = cardIssuanceService.issueCards(List.of(1L, 2L, 3L));
+
+        assertEquals(3, result.getIssued());
+        verify(cardRepository, times(2)).findUnbackfilledCardNumbers(anyCollection());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Card>> captor = ArgumentCaptor.forClass(List.class);
+        verify(cardRepository).saveAll(captor.capture());
+        assertEquals(3, captor.getValue().stream().map(Card::getCardNumberHash).distinct().count());
+    }
+
+    private User user(Long id) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername("user" + id);
+        return user;
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.UserCacheProperties;
+import com.example.bankcards.dto.CardTransactionDto;
+import com.example.bankcards.entity.CardTransaction;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.CardTransactionType;
+import com.example.bankcards.exception.CardNotFoundException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.CardTransactionRepository;
+import com.example.bankcards.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CardLedgerServiceTest {
+
+    private CardTransactionRepository cardTransactionRepository;
+    private CardRepository cardRepository;
+    private UserRepository userRepository;
+    private CardLedgerService cardLedgerService;
+
+    @BeforeEach
+    void setUp() {
+        cardTransactionRepository = mock(CardTransactionRepository.class);
+        cardRepository = mock(CardRepository.class);
+        userRepository = mock(UserRepository.class);
+        cardLedgerService = new CardLedgerService(cardTransactionRepository, cardRepository,
+                new UserCache(userRepository, new UserCacheProperties(), new SimpleMeterRegistry()));
+    }
+
+    @Test
+    void recordTopUp_shouldSaveSingleEntry() {
+        cardLedgerService.recordTopUp(10L, BigDecimal.TEN);
+
+        ArgumentCaptor<CardTransaction> captor = ArgumentCaptor.forClass(CardTransaction.class);
+        verify(cardTransactionRepository).save(captor.capture());
+        assertEquals(10L, captor.getValue().getCardId());
+        assertNull(captor.getValue().getCounterpartyCardId());
+        assertEquals(CardTransactionType.TOP_UP, captor.getValue().getType());
+        assertEquals(BigDecimal.TEN, captor.getValue().getAmount());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void recordTransfers_shouldSaveBothLegsOfEveryTransferAtOnce() {
+        cardLedgerService.recordTransfers(List.of(
+                new CardLedgerService.Transfer(1L, 2L, BigDecimal.valueOf(30)),
+                new CardLedgerService.Transfer(2L, 3L, BigDecimal.valueOf(5))));
+
+        ArgumentCaptor<List<CardTransaction>> captor = ArgumentCaptor.forClass(List.class);
+        verify(cardTransactionRepository).saveAll(captor.capture());
+        List<CardTransaction> entries = captor.getValue();
+        assertEquals(4, entries.size());
+        assertEquals(CardTransactionType.TRANSFER_OUT, entries.get(0).getType());
+        assertEquals(BigDecimal.valueOf(-30), entries.get(0).getAmount());
+        assertEquals(2L, entries.get(0).getCounterpartyCardId());
+        assertEquals(CardTransactionType.TRANSFER_IN, entries.get(1).getType());
+        assertEquals(BigDecimal.valueOf(30), entries.get(1).getAmount());
+        assertEquals(1L, entries.get(1).getCounterpartyCardId());
+    }
+
+    @Test
+    void recordTransfers_shouldDoNothing_whenEmpty() {
+        cardLedgerService.recordTransfers(List.of());
+
+        verify(cardTransactionRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void getCardTransactions_shouldDefaultToLastThirtyDays() {
+        User user = new User();
+        user.setId(1L);
+        CardTransaction transaction = CardTransaction.builder()
+                .id(7L)
+                .cardId(10L)
+                .type(CardTransactionType.TOP_UP)
+                .amount(BigDecimal.ONE)
+                .createdAt(Instant.now())
+                .build();
+        Pageable pageable = PageRequest.of(0, 20);
+
+        when(userRepository.findByUsername("user")).thenReturn(Optional.of(user));
+        when(cardRepository.existsByIdAndUser(10L, user)).thenReturn(true);
+        when(cardTransactionRepository.findByCardIdBetween(eq(10L), any(), any(), eq(pageable)))
+                .thenReturn(new PageImpl<>(List.of(transaction), pageable, 1));
+
+        Page<CardTransactionDto> page = cardLedgerService.getCardTransactions(10L, "user", null, null, pageable);
+
+        assertEquals(1, page.getTotalElements());
+        assertEquals("TOP_UP", page.getContent().get(0).getType());
+        ArgumentCaptor<Instant> from = ArgumentCaptor.forClass(Instant.class);
+        ArgumentCaptor<Instant> to = ArgumentCaptor.forClass(Instant.class);
+        verify(cardTransactionRepository).findByCardIdBetween(eq(10L), from.capture(), to.capture(), eq(pageable));
+        assertEquals(Duration.ofDays(30), Duration.between(from.getValue(), to.getValue()));
+    }
+
+    @Test
+    void getCardTransactions_shouldThrow_whenCardNotOwned() {
+        User user = new User();
+        when(userRepository.findByUsername("user")).thenReturn(Optional.of(user));
+        when(cardRepository.existsByIdAndUser(10L, user)).thenReturn(false);
+
+        assertThrows(CardNotFoundException.class,
+                () -> cardLedgerService.getCardTransactions(10L, "user", null, null, PageRequest.of(0, 20)));
+        verify(cardTransactionRepository, never()).findByCardIdBetween(any(), any(), any(), any());
+    }
+}
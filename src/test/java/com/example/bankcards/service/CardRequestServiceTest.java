@@ -1,5 +1,6 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.config.UserCacheProperties;
 import com.example.bankcards.dto.CardRequestCreatingDto;
 import com.example.bankcards.dto.CardRequestDto;
 import com.example.bankcards.entity.Card;
@@ -9,9 +10,11 @@ import com.example.bankcards.entity.enums.CardRequestStatus;
 import com.example.bankcards.entity.enums.CardRequestType;
 import com.example.bankcards.entity.enums.CardStatus;
 import com.example.bankcards.exception.InvalidCardOperationException;
+import com.example.bankcards.repository.CardBalanceShardRepository;
 import com.example.bankcards.repository.CardRepository;
 import com.example.bankcards.repository.CardRequestRepository;
 import com.example.bankcards.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
@@ -32,6 +35,7 @@ class CardRequestServiceTest {
 
     private CardRequestRepository cardRequestRepository;
     private UserRepository userRepository;
+    private UserCache userCache;
     private CardRepository cardRepository;
 
     private CardRequestService cardRequestService;
@@ -40,9 +44,11 @@ class CardRequestServiceTest {
     void setUp() {
         cardRequestRepository = mock(CardRequestRepository.class);
         userRepository = mock(UserRepository.class);
+        userCache = new UserCache(userRepository, new UserCacheProperties(), new SimpleMeterRegistry());
         cardRepository = mock(CardRepository.class);
 
-        cardRequestService = new CardRequestService(cardRequestRepository, userRepository, cardRepository);
+        cardRequestService = new CardRequestService(cardRequestRepository, userCache, cardRepository,
+                new CardBalanceShardService(mock(CardBalanceShardRepository.class), cardRepository));
     }
 
     @Test
@@ -1,6 +1,9 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.config.UserCacheProperties;
 import com.example.bankcards.dto.CardDto;
+import com.example.bankcards.dto.CardSliceDto;
+import com.example.bankcards.dto.CardView;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.entity.enums.CardStatus;
@@ -8,9 +11,12 @@ import com.example.bankcards.exception.CardNotFoundException;
 import com.example.bankcards.exception.InvalidCardOperationException;
 import com.example.bankcards.repository.CardRepository;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.CardNumberCipher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
@@ -23,44 +29,41 @@ import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyList;
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 class CardServiceTest {
 
     private CardRepository cardRepository;
     private UserRepository userRepository;
+    private UserCache userCache;
+    private CardNumberCipher cardNumberCipher;
+    private CardLedgerService cardLedgerService;
+    private CardBalanceShardService cardBalanceShardService;
     private CardService cardService;
 
     @BeforeEach
     void setUp() {
         cardRepository = mock(CardRepository.class);
         userRepository = mock(UserRepository.class);
-        cardService = new CardService(cardRepository, userRepository);
-    }
-
-    @Test
-    void encryptAndDecrypt_shouldReturnOriginalString() throws Exception {
-        String original = "1234567890123456";
-
-        String encrypted = cardService.encrypt(original);
-        assertNotNull(encrypted);
-        assertNotEquals(original, encrypted);
-
-        String decrypted = cardService.decrypt(encrypted);
-        assertEquals(original, decrypted);
-    }
-
-    @Test
-    void maskCardNumber_shouldMaskCorrectly() {
-        String cardNumber = "1234567890123456";
-        String masked = cardService.maskCardNumber(cardNumber);
-        assertEquals("**** **** **** 3456", masked);
+        userCache = new UserCache(userRepository, new UserCacheProperties(), new SimpleMeterRegistry());
+        cardNumberCipher = new CardNumberCipher("MySuperSecretKey", "MySuperSecretHashKey");
+        cardLedgerService = mock(CardLedgerService.class);
+        cardBalanceShardService = mock(CardBalanceShardService.class);
+        cardService = new CardService(cardRepository, userCache, cardNumberCipher, cardLedgerService,
+                cardBalanceShardService, new CardDtoMapper(cardNumberCipher));
     }
 
     @Test
@@ -72,7 +75,7 @@ class CardServiceTest {
         user.setUsername("johndoe");
 
         when(userRepository.findByUsername("johndoe")).thenReturn(Optional.of(user));
-        when(cardRepository.existsByCardNumber(anyString())).thenReturn(false);
+        when(cardRepository.isCardNumberTaken(anyString(), anyList())).thenReturn(false);
 
         ArgumentCaptor<Card> captor = ArgumentCaptor.forClass(Card.class);
         when(cardRepository.save(captor.capture())).thenAnswer(invocation -> {
@@ -94,11 +97,34 @@ class CardServiceTest {
 
         Card savedCard = captor.getValue();
         assertNotNull(savedCard.getCardNumber());
+        String plainCardNumber = cardNumberCipher.decrypt(savedCard.getCardNumber());
+        String last4 = plainCardNumber.substring(plainCardNumber.length() - 4);
+        assertEquals(cardNumberCipher.hash(plainCardNumber), savedCard.getCardNumberHash());
+        assertEquals(last4, savedCard.getLast4());
+        assertEquals("**** **** **** " + last4, dto.getMaskedCardNumber());
         assertEquals(CardStatus.ACTIVE, savedCard.getStatus());
         assertEquals(user, savedCard.getUser());
         assertEquals(BigDecimal.ZERO, savedCard.getBalance());
     }
 
+    @Test
+    void createCard_shouldRegenerateNumber_whenTakenByUnbackfilledCard() {
+        User user = new User();
+        user.setFirstName("John");
+        user.setLastName("Doe");
+        when(userRepository.findByUsername("johndoe")).thenReturn(Optional.of(user));
+        when(cardRepository.isCardNumberTaken(anyString(), anyList())).thenReturn(true, false);
+        when(cardRepository.save(any(Card.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        cardService.createCard("johndoe");
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<String>> legacyForms = ArgumentCaptor.forClass(List.class);
+        verify(cardRepository, times(2)).isCardNumberTaken(anyString(), legacyForms.capture());
+        String firstNumber = cardNumberCipher.decrypt(legacyForms.getAllValues().get(0).get(0));
+        assertEquals(cardNumberCipher.legacyEncryptedForms(firstNumber), legacyForms.getAllValues().get(0));
+    }
+
     @Test
     void createCard_shouldThrow_whenUserNotFound() {
         when(userRepository.findByUsername("unknown")).thenReturn(Optional.empty());
@@ -114,35 +140,21 @@ class CardServiceTest {
         User user = new User();
         user.setId(1L);
 
-        Card card1 = Card.builder()
-                .id(1L)
-                .cardNumber(encryptSafe("1111222233334444"))
-                .user(user)
-                .status(CardStatus.ACTIVE)
-                .balance(BigDecimal.valueOf(100))
-                .expiryDate(LocalDate.now().plusYears(3))
-                .createdAt(Instant.now())
-                .build();
-
-        Card card2 = Card.builder()
-                .id(2L)
-                .cardNumber(encryptSafe("5555666677778888"))
-                .user(user)
-                .status(CardStatus.BLOCKED)
-                .balance(BigDecimal.valueOf(50))
-                .expiryDate(LocalDate.now().plusYears(2))
-                .createdAt(Instant.now())
-                .build();
+        CardView card1 = new CardView(1L, "4444", LocalDate.now().plusYears(3), CardStatus.ACTIVE,
+                BigDecimal.valueOf(100), Instant.now(), "user", "John", "Doe", null);
+        CardView card2 = new CardView(2L, "8888", LocalDate.now().plusYears(2), CardStatus.BLOCKED,
+                BigDecimal.valueOf(50), Instant.now(), "user", "John", "Doe", null);
 
         Pageable pageable = PageRequest.of(0, 10);
-        Page<Card> page = new PageImpl<>(List.of(card1, card2), pageable, 2);
+        Page<CardView> page = new PageImpl<>(List.of(card1, card2), pageable, 2);
 
         when(userRepository.findByUsername("user")).thenReturn(Optional.of(user));
-        when(cardRepository.findByUser(user, pageable)).thenReturn(page);
+        when(cardRepository.findViewsByUser(user, pageable)).thenReturn(page);
 
         Page<CardDto> result = cardService.getUserCards("user", pageable);
 
         assertEquals(2, result.getTotalElements());
+        assertEquals("John Doe", result.getContent().get(0).getOwnerName());
         assertEquals("**** **** **** 4444", result.getContent().get(0).getMaskedCardNumber());
         assertEquals(CardStatus.ACTIVE.name(), result.getContent().get(0).getStatus());
         assertEquals("**** **** **** 8888", result.getContent().get(1).getMaskedCardNumber());
@@ -159,24 +171,17 @@ class CardServiceTest {
     }
 
     @Test
-    void getCardDetailsById_shouldReturnDto() throws Exception {
+    void getCardDetailsById_shouldReturnDto() {
         User user = new User();
         user.setId(1L);
         user.setFirstName("Jane");
         user.setLastName("Smith");
 
-        Card card = Card.builder()
-                .id(5L)
-                .cardNumber(cardService.encrypt("9999888877776666"))
-                .user(user)
-                .status(CardStatus.ACTIVE)
-                .balance(BigDecimal.TEN)
-                .expiryDate(LocalDate.now().plusYears(4))
-                .createdAt(Instant.now())
-                .build();
+        CardView card = new CardView(5L, "6666", LocalDate.now().plusYears(4), CardStatus.ACTIVE,
+                BigDecimal.TEN, Instant.now(), "janesmith", "Jane", "Smith", null);
 
         when(userRepository.findByUsername("janesmith")).thenReturn(Optional.of(user));
-        when(cardRepository.findByIdAndUser(5L, user)).thenReturn(Optional.of(card));
+        when(cardRepository.findViewByIdAndUser(5L, user)).thenReturn(Optional.of(card));
 
         CardDto dto = cardService.getCardDetailsById(5L, "janesmith");
 
@@ -212,19 +217,36 @@ class CardServiceTest {
         User user = new User();
         user.setId(1L);
 
+        when(userRepository.findByUsername("user")).thenReturn(Optional.of(user));
+        when(cardRepository.creditIfActive(10L, 1L, BigDecimal.valueOf(25))).thenReturn(1);
+
+        cardService.topUpCardById(10L, "user", BigDecimal.valueOf(25));
+
+        verify(cardRepository).creditIfActive(10L, 1L, BigDecimal.valueOf(25));
+        verify(cardRepository, never()).findByIdAndUser(any(), any());
+        verify(cardRepository, never()).save(any());
+        verify(cardLedgerService).recordTopUp(10L, BigDecimal.valueOf(25));
+    }
+
+    @Test
+    void topUpCardById_shouldCreditBalanceShard_whenCardIsSharded() {
+        User user = new User();
+        user.setId(1L);
         Card card = new Card();
         card.setId(10L);
         card.setUser(user);
         card.setStatus(CardStatus.ACTIVE);
-        card.setBalance(BigDecimal.valueOf(50));
+        card.setBalanceShards(16);
 
         when(userRepository.findByUsername("user")).thenReturn(Optional.of(user));
+        when(cardRepository.creditIfActive(10L, 1L, BigDecimal.TEN)).thenReturn(0);
         when(cardRepository.findByIdAndUser(10L, user)).thenReturn(Optional.of(card));
+        when(cardBalanceShardService.credit(card, BigDecimal.TEN)).thenReturn(true);
 
-        cardService.topUpCardById(10L, "user", BigDecimal.valueOf(25));
+        cardService.topUpCardById(10L, "user", BigDecimal.TEN);
 
-        assertEquals(BigDecimal.valueOf(75), card.getBalance());
-        verify(cardRepository).save(card);
+        verify(cardBalanceShardService).credit(card, BigDecimal.TEN);
+        verify(cardLedgerService).recordTopUp(10L, BigDecimal.TEN);
     }
 
     @Test
@@ -260,13 +282,44 @@ class CardServiceTest {
         InvalidCardOperationException ex = assertThrows(InvalidCardOperationException.class,
                 () -> cardService.topUpCardById(1L, "user", BigDecimal.TEN));
         assertEquals("Card is not active", ex.getMessage());
+        verifyNoInteractions(cardLedgerService);
+    }
+
+    @Test
+    void scrollUserCards_shouldReturnSliceWithNextCursor() {
+        User user = new User();
+        user.setId(1L);
+        List<CardView> cards = List.of(scrollCard(11L, "1111"), scrollCard(12L, "2222"), scrollCard(13L, "3333"));
+
+        when(userRepository.findByUsername("user")).thenReturn(Optional.of(user));
+        when(cardRepository.findViewsByUserAfter(user, 10L, Limit.of(3))).thenReturn(cards);
+
+        CardSliceDto slice = cardService.scrollUserCards("user", 10L, 2);
+
+        assertEquals(2, slice.getContent().size());
+        assertEquals("**** **** **** 2222", slice.getContent().get(1).getMaskedCardNumber());
+        assertTrue(slice.isHasNext());
+        assertEquals(12L, slice.getNextCursor());
+    }
+
+    @Test
+    void scrollUserCards_shouldStartFromBeginning_andCapLimit() {
+        User user = new User();
+        user.setId(1L);
+
+        when(userRepository.findByUsername("user")).thenReturn(Optional.of(user));
+        when(cardRepository.findViewsByUserAfter(user, 0L, Limit.of(101)))
+                .thenReturn(List.of(scrollCard(1L, "1111")));
+
+        CardSliceDto slice = cardService.scrollUserCards("user", null, 10_000);
+
+        assertEquals(1, slice.getContent().size());
+        assertFalse(slice.isHasNext());
+        assertNull(slice.getNextCursor());
     }
 
-    private String encryptSafe(String cardNumber) {
-        try {
-            return cardService.encrypt(cardNumber);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
+    private CardView scrollCard(Long id, String last4) {
+        return new CardView(id, last4, LocalDate.now().plusYears(1), CardStatus.ACTIVE,
+                BigDecimal.ONE, Instant.now(), "user", "John", "Doe", null);
     }
 }
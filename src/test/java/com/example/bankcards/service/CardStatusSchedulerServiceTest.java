@@ -1,9 +1,12 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.config.CardExpiryProperties;
 import com.example.bankcards.repository.CardRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
+
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -17,15 +20,45 @@ class CardStatusSchedulerServiceTest {
     @BeforeEach
     void setUp() {
         cardRepository = mock(CardRepository.class);
-        schedulerService = new CardStatusSchedulerService(cardRepository);
+        CardExpiryProperties properties = new CardExpiryProperties();
+        properties.setChunkSize(100);
+        properties.setPause(Duration.ZERO);
+        schedulerService = new CardStatusSchedulerService(cardRepository, properties);
     }
 
     @Test
     void updateExpiredCardsStatus_shouldCallRepositoryAndLogUpdatedCount() {
-        when(cardRepository.markExpiredCardsBlocked()).thenReturn(5);
+        when(cardRepository.markExpiredCardsChunk(100)).thenReturn(5);
+
+        schedulerService.updateExpiredCardsStatus();
+
+        verify(cardRepository, times(1)).markExpiredCardsChunk(100);
+    }
+
+    @Test
+    void updateExpiredCardsStatus_shouldSweepInChunksUntilPartialChunk() {
+        when(cardRepository.markExpiredCardsChunk(100)).thenReturn(100, 100, 42);
 
         schedulerService.updateExpiredCardsStatus();
 
-        verify(cardRepository, times(1)).markExpiredCardsBlocked();
+        verify(cardRepository, times(3)).markExpiredCardsChunk(100);
+    }
+
+    @Test
+    void updateExpiredCardsStatus_shouldStopWhenInterrupted() {
+        CardExpiryProperties properties = new CardExpiryProperties();
+        properties.setChunkSize(100);
+        properties.setPause(Duration.ofSeconds(10));
+        schedulerService = new CardStatusSchedulerService(cardRepository, properties);
+        when(cardRepository.markExpiredCardsChunk(100)).thenReturn(100);
+
+        Thread.currentThread().interrupt();
+        try {
+            schedulerService.updateExpiredCardsStatus();
+        } finally {
+            Thread.interrupted();
+        }
+
+        verify(cardRepository, times(1)).markExpiredCardsChunk(100);
     }
 }
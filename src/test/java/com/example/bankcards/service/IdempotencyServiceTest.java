@@ -0,0 +1,222 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.IdempotencyProperties;
+import com.example.bankcards.config.UserCacheProperties;
+import com.example.bankcards.entity.IdempotencyKey;
+import com.example.bankcards.entity.IdempotencyKeyId;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.IdempotencyKeyStatus;
+import com.example.bankcards.exception.IdempotencyConflictException;
+import com.example.bankcards.exception.InsufficientFundsException;
+import com.example.bankcards.repository.CardBalanceShardRepository;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.IdempotencyKeyRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.CardNumberCipher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class IdempotencyServiceTest {
+
+    private final Map<IdempotencyKeyId, IdempotencyKey> table = new ConcurrentHashMap<>();
+    private final AtomicInteger balance = new AtomicInteger();
+
+    // откат возвращает таблицу ключей и баланс к состоянию на начало транзакции
+    private final TransactionOperations transaction = new TransactionOperations() {
+        @Override
+        public <T> T execute(TransactionCallback<T> action) {
+            Map<IdempotencyKeyId, IdempotencyKey> tableBefore = new HashMap<>(table);
+            int balanceBefore = balance.get();
+            try {
+                return action.doInTransaction(new SimpleTransactionStatus());
+            } catch (RuntimeException e) {
+                table.clear();
+                table.putAll(tableBefore);
+                balance.set(balanceBefore);
+                throw e;
+            }
+        }
+    };
+
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+    private IdempotencyProperties properties;
+    private IdempotencyService idempotencyService;
+
+    @BeforeEach
+    void setUp() {
+        idempotencyKeyRepository = mock(IdempotencyKeyRepository.class);
+        when(idempotencyKeyRepository.insertIfAbsent(anyString(), anyString(), anyString())).thenAnswer(i -> {
+            IdempotencyKeyId id = new IdempotencyKeyId(i.getArgument(0), i.getArgument(1));
+            IdempotencyKey row = IdempotencyKey.builder()
+                    .id(id)
+                    .requestHash(i.getArgument(2))
+                    .status(IdempotencyKeyStatus.IN_PROGRESS)
+                    .createdAt(Instant.now())
+                    .build();
+            return table.putIfAbsent(id, row) == null ? 1 : 0;
+        });
+        when(idempotencyKeyRepository.complete(any(), any(), any())).thenAnswer(this::completeRow);
+        when(idempotencyKeyRepository.findById(any())).thenAnswer(i -> Optional.ofNullable(table.get(i.getArgument(0))));
+
+        properties = new IdempotencyProperties();
+        idempotencyService = new IdempotencyService(idempotencyKeyRepository, properties, transaction);
+    }
+
+    @Test
+    void execute_concurrentDuplicates_shouldChangeBalanceExactlyOnce() throws Exception {
+        CardRepository cardRepository = mock(CardRepository.class);
+        UserRepository userRepository = mock(UserRepository.class);
+        CardService cardService = new CardService(cardRepository, new UserCache(userRepository, new UserCacheProperties(), new SimpleMeterRegistry()),
+                new CardNumberCipher("MySuperSecretKey", "MySuperSecretHashKey"),
+                mock(CardLedgerService.class),
+                new CardBalanceShardService(mock(CardBalanceShardRepository.class), cardRepository),
+                new CardDtoMapper(mock(CardNumberCipher.class)));
+
+        User user = new User();
+        user.setId(1L);
+        when(userRepository.findByUsername("user")).thenReturn(Optional.of(user));
+        when(cardRepository.creditIfActive(10L, 1L, BigDecimal.TEN)).thenAnswer(i -> {
+            Thread.sleep(20);
+            return 1;
+        });
+
+        String hash = IdempotencyService.fingerprint("topup", 10L, "10");
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> responses = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            responses.add(executor.submit(() -> {
+                start.await();
+                return idempotencyService.execute("user", "key-1", hash, () -> {
+                    cardService.topUpCardById(10L, "user", BigDecimal.TEN);
+                    return "Card topped up successfully. Amount: 10";
+                });
+            }));
+        }
+        start.countDown();
+        for (Future<String> response : responses) {
+            assertEquals("Card topped up successfully. Amount: 10", response.get(10, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+
+        verify(cardRepository, times(1)).creditIfActive(10L, 1L, BigDecimal.TEN);
+        assertEquals(IdempotencyKeyStatus.COMPLETED, table.get(new IdempotencyKeyId("user", "key-1")).getStatus());
+    }
+
+    @Test
+    void execute_shouldReplayFromCache_withoutRunningAction() {
+        AtomicInteger calls = new AtomicInteger();
+
+        idempotencyService.execute("user", "key-1", "hash", () -> "ok " + calls.incrementAndGet());
+        String replayed = idempotencyService.execute("user", "key-1", "hash", () -> "ok " + calls.incrementAndGet());
+
+        assertEquals("ok 1", replayed);
+        assertEquals(1, calls.get());
+        verify(idempotencyKeyRepository, times(1)).insertIfAbsent("user", "key-1", "hash");
+    }
+
+    @Test
+    void execute_shouldReplayStoredResponse_afterCacheLoss() {
+        idempotencyService.execute("user", "key-1", "hash", () -> "stored");
+
+        IdempotencyService restarted = new IdempotencyService(idempotencyKeyRepository, properties, transaction);
+        String replayed = restarted.execute("user", "key-1", "hash", () -> {
+            throw new AssertionError("action must not run again");
+        });
+
+        assertEquals("stored", replayed);
+    }
+
+    @Test
+    void execute_shouldRejectKeyReuse_forDifferentRequest() {
+        idempotencyService.execute("user", "key-1", "hash-a", () -> "ok");
+
+        assertThrows(IdempotencyConflictException.class,
+                () -> idempotencyService.execute("user", "key-1", "hash-b", () -> "ok"));
+    }
+
+    @Test
+    void execute_shouldReturnConflict_whenRequestStillInProgressOnAnotherNode() {
+        idempotencyKeyRepository.insertIfAbsent("user", "key-1", "hash");
+
+        IdempotencyConflictException ex = assertThrows(IdempotencyConflictException.class,
+                () -> idempotencyService.execute("user", "key-1", "hash", () -> "ok"));
+        assertEquals("Request with this Idempotency-Key is still in progress", ex.getMessage());
+    }
+
+    @Test
+    void execute_shouldReleaseKey_whenActionFails() {
+        assertThrows(InsufficientFundsException.class, () -> idempotencyService.execute("user", "key-1", "hash", () -> {
+            throw new InsufficientFundsException("Insufficient funds on source card");
+        }));
+
+        assertFalse(table.containsKey(new IdempotencyKeyId("user", "key-1")));
+        assertEquals("ok", idempotencyService.execute("user", "key-1", "hash", () -> "ok"));
+    }
+
+    @Test
+    void execute_shouldRollBackOperationWithKey_whenCompleteFails() {
+        doThrow(new IllegalStateException("connection lost"))
+                .doAnswer(this::completeRow)
+                .when(idempotencyKeyRepository).complete(any(), any(), any());
+
+        assertThrows(IllegalStateException.class, () -> idempotencyService.execute("user", "key-1", "hash",
+                () -> "balance " + balance.addAndGet(10)));
+
+        assertEquals(0, balance.get());
+        assertFalse(table.containsKey(new IdempotencyKeyId("user", "key-1")));
+
+        assertEquals("balance 10", idempotencyService.execute("user", "key-1", "hash",
+                () -> "balance " + balance.addAndGet(10)));
+        assertEquals("balance 10", new IdempotencyService(idempotencyKeyRepository, properties, transaction)
+                .execute("user", "key-1", "hash", () -> "balance " + balance.addAndGet(10)));
+        assertEquals(10, balance.get());
+    }
+
+    @Test
+    void execute_withoutKey_shouldRunActionDirectly() {
+        assertEquals("ok", idempotencyService.execute("user", null, "hash", () -> "ok"));
+
+        verify(idempotencyKeyRepository, never()).insertIfAbsent(any(), any(), any());
+    }
+
+    private int completeRow(InvocationOnMock invocation) {
+        IdempotencyKey row = table.get(invocation.<IdempotencyKeyId>getArgument(0));
+        row.setResponseBody(invocation.getArgument(1));
+        row.setStatus(invocation.getArgument(2));
+        return 1;
+    }
+}
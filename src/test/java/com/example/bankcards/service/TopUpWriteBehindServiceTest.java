@@ -0,0 +1,270 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.TopUpJournalProperties;
+import com.example.bankcards.config.UserCacheProperties;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.exception.InvalidCardOperationException;
+import com.example.bankcards.repository.CardBalanceShardRepository;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TopUpWriteBehindServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private CardService cardService;
+    private CardRepository cardRepository;
+    private UserRepository userRepository;
+    private CardLedgerService cardLedgerService;
+    private CardBalanceShardRepository cardBalanceShardRepository;
+    private JdbcTemplate jdbcTemplate;
+    private TopUpJournalProperties properties;
+    private TopUpWriteBehindService service;
+
+    private User user;
+    private Card card;
+
+    @BeforeEach
+    void setUp() {
+        cardService = mock(CardService.class);
+        cardRepository = mock(CardRepository.class);
+        userRepository = mock(UserRepository.class);
+        cardLedgerService = mock(CardLedgerService.class);
+        cardBalanceShardRepository = mock(CardBalanceShardRepository.class);
+        jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class), any())).thenReturn(0L);
+
+        properties = new TopUpJournalProperties();
+        properties.setEnabled(true);
+        properties.setPath(dir.resolve("top-up.log").toString());
+        properties.setJournalId("node-1");
+        properties.setFlushInterval(Duration.ofHours(1));
+
+        user = new User();
+        user.setId(1L);
+        card = new Card();
+        card.setId(10L);
+        card.setUser(user);
+        card.setStatus(CardStatus.ACTIVE);
+        when(userRepository.findByUsername("user")).thenReturn(Optional.of(user));
+        when(cardRepository.findByIdAndUser(10L, user)).thenReturn(Optional.of(card));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (service != null) {
+            service.destroy();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_shouldApplySummedDeltaPerCardInOneTransaction() throws Exception {
+        service = newService();
+        service.open();
+
+        service.topUp(10L, "user", BigDecimal.valueOf(5));
+        service.topUp(10L, "user", BigDecimal.valueOf(7));
+        verify(cardRepository, never()).creditActiveCards(anyMap());
+
+        assertEquals(2, service.flush());
+
+        verify(cardRepository).creditActiveCards(Map.of(10L, BigDecimal.valueOf(12)));
+        ArgumentCaptor<List<CardLedgerService.TopUp>> captor = ArgumentCaptor.forClass(List.class);
+        verify(cardLedgerService).recordTopUps(captor.capture());
+        assertEquals(2, captor.getValue().size());
+        verify(jdbcTemplate).update(anyString(), eq(2L), eq("node-1"), eq(2L));
+        verify(cardService, never()).topUpCardById(any(), any(), any());
+    }
+
+    @Test
+    void flush_shouldRetrySameTopUps_whenTransactionFails() throws Exception {
+        service = newService();
+        service.open();
+        service.topUp(10L, "user", BigDecimal.TEN);
+        when(cardRepository.creditActiveCards(anyMap()))
+                .thenThrow(new IllegalStateException("db down"))
+                .thenReturn(Set.of());
+
+        assertThrows(IllegalStateException.class, service::flush);
+        assertEquals(1, service.flush());
+
+        verify(cardRepository, times(2)).creditActiveCards(Map.of(10L, BigDecimal.TEN));
+    }
+
+    @Test
+    void flush_shouldDeadLetterPoisonTopUp_andApplyTheRest() throws Exception {
+        properties.setMaxApplyAttempts(2);
+        Card other = Card.builder().id(20L).user(user).status(CardStatus.ACTIVE).build();
+        when(cardRepository.findByIdAndUser(20L, user)).thenReturn(Optional.of(other));
+        when(cardRepository.creditActiveCards(anyMap())).thenAnswer(invocation -> {
+            if (invocation.<Map<Long, BigDecimal>>getArgument(0).containsKey(10L)) {
+                throw new IllegalStateException("constraint violation");
+            }
+            return Set.of();
+        });
+        service = newService();
+        service.open();
+        service.topUp(10L, "user", BigDecimal.ONE);
+        service.topUp(20L, "user", BigDecimal.TEN);
+
+        // порция целиком, затем запись 10 отдельно — каждая по maxApplyAttempts раз
+        assertThrows(IllegalStateException.class, service::flush);
+        assertThrows(IllegalStateException.class, service::flush);
+        assertThrows(IllegalStateException.class, service::flush);
+        assertEquals(2, service.flush());
+
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO top_up_dead_letters"), anyList(), eq(1), any());
+        verify(cardRepository).creditActiveCards(Map.of(20L, BigDecimal.TEN));
+        verify(jdbcTemplate).update(startsWith("UPDATE top_up_journal_checkpoints"), eq(2L), eq("node-1"), eq(2L));
+    }
+
+    @Test
+    void open_shouldReplayJournaledTopUpsAfterCheckpoint() throws Exception {
+        service = newService();
+        service.open();
+        service.topUp(10L, "user", BigDecimal.ONE);
+        service.topUp(10L, "user", BigDecimal.TEN);
+        // БД недоступна при остановке: пополнения остаются только в журнале
+        when(cardRepository.creditActiveCards(anyMap())).thenThrow(new IllegalStateException("db down"));
+        service.destroy();
+        reset(cardRepository);
+
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class), any())).thenReturn(1L);
+        service = newService();
+        service.open();
+
+        assertEquals(1, service.flush());
+        verify(cardRepository).creditActiveCards(Map.of(10L, BigDecimal.TEN));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_shouldDeadLetterTopUps_whenCardWasBlockedAfterJournaling() throws Exception {
+        service = newService();
+        service.open();
+        service.topUp(10L, "user", BigDecimal.ONE);
+        service.topUp(10L, "user", BigDecimal.TEN);
+
+        Card blocked = Card.builder().id(10L).status(CardStatus.BLOCKED).build();
+        when(cardRepository.creditActiveCards(anyMap())).thenReturn(Set.of(10L));
+        when(cardRepository.findById(10L)).thenReturn(Optional.of(blocked));
+
+        assertEquals(2, service.flush());
+
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO top_up_dead_letters"), anyList(), eq(2), any());
+        ArgumentCaptor<List<CardLedgerService.TopUp>> captor = ArgumentCaptor.forClass(List.class);
+        verify(cardLedgerService).recordTopUps(captor.capture());
+        assertEquals(List.of(), captor.getValue());
+        verify(jdbcTemplate).update(startsWith("UPDATE top_up_journal_checkpoints"), eq(2L), eq("node-1"), eq(2L));
+    }
+
+    @Test
+    void flush_shouldDeadLetterTopUps_whenCardWasDeleted() throws Exception {
+        service = newService();
+        service.open();
+        service.topUp(10L, "user", BigDecimal.TEN);
+
+        when(cardRepository.creditActiveCards(anyMap())).thenReturn(Set.of(10L));
+        when(cardRepository.findById(10L)).thenReturn(Optional.empty());
+
+        assertEquals(1, service.flush());
+
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO top_up_dead_letters"), anyList(), eq(1), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_shouldCreditShards_whenCardBecameShardedAfterJournaling() throws Exception {
+        service = newService();
+        service.open();
+        service.topUp(10L, "user", BigDecimal.TEN);
+
+        Card sharded = Card.builder().id(10L).status(CardStatus.ACTIVE).balanceShards(4).build();
+        when(cardRepository.creditActiveCards(anyMap())).thenReturn(Set.of(10L));
+        when(cardRepository.findById(10L)).thenReturn(Optional.of(sharded));
+        when(cardBalanceShardRepository.creditShard(eq(10L), anyInt(), eq(BigDecimal.TEN))).thenReturn(1);
+
+        assertEquals(1, service.flush());
+
+        verify(cardBalanceShardRepository).creditShard(eq(10L), anyInt(), eq(BigDecimal.TEN));
+        verify(jdbcTemplate, never()).batchUpdate(startsWith("INSERT INTO top_up_dead_letters"), anyList(),
+                anyInt(), any());
+        ArgumentCaptor<List<CardLedgerService.TopUp>> captor = ArgumentCaptor.forClass(List.class);
+        verify(cardLedgerService).recordTopUps(captor.capture());
+        assertEquals(1, captor.getValue().size());
+        assertEquals(BigDecimal.TEN, captor.getValue().get(0).amount());
+    }
+
+    @Test
+    void topUp_shouldRejectInactiveCardBeforeJournaling() throws Exception {
+        service = newService();
+        service.open();
+        card.setStatus(CardStatus.BLOCKED);
+
+        assertThrows(InvalidCardOperationException.class, () -> service.topUp(10L, "user", BigDecimal.TEN));
+        assertEquals(0, service.flush());
+    }
+
+    @Test
+    void open_shouldFail_whenJournalIdIsNotConfigured() {
+        properties.setJournalId(" ");
+        service = newService();
+
+        assertThrows(IllegalStateException.class, service::open);
+        verify(jdbcTemplate, never()).update(anyString(), any(Object[].class));
+    }
+
+    @Test
+    void topUp_shouldApplyDirectly_whenJournalDisabled() throws Exception {
+        properties.setEnabled(false);
+        service = newService();
+        service.open();
+
+        service.topUp(10L, "user", BigDecimal.TEN);
+
+        verify(cardService).topUpCardById(10L, "user", BigDecimal.TEN);
+    }
+
+    private TopUpWriteBehindService newService() {
+        return new TopUpWriteBehindService(cardService, cardRepository,
+                new UserCache(userRepository, new UserCacheProperties(), new SimpleMeterRegistry()),
+                cardLedgerService, new CardBalanceShardService(cardBalanceShardRepository, cardRepository),
+                TransactionOperations.withoutTransaction(), jdbcTemplate, properties, new SimpleMeterRegistry());
+    }
+}
@@ -0,0 +1,240 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.TransferProperties;
+import com.example.bankcards.config.UserCacheProperties;
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.entity.enums.UserRole;
+import com.example.bankcards.entity.enums.UserStatus;
+import com.example.bankcards.exception.InsufficientFundsException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.CardTransactionRepository;
+import com.example.bankcards.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Встречные переводы из нескольких потоков на H2 в каждом режиме блокировок:
+ * сумма балансов не меняется, балансы не уходят в минус, в журнале
+ * по две проводки на каждый проведённый перевод. Сравнение пропускной способности
+ * при разном числе потоков — в DisjointTransferScalingBenchmark
+ */
+@DataJpaTest(properties = {
+        "spring.liquibase.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false"
+})
+@Import({TransferService.class, TransferProperties.class, CardLedgerService.class, CardBalanceShardService.class,
+        UserCache.class, UserCacheProperties.class, TransferServiceConcurrencyTest.Metrics.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class TransferServiceConcurrencyTest {
+
+    private static final int CARDS = 4;
+    private static final BigDecimal INITIAL_BALANCE = BigDecimal.valueOf(1_000);
+    private static final int THREADS = 4;
+    private static final int TRANSFERS_PER_THREAD = 50;
+    private static final int DISJOINT_TRANSFERS_PER_THREAD = 25;
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private TransferProperties transferProperties;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CardTransactionRepository cardTransactionRepository;
+
+    @Autowired
+    private UserCache userCache;
+
+    private final List<Long> cardIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        User owner = userRepository.save(User.builder()
+                .username("owner")
+                .password("password")
+                .email("owner@example.com")
+                .firstName("First")
+                .lastName("Last")
+                .status(UserStatus.ACTIVE)
+                .role(UserRole.USER)
+                .createdAt(Instant.now())
+                .build());
+        for (int i = 0; i < CARDS; i++) {
+            cardIds.add(cardRepository.save(card(owner, i)).getId());
+        }
+        transferProperties.setMaxRetries(100);
+        transferProperties.setRetryBackoffMs(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        cardTransactionRepository.deleteAllInBatch();
+        cardRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+        userCache.evict("owner");
+    }
+
+    @ParameterizedTest
+    @EnumSource(TransferProperties.LockingMode.class)
+    void opposingTransfers_shouldConserveTotalBalance(TransferProperties.LockingMode mode) throws Exception {
+        transferProperties.setLockingMode(mode);
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+
+        runConcurrently(THREADS, thread -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                int from = random.nextInt(CARDS);
+                int to = (from + 1) % CARDS;
+                if (random.nextBoolean()) {
+                    int tmp = from;
+                    from = to;
+                    to = tmp;
+                }
+                try {
+                    transferService.transferMoney(request(cardIds.get(from), cardIds.get(to),
+                            random.nextInt(1, 400)), "owner");
+                    completed.incrementAndGet();
+                } catch (InsufficientFundsException e) {
+                    // ожидаемый отказ, баланс не меняется
+                } catch (RuntimeException e) {
+                    errors.incrementAndGet();
+                }
+            }
+        });
+
+        assertEquals(0, errors.get(), "unexpected failures, e.g. lock timeouts or exhausted retries");
+        List<Card> cards = cardRepository.findAllById(cardIds);
+        BigDecimal total = cards.stream().map(Card::getBalance).reduce(BigDecimal.ZERO, BigDecimal::add);
+        assertEquals(0, INITIAL_BALANCE.multiply(BigDecimal.valueOf(CARDS)).compareTo(total),
+                "total balance changed: " + total);
+        cards.forEach(card -> assertTrue(card.getBalance().signum() >= 0, "negative balance on card " + card.getId()));
+        assertEquals(completed.get() * 2L, cardTransactionRepository.count());
+    }
+
+    /**
+     * Каждый поток переводит между своей парой карт туда и обратно, поэтому потоки не делят
+     * блокировок строк: все переводы проходят, никто не ждёт таймаута блокировки,
+     * и итог по каждой карте известен заранее
+     */
+    @ParameterizedTest
+    @EnumSource(TransferProperties.LockingMode.class)
+    void disjointTransfers_shouldAllCompleteWithExpectedBalances(TransferProperties.LockingMode mode) throws Exception {
+        transferProperties.setLockingMode(mode);
+        List<Long> pairs = new ArrayList<>(cardIds);
+        User owner = userRepository.findByUsername("owner").orElseThrow();
+        for (int i = CARDS; i < THREADS * 2; i++) {
+            pairs.add(cardRepository.save(card(owner, i)).getId());
+        }
+
+        runConcurrently(THREADS, thread -> {
+            Long from = pairs.get(thread * 2);
+            Long to = pairs.get(thread * 2 + 1);
+            for (int i = 0; i < DISJOINT_TRANSFERS_PER_THREAD; i++) {
+                transferService.transferMoney(request(from, to, 1), "owner");
+                Long tmp = from;
+                from = to;
+                to = tmp;
+            }
+        });
+
+        // нечётное число переводов: на одну единицу больше ушло с первой карты пары на вторую
+        for (int thread = 0; thread < THREADS; thread++) {
+            assertEquals(0, INITIAL_BALANCE.subtract(BigDecimal.ONE).compareTo(
+                    cardRepository.findById(pairs.get(thread * 2)).orElseThrow().getBalance()));
+            assertEquals(0, INITIAL_BALANCE.add(BigDecimal.ONE).compareTo(
+                    cardRepository.findById(pairs.get(thread * 2 + 1)).orElseThrow().getBalance()));
+        }
+        assertEquals(THREADS * DISJOINT_TRANSFERS_PER_THREAD * 2L, cardTransactionRepository.count());
+    }
+
+    private Card card(User owner, int i) {
+        return Card.builder()
+                .cardNumber("encrypted-" + i)
+                .cardNumberHash("hash-" + i)
+                .last4(String.format("%04d", i))
+                .expiryDate(LocalDate.now().plusYears(5))
+                .status(CardStatus.ACTIVE)
+                .balance(INITIAL_BALANCE)
+                .user(owner)
+                .createdAt(Instant.now())
+                .build();
+    }
+
+    private void runConcurrently(int threads, IntConsumer body) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    body.accept(thread);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private TransferRequest request(Long from, Long to, int amount) {
+        TransferRequest request = new TransferRequest();
+        request.setFromCardId(from);
+        request.setToCardId(to);
+        request.setAmount(BigDecimal.valueOf(amount));
+        return request;
+    }
+
+    @TestConfiguration
+    static class Metrics {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+}
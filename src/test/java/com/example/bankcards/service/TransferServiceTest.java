@@ -1,24 +1,53 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.config.TransferProperties;
+import com.example.bankcards.config.UserCacheProperties;
 import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.dto.TransferResultDto;
 import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardBalanceShard;
 import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.CardStatus;
 import com.example.bankcards.exception.InsufficientFundsException;
 import com.example.bankcards.exception.InvalidCardOperationException;
 import com.example.bankcards.exception.InvalidTransferException;
+import com.example.bankcards.exception.TooManyRequestsException;
+import com.example.bankcards.repository.CardBalanceShardRepository;
 import com.example.bankcards.repository.CardRepository;
 import com.example.bankcards.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
@@ -27,6 +56,10 @@ class TransferServiceTest {
 
     private CardRepository cardRepository;
     private UserRepository userRepository;
+    private UserCache userCache;
+    private CardLedgerService cardLedgerService;
+    private CardBalanceShardRepository cardBalanceShardRepository;
+    private CardBalanceShardService cardBalanceShardService;
     private TransferService transferService;
 
     private User user;
@@ -37,7 +70,15 @@ class TransferServiceTest {
     void setUp() {
         cardRepository = mock(CardRepository.class);
         userRepository = mock(UserRepository.class);
-        transferService = new TransferService(cardRepository, userRepository);
+        userCache = new UserCache(userRepository, new UserCacheProperties(), new SimpleMeterRegistry());
+        cardLedgerService = mock(CardLedgerService.class);
+        cardBalanceShardRepository = mock(CardBalanceShardRepository.class);
+        cardBalanceShardService = new CardBalanceShardService(cardBalanceShardRepository, cardRepository);
+        TransferProperties properties = new TransferProperties();
+        properties.setLockingMode(TransferProperties.LockingMode.PESSIMISTIC);
+        transferService = new TransferService(cardRepository, userCache,
+                TransactionOperations.withoutTransaction(), properties, cardLedgerService,
+                cardBalanceShardService);
 
         user = new User();
         user.setId(1L);
@@ -46,11 +87,13 @@ class TransferServiceTest {
         fromCard.setId(100L);
         fromCard.setUser(user);
         fromCard.setBalance(BigDecimal.valueOf(500));
+        fromCard.setStatus(CardStatus.ACTIVE);
 
         toCard = new Card();
         toCard.setId(200L);
         toCard.setUser(user);
         toCard.setBalance(BigDecimal.valueOf(100));
+        toCard.setStatus(CardStatus.ACTIVE);
     }
 
     @Test
@@ -61,8 +104,8 @@ class TransferServiceTest {
         request.setAmount(BigDecimal.valueOf(200));
 
         when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(user));
-        when(cardRepository.findByIdAndUser(fromCard.getId(), user)).thenReturn(Optional.of(fromCard));
-        when(cardRepository.findByIdAndUser(toCard.getId(), user)).thenReturn(Optional.of(toCard));
+        when(cardRepository.findByIdAndUserForUpdate(fromCard.getId(), user)).thenReturn(Optional.of(fromCard));
+        when(cardRepository.findByIdAndUserForUpdate(toCard.getId(), user)).thenReturn(Optional.of(toCard));
 
         transferService.transferMoney(request, "testuser");
 
@@ -71,6 +114,7 @@ class TransferServiceTest {
 
         verify(cardRepository).save(fromCard);
         verify(cardRepository).save(toCard);
+        verify(cardLedgerService).recordTransfer(fromCard.getId(), toCard.getId(), BigDecimal.valueOf(200));
     }
 
     @Test
@@ -92,7 +136,7 @@ class TransferServiceTest {
     @Test
     void transferMoney_shouldThrow_whenFromCardNotFound() {
         when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(user));
-        when(cardRepository.findByIdAndUser(100L, user)).thenReturn(Optional.empty());
+        when(cardRepository.findByIdAndUserForUpdate(100L, user)).thenReturn(Optional.empty());
 
         TransferRequest request = new TransferRequest();
         request.setFromCardId(100L);
@@ -109,8 +153,8 @@ class TransferServiceTest {
     @Test
     void transferMoney_shouldThrow_whenToCardNotFound() {
         when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(user));
-        when(cardRepository.findByIdAndUser(fromCard.getId(), user)).thenReturn(Optional.of(fromCard));
-        when(cardRepository.findByIdAndUser(toCard.getId(), user)).thenReturn(Optional.empty());
+        when(cardRepository.findByIdAndUserForUpdate(fromCard.getId(), user)).thenReturn(Optional.of(fromCard));
+        when(cardRepository.findByIdAndUserForUpdate(toCard.getId(), user)).thenReturn(Optional.empty());
 
         TransferRequest request = new TransferRequest();
         request.setFromCardId(fromCard.getId());
@@ -127,8 +171,8 @@ class TransferServiceTest {
     @Test
     void transferMoney_shouldThrow_whenSameCardTransfer() {
         when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(user));
-        when(cardRepository.findByIdAndUser(fromCard.getId(), user)).thenReturn(Optional.of(fromCard));
-        when(cardRepository.findByIdAndUser(fromCard.getId(), user)).thenReturn(Optional.of(fromCard));
+        when(cardRepository.findByIdAndUserForUpdate(fromCard.getId(), user)).thenReturn(Optional.of(fromCard));
+        when(cardRepository.findByIdAndUserForUpdate(fromCard.getId(), user)).thenReturn(Optional.of(fromCard));
 
         TransferRequest request = new TransferRequest();
         request.setFromCardId(fromCard.getId());
@@ -153,8 +197,8 @@ class TransferServiceTest {
         toCardOtherUser.setBalance(BigDecimal.valueOf(100));
 
         when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(user));
-        when(cardRepository.findByIdAndUser(fromCard.getId(), user)).thenReturn(Optional.of(fromCard));
-        when(cardRepository.findByIdAndUser(toCardOtherUser.getId(), user)).thenReturn(Optional.of(toCardOtherUser));
+        when(cardRepository.findByIdAndUserForUpdate(fromCard.getId(), user)).thenReturn(Optional.of(fromCard));
+        when(cardRepository.findByIdAndUserForUpdate(toCardOtherUser.getId(), user)).thenReturn(Optional.of(toCardOtherUser));
 
         TransferRequest request = new TransferRequest();
         request.setFromCardId(fromCard.getId());
@@ -171,8 +215,8 @@ class TransferServiceTest {
     @Test
     void transferMoney_shouldThrow_whenInsufficientFunds() {
         when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(user));
-        when(cardRepository.findByIdAndUser(fromCard.getId(), user)).thenReturn(Optional.of(fromCard));
-        when(cardRepository.findByIdAndUser(toCard.getId(), user)).thenReturn(Optional.of(toCard));
+        when(cardRepository.findByIdAndUserForUpdate(fromCard.getId(), user)).thenReturn(Optional.of(fromCard));
+        when(cardRepository.findByIdAndUserForUpdate(toCard.getId(), user)).thenReturn(Optional.of(toCard));
 
         TransferRequest request = new TransferRequest();
         request.setFromCardId(fromCard.getId());
@@ -189,8 +233,8 @@ class TransferServiceTest {
     @Test
     void transferMoney_shouldThrow_whenAmountIsNullOrNegative() {
         when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(user));
-        when(cardRepository.findByIdAndUser(fromCard.getId(), user)).thenReturn(Optional.of(fromCard));
-        when(cardRepository.findByIdAndUser(toCard.getId(), user)).thenReturn(Optional.of(toCard));
+        when(cardRepository.findByIdAndUserForUpdate(fromCard.getId(), user)).thenReturn(Optional.of(fromCard));
+        when(cardRepository.findByIdAndUserForUpdate(toCard.getId(), user)).thenReturn(Optional.of(toCard));
 
         TransferRequest request1 = new TransferRequest();
         request1.setFromCardId(fromCard.getId());
@@ -218,4 +262,525 @@ class TransferServiceTest {
 
         verify(cardRepository, never()).save(any());
     }
+
+    @Test
+    void transferMoney_pessimisticMode_shouldReject_whenTargetCardIsBlocked() {
+        toCard.setStatus(CardStatus.BLOCKED);
+        TransferRequest request = new TransferRequest();
+        request.setFromCardId(fromCard.getId());
+        request.setToCardId(toCard.getId());
+        request.setAmount(BigDecimal.valueOf(200));
+
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(user));
+        when(cardRepository.findByIdAndUserForUpdate(fromCard.getId(), user)).thenReturn(Optional.of(fromCard));
+        when(cardRepository.findByIdAndUserForUpdate(toCard.getId(), user)).thenReturn(Optional.of(toCard));
+
+        InvalidCardOperationException ex = assertThrows(InvalidCardOperationException.class,
+                () -> transferService.transferMoney(request, "testuser"));
+
+        assertEquals("Target card is not active", ex.getMessage());
+        assertEquals(BigDecimal.valueOf(500), fromCard.getBalance());
+        verify(cardRepository, never()).save(any());
+    }
+
+    @Test
+    void transferMoney_pessimisticMode_shouldNotLockShardedCardRow() {
+        toCard.setBalanceShards(4);
+        TransferRequest request = new TransferRequest();
+        request.setFromCardId(fromCard.getId());
+        request.setToCardId(toCard.getId());
+        request.setAmount(BigDecimal.TEN);
+
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(user));
+        when(cardRepository.findByIdAndUserForUpdate(fromCard.getId(), user)).thenReturn(Optional.of(fromCard));
+        when(cardRepository.findShardedByIdAndUser(toCard.getId(), user)).thenReturn(Optional.of(toCard));
+        when(cardBalanceShardRepository.creditShard(eq(toCard.getId()), anyInt(), eq(BigDecimal.TEN))).thenReturn(1);
+
+        transferService.transferMoney(request, "testuser");
+
+        verify(cardRepository, never()).findByIdAndUserForUpdate(toCard.getId(), user);
+        verify(cardRepository).save(fromCard);
+        verify(cardRepository, never()).save(toCard);
+        assertEquals(BigDecimal.valueOf(490), fromCard.getBalance());
+    }
+
+    @Test
+    void transferMoney_optimisticMode_shouldNotSaveShardedCard() {
+        TransferProperties properties = new TransferProperties();
+        properties.setLockingMode(TransferProperties.LockingMode.OPTIMISTIC);
+        transferService = new TransferService(cardRepository, userCache,
+                TransactionOperations.withoutTransaction(), properties, cardLedgerService,
+                cardBalanceShardService);
+        fromCard.setBalanceShards(4);
+        TransferRequest request = new TransferRequest();
+        request.setFromCardId(fromCard.getId());
+        request.setToCardId(toCard.getId());
+        request.setAmount(BigDecimal.TEN);
+
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(user));
+        when(cardRepository.findByIdAndUser(fromCard.getId(), user)).thenReturn(Optional.of(fromCard));
+        when(cardRepository.findByIdAndUser(toCard.getId(), user)).thenReturn(Optional.of(toCard));
+        when(cardBalanceShardRepository.debitAnyShard(fromCard.getId(), BigDecimal.TEN)).thenReturn(1);
+
+        transferService.transferMoney(request, "testuser");
+
+        verify(cardRepository, never()).save(fromCard);
+        verify(cardRepository).save(toCard);
+    }
+
+    @Test
+    void transferMoney_optimisticMode_shouldReject_whenSourceCardIsBlocked() {
+        TransferProperties properties = new TransferProperties();
+        properties.setLockingMode(TransferProperties.LockingMode.OPTIMISTIC);
+        transferService = new TransferService(cardRepository, userCache,
+                TransactionOperations.withoutTransaction(), properties, cardLedgerService,
+                cardBalanceShardService);
+        fromCard.setStatus(CardStatus.BLOCKED);
+        TransferRequest request = new TransferRequest();
+        request.setFromCardId(fromCard.getId());
+        request.setToCardId(toCard.getId());
+        request.setAmount(BigDecimal.valueOf(200));
+
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(user));
+        when(cardRepository.findByIdAndUser(fromCard.getId(), user)).thenReturn(Optional.of(fromCard));
+        when(cardRepository.findByIdAndUser(toCard.getId(), user)).thenReturn(Optional.of(toCard));
+
+        InvalidCardOperationException ex = assertThrows(InvalidCardOperationException.class,
+                () -> transferService.transferMoney(request, "testuser"));
+
+        assertEquals("Source card is not active", ex.getMessage());
+        verify(cardRepository, never()).save(any());
+    }
+
+    @Test
+    void transferMoney_optimisticMode_shouldRetryOnVersionConflict() {
+        TransferProperties properties = new TransferProperties();
+        properties.setLockingMode(TransferProperties.LockingMode.OPTIMISTIC);
+        properties.setRetryBackoffMs(0);
+        transferService = new TransferService(cardRepository, userCache,
+                TransactionOperations.withoutTransaction(), properties, cardLedgerService,
+                cardBalanceShardService);
+
+        TransferRequest request = new TransferRequest();
+        request.setFromCardId(fromCard.getId());
+        request.setToCardId(toCard.getId());
+        request.setAmount(BigDecimal.valueOf(200));
+
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(user));
+        when(cardRepository.findByIdAndUser(fromCard.getId(), user)).thenReturn(Optional.of(fromCard));
+        when(cardRepository.findByIdAndUser(toCard.getId(), user)).thenReturn(Optional.of(toCard));
+        when(cardRepository.save(toCard))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Card.class, toCard.getId()))
+                .thenReturn(toCard);
+
+        transferService.transferMoney(request, "testuser");
+
+        verify(cardRepository, times(2)).findByIdAndUser(fromCard.getId(), user);
+        verify(cardRepository, never()).findByIdAndUserForUpdate(any(), any());
+    }
+
+    @Test
+    void transferMoney_optimisticMode_shouldGiveUpAfterMaxRetries() {
+        TransferProperties properties = new TransferProperties();
+        properties.setLockingMode(TransferProperties.LockingMode.OPTIMISTIC);
+        properties.setMaxRetries(3);
+        properties.setRetryBackoffMs(0);
+        transferService = new TransferService(cardRepository, userCache,
+                TransactionOperations.withoutTransaction(), properties, cardLedgerService,
+                cardBalanceShardService);
+
+        TransferRequest request = new TransferRequest();
+        request.setFromCardId(fromCard.getId());
+        request.setToCardId(toCard.getId());
+        request.setAmount(BigDecimal.ONE);
+
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(user));
+        when(cardRepository.findByIdAndUser(fromCard.getId(), user)).thenReturn(Optional.of(fromCard));
+        when(cardRepository.findByIdAndUser(toCard.getId(), user)).thenReturn(Optional.of(toCard));
+        when(cardRepository.save(fromCard)).thenThrow(new ObjectOptimisticLockingFailureException(Card.class, fromCard.getId()));
+
+        assertThrows(ObjectOptimisticLockingFailureException.class,
+                () -> transferService.transferMoney(request, "testuser"));
+
+        verify(cardRepository, times(3)).findByIdAndUser(fromCard.getId(), user);
+    }
+
+    @Test
+    void transferMoney_atomicMode_shouldIssueOrderedConditionalUpdates() {
+        useAtomicMode();
+        TransferRequest request = new TransferRequest();
+        request.setFromCardId(toCard.getId());
+        request.setToCardId(fromCard.getId());
+        request.setAmount(BigDecimal.valueOf(50));
+
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(user));
+        when(cardRepository.debitIfActive(toCard.getId(), user.getId(), BigDecimal.valueOf(50))).thenReturn(1);
+        when(cardRepository.creditIfActive(fromCard.getId(), user.getId(), BigDecimal.valueOf(50))).thenReturn(1);
+
+        transferService.transferMoney(request, "testuser");
+
+        InOrder inOrder = inOrder(cardRepository);
+        inOrder.verify(cardRepository).creditIfActive(fromCard.getId(), user.getId(), BigDecimal.valueOf(50));
+        inOrder.verify(cardRepository).debitIfActive(toCard.getId(), user.getId(), BigDecimal.valueOf(50));
+        verify(cardRepository, never()).findByIdAndUser(any(), any());
+        verify(cardRepository, never()).save(any());
+        verify(cardLedgerService).recordTransfer(toCard.getId(), fromCard.getId(), BigDecimal.valueOf(50));
+    }
+
+    @Test
+    void transferMoney_atomicMode_shouldThrow_whenInsufficientFunds() {
+        useAtomicMode();
+        fromCard.setStatus(CardStatus.ACTIVE);
+        TransferRequest request = new TransferRequest();
+        request.setFromCardId(fromCard.getId());
+        request.setToCardId(toCard.getId());
+        request.setAmount(BigDecimal.valueOf(1000));
+
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(user));
+        when(cardRepository.debitIfActive(fromCard.getId(), user.getId(), BigDecimal.valueOf(1000))).thenReturn(0);
+        when(cardRepository.findByIdAndUser(fromCard.getId(), user)).thenReturn(Optional.of(fromCard));
+
+        InsufficientFundsException ex = assertThrows(InsufficientFundsException.class,
+                () -> transferService.transferMoney(request, "testuser"));
+        assertEquals("Insufficient funds on source card", ex.getMessage());
+
+        verify(cardRepository, never()).creditIfActive(any(), any(), any());
+    }
+
+    @Test
+    void transferMoney_atomicMode_shouldThrow_whenTargetCardNotActive() {
+        useAtomicMode();
+        toCard.setStatus(CardStatus.BLOCKED);
+        TransferRequest request = new TransferRequest();
+        request.setFromCardId(fromCard.getId());
+        request.setToCardId(toCard.getId());
+        request.setAmount(BigDecimal.TEN);
+
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(user));
+        when(cardRepository.debitIfActive(fromCard.getId(), user.getId(), BigDecimal.TEN)).thenReturn(1);
+        when(cardRepository.creditIfActive(toCard.getId(), user.getId(), BigDecimal.TEN)).thenReturn(0);
+        when(cardRepository.findByIdAndUser(toCard.getId(), user)).thenReturn(Optional.of(toCard));
+
+        InvalidCardOperationException ex = assertThrows(InvalidCardOperationException.class,
+                () -> transferService.transferMoney(request, "testuser"));
+        assertEquals("Target card is not active", ex.getMessage());
+    }
+
+    @Test
+    void transferMoney_atomicMode_shouldUseBalanceShards_forShardedCards() {
+        useAtomicMode();
+        fromCard.setStatus(CardStatus.ACTIVE);
+        fromCard.setBalanceShards(8);
+        toCard.setStatus(CardStatus.ACTIVE);
+        toCard.setBalanceShards(8);
+        TransferRequest request = new TransferRequest();
+        request.setFromCardId(fromCard.getId());
+        request.setToCardId(toCard.getId());
+        request.setAmount(BigDecimal.TEN);
+
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(user));
+        when(cardRepository.findByIdAndUser(fromCard.getId(), user)).thenReturn(Optional.of(fromCard));
+        when(cardRepository.findByIdAndUser(toCard.getId(), user)).thenReturn(Optional.of(toCard));
+        when(cardBalanceShardRepository.debitAnyShard(fromCard.getId(), BigDecimal.TEN)).thenReturn(1);
+        when(cardBalanceShardRepository.creditShard(eq(toCard.getId()), anyInt(), eq(BigDecimal.TEN))).thenReturn(1);
+
+        transferService.transferMoney(request, "testuser");
+
+        verify(cardBalanceShardRepository).debitAnyShard(fromCard.getId(), BigDecimal.TEN);
+        verify(cardBalanceShardRepository).creditShard(eq(toCard.getId()), anyInt(), eq(BigDecimal.TEN));
+        verify(cardLedgerService).recordTransfer(fromCard.getId(), toCard.getId(), BigDecimal.TEN);
+    }
+
+    @Test
+    void transferBatch_shouldMoveShardedCardDeltaToShards() {
+        fromCard.setStatus(CardStatus.ACTIVE);
+        fromCard.setBalance(BigDecimal.ZERO);
+        fromCard.setBalanceShards(2);
+        toCard.setStatus(CardStatus.ACTIVE);
+        CardBalanceShard first = CardBalanceShard.builder().cardId(100L).shardNo(0).balance(BigDecimal.valueOf(40)).build();
+        CardBalanceShard second = CardBalanceShard.builder().cardId(100L).shardNo(1).balance(BigDecimal.valueOf(40)).build();
+
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(user));
+        when(cardRepository.findAllByIdInAndUserForUpdate(Set.of(100L, 200L), user))
+                .thenReturn(List.of(fromCard, toCard));
+        when(cardBalanceShardRepository.findAllByCardIdForUpdate(100L)).thenReturn(List.of(first, second));
+
+        List<TransferResultDto> results = transferService.transferBatch(
+                List.of(batchLeg(100L, 200L, 50)), "testuser");
+
+        assertEquals("COMPLETED", results.get(0).getStatus());
+        assertEquals(BigDecimal.valueOf(30), first.getBalance().add(second.getBalance()));
+        ArgumentCaptor<Map<Long, BigDecimal>> captor = ArgumentCaptor.forClass(Map.class);
+        verify(cardRepository).applyBalanceDeltas(captor.capture());
+        assertEquals(Map.of(200L, BigDecimal.valueOf(50)), captor.getValue());
+    }
+
+    @Test
+    void transferMoney_atomicMode_shouldThrow_whenSourceCardNotFound() {
+        useAtomicMode();
+        TransferRequest request = new TransferRequest();
+        request.setFromCardId(fromCard.getId());
+        request.setToCardId(toCard.getId());
+        request.setAmount(BigDecimal.TEN);
+
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(user));
+        when(cardRepository.findByIdAndUser(fromCard.getId(), user)).thenReturn(Optional.empty());
+
+        InvalidTransferException ex = assertThrows(InvalidTransferException.class,
+                () -> transferService.transferMoney(request, "testuser"));
+        assertEquals("Source card not found or access denied", ex.getMessage());
+    }
+
+    @Test
+    void transferBatch_shouldApplyNetDeltasAndReportEachLeg() {
+        fromCard.setStatus(CardStatus.ACTIVE);
+        toCard.setStatus(CardStatus.ACTIVE);
+
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(user));
+        when(cardRepository.findAllByIdInAndUserForUpdate(Set.of(100L, 200L), user))
+                .thenReturn(List.of(fromCard, toCard));
+
+        List<TransferResultDto> results = transferService.transferBatch(List.of(
+                batchLeg(100L, 200L, 300),
+                batchLeg(200L, 100L, 50),
+                batchLeg(100L, 200L, 400)
+        ), "testuser");
+
+        assertEquals(3, results.size());
+        assertEquals("COMPLETED", results.get(0).getStatus());
+        assertEquals("COMPLETED", results.get(1).getStatus());
+        assertEquals("REJECTED", results.get(2).getStatus());
+        assertEquals("Insufficient funds on source card", results.get(2).getMessage());
+
+        ArgumentCaptor<Map<Long, BigDecimal>> captor = ArgumentCaptor.forClass(Map.class);
+        verify(cardRepository).applyBalanceDeltas(captor.capture());
+        assertEquals(BigDecimal.valueOf(-250), captor.getValue().get(100L));
+        assertEquals(BigDecimal.valueOf(250), captor.getValue().get(200L));
+        verify(cardRepository, never()).save(any());
+        verify(cardLedgerService).recordTransfers(List.of(
+                new CardLedgerService.Transfer(100L, 200L, BigDecimal.valueOf(300)),
+                new CardLedgerService.Transfer(200L, 100L, BigDecimal.valueOf(50))));
+    }
+
+    @Test
+    void transferBatch_shouldRejectLeg_whenCardNotActive() {
+        fromCard.setStatus(CardStatus.ACTIVE);
+        toCard.setStatus(CardStatus.BLOCKED);
+
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(user));
+        when(cardRepository.findAllByIdInAndUserForUpdate(Set.of(100L, 200L), user))
+                .thenReturn(List.of(fromCard, toCard));
+
+        List<TransferResultDto> results = transferService.transferBatch(
+                List.of(batchLeg(100L, 200L, 10)), "testuser");
+
+        assertEquals("REJECTED", results.get(0).getStatus());
+        assertEquals("Target card is not active", results.get(0).getMessage());
+    }
+
+    @Test
+    void transferBatch_shouldRejectWholeBatch_whenCardNotOwned() {
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(user));
+        when(cardRepository.findAllByIdInAndUserForUpdate(Set.of(100L, 300L), user))
+                .thenReturn(List.of(fromCard));
+
+        InvalidTransferException ex = assertThrows(InvalidTransferException.class,
+                () -> transferService.transferBatch(List.of(batchLeg(100L, 300L, 10)), "testuser"));
+        assertEquals("Cards not found or access denied: [300]", ex.getMessage());
+
+        verify(cardRepository, never()).applyBalanceDeltas(any());
+    }
+
+    @Test
+    void transferBatch_shouldValidateAllLegsBeforeLocking() {
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(user));
+
+        assertThrows(InvalidCardOperationException.class, () -> transferService.transferBatch(List.of(
+                batchLeg(100L, 200L, 10),
+                batchLeg(200L, 200L, 10)
+        ), "testuser"));
+
+        verify(cardRepository, never()).findAllByIdInAndUserForUpdate(any(), any());
+    }
+
+    @Test
+    void applySequencedBatch_shouldCommitOnceAndCompleteEachTransfer() {
+        fromCard.setStatus(CardStatus.ACTIVE);
+        toCard.setStatus(CardStatus.ACTIVE);
+        User otherUser = new User();
+        otherUser.setId(2L);
+
+        when(cardRepository.findAllByIdInForUpdate(Set.of(100L, 200L)))
+                .thenReturn(List.of(fromCard, toCard));
+
+        TransferService.SequencedTransfer first = sequenced(batchLeg(100L, 200L, 300), user);
+        TransferService.SequencedTransfer second = sequenced(batchLeg(200L, 100L, 50), user);
+        TransferService.SequencedTransfer overdraft = sequenced(batchLeg(100L, 200L, 400), user);
+        TransferService.SequencedTransfer foreign = sequenced(batchLeg(100L, 200L, 10), otherUser);
+
+        transferService.applySequencedBatch(List.of(first, second, overdraft, foreign));
+
+        assertNull(first.result().join());
+        assertNull(second.result().join());
+        assertInstanceOf(InsufficientFundsException.class, failureOf(overdraft));
+        assertInstanceOf(InvalidTransferException.class, failureOf(foreign));
+
+        ArgumentCaptor<Map<Long, BigDecimal>> captor = ArgumentCaptor.forClass(Map.class);
+        verify(cardRepository).applyBalanceDeltas(captor.capture());
+        assertEquals(BigDecimal.valueOf(-250), captor.getValue().get(100L));
+        assertEquals(BigDecimal.valueOf(250), captor.getValue().get(200L));
+        verify(cardLedgerService).recordTransfers(List.of(
+                new CardLedgerService.Transfer(100L, 200L, BigDecimal.valueOf(300)),
+                new CardLedgerService.Transfer(200L, 100L, BigDecimal.valueOf(50))));
+    }
+
+    @Test
+    void applySequencedBatch_shouldFailEveryTransfer_whenTransactionFails() {
+        fromCard.setStatus(CardStatus.ACTIVE);
+        toCard.setStatus(CardStatus.ACTIVE);
+
+        when(cardRepository.findAllByIdInForUpdate(Set.of(100L, 200L)))
+                .thenReturn(List.of(fromCard, toCard));
+        IllegalStateException failure = new IllegalStateException("connection lost");
+        doThrow(failure).when(cardRepository).applyBalanceDeltas(any());
+
+        TransferService.SequencedTransfer first = sequenced(batchLeg(100L, 200L, 10), user);
+        TransferService.SequencedTransfer second = sequenced(batchLeg(200L, 100L, 20), user);
+
+        transferService.applySequencedBatch(List.of(first, second));
+
+        assertSame(failure, failureOf(first));
+        assertSame(failure, failureOf(second));
+    }
+
+    @Test
+    void applySequencedBatch_shouldSkipTransfersRejectedBeforeTheWriterTookThem() {
+        TransferService.SequencedTransfer timedOut = sequenced(batchLeg(100L, 200L, 10), user);
+        TooManyRequestsException timeout = new TooManyRequestsException("Too many transfers in progress, try again later");
+        timedOut.reject(timeout);
+
+        transferService.applySequencedBatch(List.of(timedOut));
+
+        assertSame(timeout, failureOf(timedOut));
+        verifyNoInteractions(cardRepository, cardLedgerService);
+    }
+
+    @Test
+    void transferMoney_sequencedMode_shouldWaitForBatchCommit() {
+        fromCard.setStatus(CardStatus.ACTIVE);
+        toCard.setStatus(CardStatus.ACTIVE);
+        TransferProperties properties = new TransferProperties();
+        properties.setLockingMode(TransferProperties.LockingMode.SEQUENCED);
+        transferService = new TransferService(cardRepository, userCache,
+                TransactionOperations.withoutTransaction(), properties, cardLedgerService,
+                cardBalanceShardService);
+
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(user));
+        when(cardRepository.findAllByIdInForUpdate(Set.of(100L, 200L)))
+                .thenReturn(List.of(fromCard, toCard));
+
+        try {
+            transferService.transferMoney(batchLeg(100L, 200L, 200), "testuser");
+
+            InsufficientFundsException ex = assertThrows(InsufficientFundsException.class,
+                    () -> transferService.transferMoney(batchLeg(100L, 200L, 600), "testuser"));
+            assertEquals("Insufficient funds on source card", ex.getMessage());
+        } finally {
+            transferService.destroy();
+        }
+
+        verify(cardRepository).applyBalanceDeltas(Map.of(100L, BigDecimal.valueOf(-200), 200L, BigDecimal.valueOf(200)));
+        verify(cardLedgerService).recordTransfers(List.of(
+                new CardLedgerService.Transfer(100L, 200L, BigDecimal.valueOf(200))));
+    }
+
+    @Test
+    void transferMoney_sequencedMode_shouldRunAtomically_insideIdempotencyTransaction() {
+        TransferProperties properties = new TransferProperties();
+        properties.setLockingMode(TransferProperties.LockingMode.SEQUENCED);
+        transferService = new TransferService(cardRepository, userCache,
+                TransactionOperations.withoutTransaction(), properties, cardLedgerService,
+                cardBalanceShardService);
+
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(user));
+        when(cardRepository.debitIfActive(100L, user.getId(), BigDecimal.valueOf(50))).thenReturn(1);
+        when(cardRepository.creditIfActive(200L, user.getId(), BigDecimal.valueOf(50))).thenReturn(1);
+
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            transferService.transferMoney(batchLeg(100L, 200L, 50), "testuser");
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+            transferService.destroy();
+        }
+
+        verify(cardRepository).debitIfActive(100L, user.getId(), BigDecimal.valueOf(50));
+        verify(cardRepository, never()).findAllByIdInForUpdate(any());
+    }
+
+    @Test
+    void transferMoney_sequencedMode_shouldFail_whenWriterDoesNotCommitInTime() throws Exception {
+        TransferProperties properties = new TransferProperties();
+        properties.setLockingMode(TransferProperties.LockingMode.SEQUENCED);
+        properties.setSequencerTimeout(Duration.ofMillis(50));
+        transferService = new TransferService(cardRepository, userCache,
+                TransactionOperations.withoutTransaction(), properties, cardLedgerService,
+                cardBalanceShardService);
+        CountDownLatch release = new CountDownLatch(1);
+
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(user));
+        when(cardRepository.findAllByIdInForUpdate(Set.of(100L, 200L))).thenAnswer(i -> {
+            release.await(10, TimeUnit.SECONDS);
+            return List.of(fromCard, toCard);
+        });
+
+        try {
+            IllegalStateException ex = assertThrows(IllegalStateException.class,
+                    () -> transferService.transferMoney(batchLeg(100L, 200L, 50), "testuser"));
+            assertTrue(ex.getMessage().startsWith("Transfer was taken by the sequencer but not committed in time"));
+        } finally {
+            release.countDown();
+            transferService.destroy();
+        }
+    }
+
+    @Test
+    void transferMoney_sequencedMode_shouldNotStartNewWriter_afterDestroy() {
+        TransferProperties properties = new TransferProperties();
+        properties.setLockingMode(TransferProperties.LockingMode.SEQUENCED);
+        transferService = new TransferService(cardRepository, userCache,
+                TransactionOperations.withoutTransaction(), properties, cardLedgerService,
+                cardBalanceShardService);
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(user));
+        when(cardRepository.findAllByIdInForUpdate(Set.of(100L, 200L))).thenReturn(List.of(fromCard, toCard));
+
+        transferService.transferMoney(batchLeg(100L, 200L, 50), "testuser");
+        transferService.destroy();
+
+        assertThrows(TooManyRequestsException.class,
+                () -> transferService.transferMoney(batchLeg(100L, 200L, 50), "testuser"));
+        verify(cardRepository, times(1)).findAllByIdInForUpdate(any());
+    }
+
+    private TransferService.SequencedTransfer sequenced(TransferRequest request, User owner) {
+        return new TransferService.SequencedTransfer(request, owner, request.getAmount());
+    }
+
+    private Throwable failureOf(TransferService.SequencedTransfer transfer) {
+        return assertThrows(CompletionException.class, () -> transfer.result().join()).getCause();
+    }
+
+    private TransferRequest batchLeg(Long from, Long to, int amount) {
+        TransferRequest request = new TransferRequest();
+        request.setFromCardId(from);
+        request.setToCardId(to);
+        request.setAmount(BigDecimal.valueOf(amount));
+        return request;
+    }
+
+    private void useAtomicMode() {
+        transferService = new TransferService(cardRepository, userCache,
+                TransactionOperations.withoutTransaction(), new TransferProperties(), cardLedgerService,
+                cardBalanceShardService);
+    }
 }
@@ -0,0 +1,81 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.UserCacheProperties;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserCacheTest {
+
+    private UserRepository userRepository;
+    private SimpleMeterRegistry meterRegistry;
+    private UserCache userCache;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        userCache = new UserCache(userRepository, new UserCacheProperties(), meterRegistry);
+
+        user = new User();
+        user.setId(1L);
+        user.setUsername("user");
+        when(userRepository.findByUsername("user")).thenReturn(Optional.of(user));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void findByUsername_shouldHitRepositoryOnce_andRecordMetrics() {
+        assertSame(user, userCache.findByUsername("user").orElseThrow());
+        assertSame(user, userCache.findByUsername("user").orElseThrow());
+
+        verify(userRepository, times(1)).findByUsername("user");
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "users").tag("result", "hit").functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "users").tag("result", "miss").functionCounter().count());
+    }
+
+    @Test
+    void findByUsername_shouldNotCacheMissingUsers() {
+        when(userRepository.findByUsername("ghost")).thenReturn(Optional.empty());
+
+        assertTrue(userCache.findByUsername("ghost").isEmpty());
+        assertTrue(userCache.findByUsername("ghost").isEmpty());
+
+        verify(userRepository, times(2)).findByUsername("ghost");
+    }
+
+    @Test
+    void evict_shouldReloadUser_andEvictAgainAfterCommit() {
+        userCache.findByUsername("user");
+        TransactionSynchronizationManager.initSynchronization();
+
+        userCache.evict("user");
+        userCache.findByUsername("user");
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        userCache.findByUsername("user");
+
+        verify(userRepository, times(3)).findByUsername("user");
+    }
+}
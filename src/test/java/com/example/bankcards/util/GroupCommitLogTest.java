@@ -0,0 +1,160 @@
+package com.example.bankcards.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GroupCommitLogTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void append_shouldNumberEntriesAndRecoverThemAfterReopen() throws Exception {
+        Path path = dir.resolve("journal.log");
+        try (GroupCommitLog log = new GroupCommitLog(path, 0, 100, entries -> { })) {
+            assertEquals(1L, log.append("a").join());
+            assertEquals(2L, log.append("b;c").join());
+        }
+
+        try (GroupCommitLog log = new GroupCommitLog(path, 0, 100, entries -> { })) {
+            assertEquals(List.of(new GroupCommitLog.Entry(1, "a"), new GroupCommitLog.Entry(2, "b;c")),
+                    log.recovered());
+            assertEquals(3L, log.append("d").join());
+        }
+    }
+
+    @Test
+    void append_shouldContinueAfterMinSeq_whenFileIsEmpty() throws Exception {
+        try (GroupCommitLog log = new GroupCommitLog(dir.resolve("journal.log"), 41, 100, entries -> { })) {
+            assertEquals(42L, log.append("a").join());
+        }
+    }
+
+    @Test
+    void open_shouldCutTornTail() throws Exception {
+        Path path = dir.resolve("journal.log");
+        try (GroupCommitLog log = new GroupCommitLog(path, 0, 100, entries -> { })) {
+            log.append("a").join();
+        }
+        Files.writeString(path, "2;b;dead", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        try (GroupCommitLog log = new GroupCommitLog(path, 0, 100, entries -> { })) {
+            assertEquals(1, log.recovered().size());
+            assertEquals(2L, log.append("c").join());
+        }
+        try (GroupCommitLog log = new GroupCommitLog(path, 0, 100, entries -> { })) {
+            assertEquals(List.of(new GroupCommitLog.Entry(1, "a"), new GroupCommitLog.Entry(2, "c")),
+                    log.recovered());
+        }
+    }
+
+    @Test
+    void listener_shouldSeeConcurrentAppendsInSequenceOrder() throws Exception {
+        List<Long> seen = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try (GroupCommitLog log = new GroupCommitLog(dir.resolve("journal.log"), 0, 64,
+                entries -> entries.forEach(entry -> seen.add(entry.seq())))) {
+            List<CompletableFuture<Long>> results = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                int n = i;
+                results.add(CompletableFuture.supplyAsync(() -> log.append("entry-" + n).join(), executor));
+            }
+            results.forEach(CompletableFuture::join);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(500, seen.size());
+        for (int i = 0; i < seen.size(); i++) {
+            assertEquals(i + 1L, seen.get(i));
+        }
+    }
+
+    @Test
+    void truncate_shouldKeepFile_whenItHasNewerEntries() throws Exception {
+        Path path = dir.resolve("journal.log");
+        try (GroupCommitLog log = new GroupCommitLog(path, 0, 100, entries -> { })) {
+            log.append("a").join();
+            log.append("b").join();
+            log.truncate(1);
+            log.append("c").join();
+            assertTrue(log.size() > 0);
+
+            log.truncate(3);
+            log.append("d").join();
+        }
+        try (GroupCommitLog log = new GroupCommitLog(path, 0, 100, entries -> { })) {
+            assertEquals(List.of(new GroupCommitLog.Entry(4, "d")), log.recovered());
+        }
+    }
+
+    @Test
+    void append_shouldSucceed_whenListenerFails() throws Exception {
+        Path path = dir.resolve("journal.log");
+        try (GroupCommitLog log = new GroupCommitLog(path, 0, 100, entries -> {
+            throw new IllegalStateException("listener is broken");
+        })) {
+            assertEquals(1L, log.append("a").join());
+        }
+        try (GroupCommitLog log = new GroupCommitLog(path, 0, 100, entries -> { })) {
+            assertEquals(List.of(new GroupCommitLog.Entry(1, "a")), log.recovered());
+        }
+    }
+
+    @Test
+    void append_shouldFail_afterClose() throws Exception {
+        GroupCommitLog log = new GroupCommitLog(dir.resolve("journal.log"), 0, 100, entries -> { });
+        log.close();
+
+        CompletionException ex = assertThrows(CompletionException.class, () -> log.append("a").join());
+        assertInstanceOf(IllegalStateException.class, ex.getCause());
+    }
+
+    @Test
+    void append_shouldTimeOutWithoutWriting_whenWriterIsBusy() throws Exception {
+        Path path = dir.resolve("journal.log");
+        CountDownLatch writerBusy = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try (GroupCommitLog log = new GroupCommitLog(path, 0, 1, entries -> {
+            writerBusy.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        })) {
+            CompletableFuture<Long> first = log.append("a");
+            writerBusy.await();
+
+            CompletableFuture<Long> second = log.append("b", Duration.ofMillis(20));
+            CompletionException ex = assertThrows(CompletionException.class, second::join);
+            assertInstanceOf(TimeoutException.class, ex.getCause());
+
+            release.countDown();
+            assertEquals(1L, first.join());
+        }
+        try (GroupCommitLog log = new GroupCommitLog(path, 0, 100, entries -> { })) {
+            assertEquals(List.of(new GroupCommitLog.Entry(1, "a")), log.recovered());
+        }
+    }
+}
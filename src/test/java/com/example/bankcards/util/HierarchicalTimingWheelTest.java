@@ -0,0 +1,73 @@
+package com.example.bankcards.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HierarchicalTimingWheelTest {
+
+    private static final long TICK = 1_000;
+
+    @Test
+    void poll_shouldReturnItemOnlyAfterItsExpiration() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(TICK, 60, 0);
+        assertTrue(wheel.add("card", 5_500));
+
+        assertEquals(List.of(), wheel.poll(5_499));
+        assertEquals(List.of(), wheel.poll(5_999));
+        assertEquals(List.of("card"), wheel.poll(6_000));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void poll_shouldCascadeItemsFromOverflowLevels() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(TICK, 60, 0);
+        long inTwoDays = 2 * 24 * 3_600_000L;
+        wheel.add("days", inTwoDays);
+        wheel.add("minutes", 90_000);
+
+        assertEquals(List.of(), wheel.poll(89_999));
+        assertEquals(List.of("minutes"), wheel.poll(90_000));
+        assertEquals(List.of(), wheel.poll(inTwoDays - TICK));
+        assertEquals(List.of("days"), wheel.poll(inTwoDays));
+    }
+
+    @Test
+    void add_shouldRejectAlreadyDueItems() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(TICK, 60, 10_000);
+
+        assertFalse(wheel.add("past", 9_000));
+        assertFalse(wheel.add("now", 10_000));
+        assertTrue(wheel.add("later in current tick", 10_500));
+        assertEquals(1, wheel.size());
+    }
+
+    @Test
+    void poll_shouldNeverFireEarlyAndNeverLoseItems() {
+        HierarchicalTimingWheel<Long> wheel = new HierarchicalTimingWheel<>(TICK, 8, 0);
+        Random random = new Random(42);
+        List<Long> expirations = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            long expiration = TICK + random.nextInt(10_000_000);
+            expirations.add(expiration);
+            wheel.add(expiration, expiration);
+        }
+
+        int fired = 0;
+        for (long now = 0; now <= 10_000_000 + 2 * TICK + 7_919; now += 7_919) {
+            for (Long expiration : wheel.poll(now)) {
+                assertTrue(expiration <= now, "fired early: " + expiration + " at " + now);
+                assertTrue(now - expiration < 7_919 + TICK, "fired late: " + expiration + " at " + now);
+                fired++;
+            }
+        }
+        assertEquals(expirations.size(), fired);
+        assertEquals(0, wheel.size());
+    }
+}
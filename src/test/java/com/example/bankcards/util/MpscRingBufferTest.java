@@ -0,0 +1,93 @@
+package com.example.bankcards.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MpscRingBufferTest {
+
+    @Test
+    void capacity_shouldRoundUpToPowerOfTwo() {
+        assertEquals(2, new MpscRingBuffer<>(2).capacity());
+        assertEquals(8, new MpscRingBuffer<>(5).capacity());
+        assertEquals(8, new MpscRingBuffer<>(8).capacity());
+        assertThrows(IllegalArgumentException.class, () -> new MpscRingBuffer<>(1));
+        assertThrows(IllegalArgumentException.class, () -> new MpscRingBuffer<>(0));
+    }
+
+    @Test
+    void offer_shouldReturnFalse_whenFull_andAcceptAgainAfterDrain() {
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(4));
+
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(2, buffer.drainTo(drained, 2));
+        assertTrue(buffer.offer(4));
+        assertTrue(buffer.offer(5));
+        assertFalse(buffer.offer(6));
+
+        assertEquals(4, buffer.drainTo(drained, 10));
+        assertEquals(List.of(0, 1, 2, 3, 4, 5), drained);
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    void drainTo_shouldNotLoseOrDuplicateElements_withConcurrentProducers() throws Exception {
+        int producers = 4;
+        int perProducer = 5_000;
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(64);
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                int base = p * perProducer;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < perProducer; i++) {
+                        // на машине с одним ядром крутиться бесполезно: потребитель не получит процессор
+                        while (!buffer.offer(base + i)) {
+                            Thread.yield();
+                        }
+                    }
+                }));
+            }
+
+            Set<Integer> seen = new HashSet<>();
+            int[] lastByProducer = new int[producers];
+            Arrays.fill(lastByProducer, -1);
+            List<Integer> chunk = new ArrayList<>();
+            while (seen.size() < producers * perProducer) {
+                chunk.clear();
+                if (buffer.drainTo(chunk, 32) == 0) {
+                    Thread.yield();
+                }
+                for (int value : chunk) {
+                    assertTrue(seen.add(value));
+                    int producer = value / perProducer;
+                    assertTrue(value > lastByProducer[producer], "order of one producer must be kept");
+                    lastByProducer[producer] = value;
+                }
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            assertTrue(buffer.isEmpty());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.bankcards.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SingleWriterSequencerTest {
+
+    @Test
+    void close_shouldHandleEverythingAcceptedBeforeIt() {
+        List<Integer> handled = Collections.synchronizedList(new ArrayList<>());
+        SingleWriterSequencer<Integer> sequencer = new SingleWriterSequencer<>("test-sequencer", 64, 8,
+                handled::addAll, (rejected, cause) -> { });
+        for (int i = 0; i < 50; i++) {
+            assertTrue(sequencer.offer(i));
+        }
+
+        sequencer.close();
+
+        assertEquals(50, handled.size());
+        assertFalse(sequencer.offer(50));
+    }
+
+    @Test
+    void idleWriter_shouldParkUntilOffer() throws Exception {
+        CountDownLatch handled = new CountDownLatch(1);
+        SingleWriterSequencer<Integer> sequencer = new SingleWriterSequencer<>("idle-sequencer", 64, 8,
+                batch -> handled.countDown(), (rejected, cause) -> { });
+        try {
+            Thread writer = Thread.getAllStackTraces().keySet().stream()
+                    .filter(thread -> thread.getName().equals("idle-sequencer"))
+                    .findFirst()
+                    .orElseThrow();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (writer.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            // WAITING, а не TIMED_WAITING: писатель спит без таймера, пока его не разбудят
+            assertEquals(Thread.State.WAITING, writer.getState());
+
+            assertTrue(sequencer.offer(1));
+            assertTrue(handled.await(5, TimeUnit.SECONDS));
+        } finally {
+            sequencer.close();
+        }
+    }
+
+    @Test
+    void writerError_shouldRejectBatchAndQueuedElements() throws Exception {
+        CountDownLatch inHandler = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> rejected = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch rejectedAll = new CountDownLatch(2);
+        SingleWriterSequencer<Integer> sequencer = new SingleWriterSequencer<>("test-sequencer", 64, 1,
+                batch -> {
+                    inHandler.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    throw new AssertionError("writer is broken");
+                },
+                (elements, cause) -> {
+                    rejected.addAll(elements);
+                    rejectedAll.countDown();
+                });
+
+        assertTrue(sequencer.offer(1));
+        assertTrue(inHandler.await(5, TimeUnit.SECONDS));
+        assertTrue(sequencer.offer(2));
+        release.countDown();
+
+        assertTrue(rejectedAll.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(1, 2), rejected);
+        assertFalse(sequencer.isRunning());
+        assertFalse(sequencer.offer(3));
+    }
+}